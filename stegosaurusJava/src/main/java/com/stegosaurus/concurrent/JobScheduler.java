@@ -0,0 +1,97 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs whole requests (an embedding, say) in the background, a bounded
+ * number of them at a time.
+ * <p>A request spends most of its time waiting on the fitness evaluations
+ * it hands over to the shared ListeningExecutorService, so requests must
+ * never be run on that same service: with a bounded pool, they would end up
+ * taking all its threads and waiting on work that can never start. They get
+ * their own threads, from here, instead.</p>
+ */
+public class JobScheduler {
+  /**
+   * The maximum number of jobs to run at once.
+   */
+  private final int maxConcurrentJobs;
+
+  /**
+   * The service actually running the jobs. Built on first use.
+   */
+  private ListeningExecutorService service = null;
+
+  /**
+   * CTOR.
+   * @param maxConcurrentJobs the maximum number of jobs to run at once.
+   */
+  public JobScheduler(int maxConcurrentJobs) {
+    this.maxConcurrentJobs = maxConcurrentJobs;
+  }
+
+  /**
+   * Get the maximum number of jobs run at once.
+   * @return the maximum number of concurrent jobs.
+   */
+  public int getMaxConcurrentJobs() {
+    return maxConcurrentJobs;
+  }
+
+  /**
+   * Submit a job to be run as soon as there is room for it.
+   * @param job the job.
+   * @return a future for the job's result.
+   */
+  public <T> ListenableFuture<T> submit(Callable<T> job) {
+    return getService().submit(job);
+  }
+
+  /**
+   * Submit a job to be run as soon as there is room for it.
+   * @param job the job.
+   * @return a future that completes when the job is done.
+   */
+  public ListenableFuture<?> submit(Runnable job) {
+    return getService().submit(job);
+  }
+
+  /**
+   * Get the service running the jobs, building it if needed.
+   * @return the service.
+   */
+  private synchronized ListeningExecutorService getService() {
+    if(service == null) {
+      service = MoreExecutors.listeningDecorator(
+        Executors.newFixedThreadPool(maxConcurrentJobs,
+          new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("stegosaurus-job-%d")
+            .build()));
+    }
+    return service;
+  }
+}
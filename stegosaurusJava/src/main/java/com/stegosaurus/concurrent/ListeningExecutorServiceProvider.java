@@ -21,6 +21,7 @@ import java.util.concurrent.Executors;
 
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 
@@ -29,6 +30,11 @@ import com.google.inject.Singleton;
  * that need access to one.
  * Only provides a single executor service, which is built when first
  * requested and provided on every subsequent request.
+ * <p>The service has a fixed number of worker threads, shared by everybody
+ * that uses it: fitness evaluations submitted by different genetic
+ * algorithms, for different requests, simply queue up and interleave.
+ * Tasks submitted here should therefore never block waiting on other tasks
+ * submitted here.</p>
  */
 @Singleton
 public class ListeningExecutorServiceProvider
@@ -36,14 +42,37 @@ public class ListeningExecutorServiceProvider
 
   private ListeningExecutorService service = null;
 
+  /**
+   * The number of worker threads of the service.
+   */
+  private final int threadCount;
+
+  /**
+   * CTOR. The service will have one worker thread per available processor.
+   */
+  public ListeningExecutorServiceProvider() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * CTOR.
+   * @param threadCount the number of worker threads of the service.
+   */
+  public ListeningExecutorServiceProvider(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
   /**
    * Get an executor service for this application.
    * @return the executor service.
    */
-  public ListeningExecutorService get() {
+  public synchronized ListeningExecutorService get() {
     if(service == null) {
-      service =
-        MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+      service = MoreExecutors.listeningDecorator(
+        Executors.newFixedThreadPool(threadCount, new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("stegosaurus-worker-%d")
+          .build()));
     }
     return service;
   }
@@ -17,61 +17,226 @@
  */
 package com.stegosaurus.crypt;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 import com.google.inject.Singleton;
 
 /**
  * Provides Permutation objects for given seeds and given lengths.
  * Permutations being immutable, this object actually keeps a reference to any
  * previously requested instances and returns them again on subsequent
- * requests
+ * requests, for as long as their combined footprint remains under a
+ * given number of bytes.
+ * <p>The cache only weighs a permutation once, as it comes in, so every
+ * permutation is weighed at the most it may grow to: lazy ones grow as
+ * they are walked.</p>
+ * <p>Pinned permutations are held on to separately, and do not count towards
+ * that limit; nor are requests for them counted in the statistics.</p>
  */
 @Singleton
 public class DefaultPermutationProvider implements PermutationProvider {
+  /**
+   * The default number of bytes the cached permutations may take up.
+   */
+  public static final long DEFAULT_MAXIMUM_BYTES = 256L * 1024 * 1024;
+
+  /**
+   * The format of the permutations provided.
+   */
+  private final PermutationFormat format;
+
   /**
    * The actual permutations to return, as a loading cache mapping from
-   * permutation size, to the caches mapping from permutation seed to
-   * the permutation itself.
-   * This way, we can get rid of entire permutation sizes that haven't
-   * seen use in a while.
+   * permutation size and seed to the permutation itself.
    */
-  private final LoadingCache<Integer, LoadingCache<Long, Permutation>>
-    permutations;
+  private final LoadingCache<Key, Permutation> permutations;
 
   /**
-   * CTOR.
+   * The pinned permutations. Guarded by itself.
+   */
+  private final Map<Key, Pin> pins = new HashMap<>();
+
+  /**
+   * CTOR. Provides permutations in the classic format, with the default
+   * limit on their footprint.
    */
   public DefaultPermutationProvider() {
-    /* TODO Every last thing about this is awful. */
-    /* TODO Make this nicer on the eye... */
-    /* TODO Externalize the damn parameters */
+    this(PermutationFormat.CLASSIC);
+  }
+
+  /**
+   * CTOR. Uses the default limit on the permutations' footprint.
+   * @param format the format of the permutations to provide.
+   */
+  public DefaultPermutationProvider(PermutationFormat format) {
+    this(format, DEFAULT_MAXIMUM_BYTES);
+  }
+
+  /**
+   * CTOR.
+   * @param format the format of the permutations to provide.
+   * @param maximumBytes the most bytes the permutations held on to may
+   *    take up, pinned ones aside.
+   */
+  public DefaultPermutationProvider(final PermutationFormat format,
+                                    long maximumBytes) {
+    this.format = format;
     permutations = CacheBuilder.newBuilder()
-      .maximumSize(5)
+      .maximumWeight(maximumBytes)
+      .weigher(new Weigher<Key, Permutation>() {
+        public int weigh(Key key, Permutation permutation) {
+          return (int) Math.min(Integer.MAX_VALUE,
+                                permutation.getMaximumFootprint());
+        }
+      })
+      .recordStats()
       .build(
-        new CacheLoader<Integer, LoadingCache<Long, Permutation>>() {
-          public LoadingCache<Long, Permutation> load(final Integer size) {
-            return CacheBuilder.newBuilder()
-              .maximumSize(50)
-              .build(
-                new CacheLoader<Long, Permutation>() {
-                  public Permutation load(Long seed) {
-                    Permutation retval = new Permutation(size, seed);
-                    retval.init();
-                    return retval;
-                  }
-                });
+        new CacheLoader<Key, Permutation>() {
+          public Permutation load(Key key) {
+            return format.build(key.size, key.seed);
           }
         });
   }
 
-
   /**
    * {@inheritDoc}
    */
   @Override
   public Permutation getPermutation(int size, long seed) {
-    return permutations.getUnchecked(size).getUnchecked(seed);
+    Key key = new Key(size, seed);
+    Pin pin;
+    synchronized(pins) {
+      pin = pins.get(key);
+    }
+    if(pin != null && pin.permutation != null) {
+      return pin.permutation;
+    }
+    Permutation retval = permutations.getUnchecked(key);
+    if(pin != null) {
+      pin.permutation = retval;
+    }
+    return retval;
+  }
+
+  /**
+   * {@inheritDoc}
+   * Base permutations are held on to like any others.
+   */
+  @Override
+  public Permutation getBasePermutation(int size, long seed) {
+    return getPermutation(size, seed);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void pin(int size, long seed) {
+    Key key = new Key(size, seed);
+    synchronized(pins) {
+      Pin pin = pins.get(key);
+      if(pin == null) {
+        pin = new Pin();
+        /* No sense in building it again if it's around already */
+        pin.permutation = permutations.getIfPresent(key);
+        pins.put(key, pin);
+      }
+      pin.count++;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void unpin(int size, long seed) {
+    Key key = new Key(size, seed);
+    synchronized(pins) {
+      Pin pin = pins.get(key);
+      if(pin == null) {
+        throw new IllegalArgumentException("Permutation is not pinned");
+      }
+      pin.count--;
+      if(pin.count == 0) {
+        pins.remove(key);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CacheStats getStats() {
+    return permutations.stats();
+  }
+
+  /**
+   * Get the permutations currently held on to, pinned ones aside.
+   * @return a view of the permutations.
+   */
+  Collection<Permutation> getCachedPermutations() {
+    return permutations.asMap().values();
+  }
+
+  /**
+   * The key identifying a permutation: its size and seed.
+   */
+  private static final class Key {
+    /**
+     * The size of the permutation.
+     */
+    private final int size;
+
+    /**
+     * The seed of the permutation.
+     */
+    private final long seed;
+
+    /**
+     * CTOR.
+     * @param size the size of the permutation.
+     * @param seed the seed of the permutation.
+     */
+    Key(int size, long seed) {
+      this.size = size;
+      this.seed = seed;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if(!(other instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) other;
+      return size == k.size && seed == k.seed;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * size + (int) (seed ^ (seed >>> 32));
+    }
+  }
+
+  /**
+   * A pinned permutation.
+   */
+  private static final class Pin {
+    /**
+     * The number of times the permutation has been pinned.
+     */
+    private int count;
+
+    /**
+     * The permutation, once it has been built; null until then.
+     */
+    private volatile Permutation permutation;
   }
 }
@@ -0,0 +1,150 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.crypt;
+
+import java.util.Random;
+
+/**
+ * A permutation that is never stored anywhere: every element is worked out
+ * as it is requested, by enciphering its index with a keyed Feistel network.
+ * <p>The network permutes the smallest domain of an even number of bits
+ * that holds every index; indices enciphered into elements outside of the
+ * permutation are enciphered again until they fall inside it (so called
+ * cycle walking), which keeps the result a permutation. Since the domain is
+ * less than four times the size of the permutation, a handful of rounds of
+ * the network are enough for any element.</p>
+ * <p>Memory use is constant, and the cost of a walk is proportional to the
+ * number of elements visited, not to the size of the permutation. The
+ * elements differ from those of a plain Permutation with the same seed.</p>
+ */
+public class FeistelPermutation extends Permutation {
+  /**
+   * The number of rounds of the network.
+   */
+  private static final int ROUNDS = 6;
+
+  /**
+   * The keys for every round of the network; null until initialized.
+   */
+  private long[] keys = null;
+
+  /**
+   * The number of bits in each half of a value in the domain.
+   */
+  private int halfBits;
+
+  /**
+   * A mask with the lower halfBits bits set.
+   */
+  private long halfMask;
+
+  /**
+   * Construct a new permutation. You should call init after constructing this.
+   * @param size the number of elements in the permutations.
+   * @param seed the seed that will be used to generate this permutation.
+   */
+  public FeistelPermutation(int size, long seed) {
+    super(size, seed);
+  }
+
+  /**
+   * Initialize the permutation, by deriving the keys for the network.
+   * This is cheap, whatever the size of the permutation. You should only
+   * call this operation once.
+   */
+  @Override
+  public void init() {
+    if(keys != null) {
+      throw new IllegalStateException("Permutation has been initialized");
+    }
+    halfBits = 1;
+    while((1L << (2 * halfBits)) < getSize()) {
+      halfBits++;
+    }
+    halfMask = (1L << halfBits) - 1;
+    Random random = new Random(getSeed());
+    long[] k = new long[ROUNDS];
+    for(int i = 0; i < ROUNDS; i++) {
+      k[i] = random.nextLong();
+    }
+    keys = k;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int get(int index) {
+    if(keys == null) {
+      throw new IllegalStateException("init() has not been called");
+    }
+    if(index < 0 || index >= getSize()) {
+      throw new IndexOutOfBoundsException("No element at " + index);
+    }
+    long value = index;
+    do {
+      value = encipher(value);
+    } while(value >= getSize());
+    return (int) value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getFootprint() {
+    return OVERHEAD_BYTES + 8L * ROUNDS;
+  }
+
+  /**
+   * {@inheritDoc}
+   * The round keys are all there is to it, so this never grows.
+   */
+  @Override
+  public long getMaximumFootprint() {
+    return getFootprint();
+  }
+
+  /**
+   * Run the value given through the network.
+   * @param value the value, within the domain.
+   * @return the enciphered value, also within the domain.
+   */
+  private long encipher(long value) {
+    long left = value >>> halfBits;
+    long right = value & halfMask;
+    for(int i = 0; i < ROUNDS; i++) {
+      long next = left ^ (mix(right ^ keys[i]) & halfMask);
+      left = right;
+      right = next;
+    }
+    return (left << halfBits) | right;
+  }
+
+  /**
+   * The round function: scramble the bits of the value given.
+   * This is the finalizer of the SplitMix64 generator.
+   * @param z the value.
+   * @return the scrambled value.
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
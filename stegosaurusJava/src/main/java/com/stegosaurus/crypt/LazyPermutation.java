@@ -0,0 +1,174 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.crypt;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A permutation that is only generated as far as it is walked.
+ * <p>It is a forward Fisher-Yates shuffle, which fixes the elements of the
+ * permutation from the start onwards, one at a time; the shuffle is simply
+ * stopped after the last element requested so far, and resumed when one
+ * further ahead is requested. Rather than an array of the whole
+ * permutation, only the elements generated so far are kept, along with the
+ * handful of elements that the shuffle has displaced beyond them.</p>
+ * <p>Walking the first k elements thus costs time and memory proportional
+ * to k, whatever the size of the permutation. The elements differ from
+ * those of a plain Permutation with the same seed.</p>
+ * <p>The permutation may be used from several threads at once; elements
+ * already generated are read without locking.</p>
+ */
+public class LazyPermutation extends Permutation {
+  /**
+   * The least number of elements generated at once.
+   */
+  private static final int MIN_CHUNK = 64;
+
+  /**
+   * The elements generated so far; null until initialized.
+   * Replaced, never modified, once published.
+   */
+  private volatile int[] prefix = null;
+
+  /**
+   * The random number generator driving the shuffle.
+   */
+  private Random random;
+
+  /**
+   * The elements that the shuffle has moved to positions it has not reached
+   * yet, keyed by position. Any position not in here still holds itself.
+   */
+  private TIntIntHashMap displaced;
+
+  /**
+   * Construct a new permutation. You should call init after constructing this.
+   * @param size the number of elements in the permutations.
+   * @param seed the seed that will be used to generate this permutation.
+   */
+  public LazyPermutation(int size, long seed) {
+    super(size, seed);
+  }
+
+  /**
+   * Initialize the permutation. This is cheap, since no element is actually
+   * generated until requested. You should only call this operation once.
+   */
+  @Override
+  public synchronized void init() {
+    if(prefix != null) {
+      throw new IllegalStateException("Permutation has been initialized");
+    }
+    random = new Random(getSeed());
+    displaced = new TIntIntHashMap();
+    prefix = new int[0];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int get(int index) {
+    int[] p = prefix;
+    if(p == null) {
+      throw new IllegalStateException("init() has not been called");
+    }
+    if(index < p.length) {
+      return p[index];
+    }
+    if(index < 0 || index >= getSize()) {
+      throw new IndexOutOfBoundsException("No element at " + index);
+    }
+    return generate(index);
+  }
+
+  /**
+   * {@inheritDoc}
+   * Grows as the permutation is walked.
+   */
+  @Override
+  public synchronized long getFootprint() {
+    long retval = OVERHEAD_BYTES;
+    if(prefix != null) {
+      /* A displaced element costs a key, a value and a state byte, at a
+       * load factor of one half */
+      retval += 4L * prefix.length + 18L * displaced.size();
+    }
+    return retval;
+  }
+
+  /**
+   * {@inheritDoc}
+   * Once k elements have been generated, no more than k elements, nor
+   * more than the size less k, may be displaced; the most this comes to,
+   * counted as getFootprint does, is when half the permutation has been
+   * generated.
+   */
+  @Override
+  public long getMaximumFootprint() {
+    return OVERHEAD_BYTES + 11L * getSize();
+  }
+
+  /**
+   * Carry on with the shuffle at least up to the index given, which is
+   * beyond the elements generated so far (unless some other thread has
+   * beaten us to it), and return the element there.
+   * Generates at least twice as many elements as before, so that walking
+   * the permutation does not come here too often.
+   * @param index the index.
+   * @return the element at the index.
+   */
+  private synchronized int generate(int index) {
+    int[] p = prefix;
+    if(index < p.length) {
+      return p[index];
+    }
+    final int size = getSize();
+    int n = Math.max(index + 1, Math.max(MIN_CHUNK, p.length * 2));
+    n = Math.min(n, size);
+    int[] next = Arrays.copyOf(p, n);
+    for(int i = p.length; i < n; i++) {
+      int j = i + random.nextInt(size - i);
+      int atI = valueAt(i);
+      next[i] = valueAt(j);
+      /* Position i is settled now, so only j has to be remembered */
+      displaced.remove(i);
+      if(j != i) {
+        displaced.put(j, atI);
+      }
+    }
+    prefix = next;
+    return next[index];
+  }
+
+  /**
+   * Get the element currently held by the position given, which is at least
+   * as far as the shuffle has gone.
+   * @param position the position.
+   * @return the element there.
+   */
+  private int valueAt(int position) {
+    if(displaced.containsKey(position)) {
+      return displaced.get(position);
+    }
+    return position;
+  }
+}
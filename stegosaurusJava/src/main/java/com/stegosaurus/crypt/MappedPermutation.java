@@ -0,0 +1,97 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.crypt;
+
+import java.nio.IntBuffer;
+
+/**
+ * A permutation whose elements live in a buffer, typically one mapped from a
+ * file, rather than on the heap.
+ * The buffer is read but never modified; it must not be modified by anyone
+ * else for as long as the permutation is in use.
+ */
+public class MappedPermutation extends Permutation {
+  /**
+   * The buffer holding the elements; its position and limit are never
+   * touched.
+   */
+  private final IntBuffer elements;
+
+  /**
+   * Whether init() has been called.
+   */
+  private volatile boolean initialized = false;
+
+  /**
+   * Construct a new permutation. You should call init after constructing this.
+   * @param size the number of elements in the permutations.
+   * @param seed the seed that was used to generate this permutation.
+   * @param elements the buffer with the elements, in order.
+   */
+  public MappedPermutation(int size, long seed, IntBuffer elements) {
+    super(size, seed);
+    if(elements.remaining() < size) {
+      throw new IllegalArgumentException("Buffer too short for permutation");
+    }
+    this.elements = elements.slice();
+  }
+
+  /**
+   * Initialize the permutation. Since the elements are already there, all
+   * this does is mark the permutation as initialized.
+   */
+  @Override
+  public void init() {
+    if(initialized) {
+      throw new IllegalStateException("Permutation has been initialized");
+    }
+    initialized = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int get(int index) {
+    if(!initialized) {
+      throw new IllegalStateException("init() has not been called");
+    }
+    if(index < 0 || index >= getSize()) {
+      throw new IndexOutOfBoundsException("No element at " + index);
+    }
+    return elements.get(index);
+  }
+
+  /**
+   * {@inheritDoc}
+   * The elements themselves are off the heap, and are not counted.
+   */
+  @Override
+  public long getFootprint() {
+    return OVERHEAD_BYTES;
+  }
+
+  /**
+   * {@inheritDoc}
+   * The elements themselves are off the heap, and are not counted.
+   */
+  @Override
+  public long getMaximumFootprint() {
+    return getFootprint();
+  }
+}
@@ -0,0 +1,292 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.crypt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Provides permutations, keeping base permutations in files in a directory,
+ * which are memory mapped rather than read in.
+ * <p>Any number of processes may share the directory: a base permutation
+ * built by any of them is then simply mapped by the rest, sharing the pages
+ * of the file through the operating system's cache, and it survives the
+ * processes themselves. Files are written under a temporary name and then
+ * renamed into place, so a process never sees another's half written file;
+ * if two build the same permutation at once, one of them wins, to no ill
+ * effect since they're identical.</p>
+ * <p>Every other permutation is left to an in-memory provider, which also
+ * handles pinning and statistics. There is no sense in using this with the
+ * FEISTEL format, whose permutations take no memory to begin with.</p>
+ */
+public class MappedPermutationProvider implements PermutationProvider {
+  /**
+   * Identifies a permutation file.
+   */
+  private static final int MAGIC = 0x5354504D;
+
+  /**
+   * The version of the layout of permutation files.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * The size, in bytes, of the header of a permutation file: the magic
+   * number, the version, the format, the size and the seed.
+   */
+  private static final int HEADER_BYTES = 24;
+
+  /**
+   * The most base permutations to keep mapped at once.
+   */
+  private static final int MAXIMUM_MAPPED = 64;
+
+  /**
+   * The size of the buffer used to write permutation files out.
+   */
+  private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+  /**
+   * The directory the permutation files are kept in.
+   */
+  private final Path directory;
+
+  /**
+   * The format of the permutations provided.
+   */
+  private final PermutationFormat format;
+
+  /**
+   * The provider of any permutations other than base ones.
+   */
+  private final PermutationProvider delegate;
+
+  /**
+   * The base permutations currently mapped, keyed by file name.
+   */
+  private final Cache<String, Permutation> mapped;
+
+  /**
+   * CTOR.
+   * @param directory the directory to keep permutation files in; created if
+   *    it does not exist.
+   * @param format the format of the permutations to provide.
+   * @param delegate the provider to get any other permutations from; should
+   *    provide permutations in the same format.
+   * @throws IOException if the directory cannot be created.
+   */
+  public MappedPermutationProvider(Path directory, PermutationFormat format,
+                                   PermutationProvider delegate)
+      throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.format = format;
+    this.delegate = delegate;
+    mapped = CacheBuilder.newBuilder().maximumSize(MAXIMUM_MAPPED).build();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Permutation getPermutation(int size, long seed) {
+    return delegate.getPermutation(size, seed);
+  }
+
+  /**
+   * {@inheritDoc}
+   * The permutation is mapped from its file, which is built first if it is
+   * not there yet.
+   */
+  @Override
+  public Permutation getBasePermutation(final int size, final long seed) {
+    final Path file = directory.resolve(getFileName(size, seed));
+    try {
+      return mapped.get(file.getFileName().toString(),
+                        new Callable<Permutation>() {
+          public Permutation call() throws IOException {
+            return load(file, size, seed);
+          }
+        });
+    } catch(ExecutionException | UncheckedExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void pin(int size, long seed) {
+    delegate.pin(size, seed);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void unpin(int size, long seed) {
+    delegate.unpin(size, seed);
+  }
+
+  /**
+   * {@inheritDoc}
+   * Base permutations are not included.
+   */
+  @Override
+  public CacheStats getStats() {
+    return delegate.getStats();
+  }
+
+  /**
+   * Get the name of the file for the permutation given.
+   * @param size the size of the permutation.
+   * @param seed the seed of the permutation.
+   * @return the file name.
+   */
+  private String getFileName(int size, long seed) {
+    return String.format("%s-%d-%016x.perm",
+                         format.name().toLowerCase(), size, seed);
+  }
+
+  /**
+   * Map the permutation from the file given, building the file if it does
+   * not exist or does not hold the permutation expected.
+   * @param file the file.
+   * @param size the size of the permutation.
+   * @param seed the seed of the permutation.
+   * @return the permutation.
+   * @throws IOException on io failure.
+   */
+  private Permutation load(Path file, int size, long seed)
+      throws IOException {
+    MappedByteBuffer buffer = map(file, size, seed);
+    if(buffer == null) {
+      write(file, size, seed);
+      buffer = map(file, size, seed);
+      if(buffer == null) {
+        throw new IOException("Permutation file is corrupt: " + file);
+      }
+    }
+    buffer.position(HEADER_BYTES);
+    IntBuffer elements = buffer.slice().order(ByteOrder.BIG_ENDIAN)
+      .asIntBuffer();
+    Permutation retval = new MappedPermutation(size, seed, elements);
+    retval.init();
+    return retval;
+  }
+
+  /**
+   * Map the file given, if it exists and holds the permutation expected.
+   * @param file the file.
+   * @param size the size of the permutation.
+   * @param seed the seed of the permutation.
+   * @return the mapped file, or null if it's not there or not as expected.
+   * @throws IOException on io failure.
+   */
+  private MappedByteBuffer map(Path file, int size, long seed)
+      throws IOException {
+    if(!Files.exists(file)) {
+      return null;
+    }
+    try(FileChannel channel = FileChannel.open(file,
+                                               StandardOpenOption.READ)) {
+      long length = HEADER_BYTES + 4L * size;
+      if(channel.size() != length) {
+        return null;
+      }
+      MappedByteBuffer retval =
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      retval.order(ByteOrder.BIG_ENDIAN);
+      boolean valid = retval.getInt(0) == MAGIC
+        && retval.getInt(4) == VERSION
+        && retval.getInt(8) == format.ordinal()
+        && retval.getInt(12) == size
+        && retval.getLong(16) == seed;
+      return valid ? retval : null;
+    }
+  }
+
+  /**
+   * Build the permutation given, and write it to the file given, replacing
+   * whatever might be there.
+   * @param file the file.
+   * @param size the size of the permutation.
+   * @param seed the seed of the permutation.
+   * @throws IOException on io failure.
+   */
+  private void write(Path file, int size, long seed) throws IOException {
+    Permutation permutation = format.build(size, seed);
+    Path tmp = Files.createTempFile(directory, file.getFileName().toString(),
+                                    ".tmp");
+    try {
+      try(FileChannel channel = FileChannel.open(tmp,
+                                                 StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES)
+          .order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(format.ordinal())
+          .putInt(size).putLong(seed);
+        for(int i = 0; i < size; i++) {
+          if(!buffer.hasRemaining()) {
+            drain(channel, buffer);
+          }
+          buffer.putInt(permutation.get(i));
+        }
+        drain(channel, buffer);
+      }
+      try {
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch(AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Write out everything in the buffer given to the channel given, and
+   * clear the buffer.
+   * @param channel the channel.
+   * @param buffer the buffer, ready to be written to.
+   * @throws IOException on io failure.
+   */
+  private static void drain(FileChannel channel, ByteBuffer buffer)
+      throws IOException {
+    buffer.flip();
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -23,8 +23,16 @@ import java.util.Random;
  * Produces a (pseudo) random permutation of numbers.
  * These are immutable objects, so that for any given random seed, permutation
  * size and prng, two permutations will be identical.
+ * <p>Subclasses may produce their elements in some other way, as long as
+ * they remain immutable.</p>
+ * @see PermutationFormat
  */
 public class Permutation {
+  /**
+   * A rough figure for the bytes taken by a permutation object, before
+   * counting whatever it holds its elements in.
+   */
+  protected static final long OVERHEAD_BYTES = 64;
   /**
    * The size.
    */
@@ -83,6 +91,32 @@ public class Permutation {
     return permutation[index];
   }
 
+  /**
+   * Get an estimate of the memory, in bytes, held on to by this permutation,
+   * as things stand.
+   * @return the estimated footprint.
+   */
+  public long getFootprint() {
+    return OVERHEAD_BYTES + (permutation == null ? 0 : 4L * size);
+  }
+
+  /**
+   * Get an estimate of the most memory, in bytes, that this permutation
+   * may ever hold on to, however far it is walked.
+   * @return the estimated maximum footprint.
+   */
+  public long getMaximumFootprint() {
+    return OVERHEAD_BYTES + 4L * size;
+  }
+
+  /**
+   * Get the seed used to generate this permutation.
+   * @return the seed.
+   */
+  public long getSeed() {
+    return seed;
+  }
+
   /**
    * Get this permutation's size.
    * @return the permutation's size.
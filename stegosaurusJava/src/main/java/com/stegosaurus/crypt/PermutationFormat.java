@@ -0,0 +1,79 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.crypt;
+
+/**
+ * The ways of building permutations out of a size and a seed.
+ * The permutations are what determine where in a cover image every bit of
+ * a message goes, so an image may only be extracted using the same format
+ * it was embedded with. There is no room in the images to record it, so
+ * it's up to the configuration of both sides to agree.
+ */
+public enum PermutationFormat {
+  /**
+   * The original format: a shuffle of an array holding every element.
+   */
+  CLASSIC {
+    @Override
+    Permutation create(int size, long seed) {
+      return new Permutation(size, seed);
+    }
+  },
+
+  /**
+   * Elements worked out on demand by a Feistel network, with no array.
+   * @see FeistelPermutation
+   */
+  FEISTEL {
+    @Override
+    Permutation create(int size, long seed) {
+      return new FeistelPermutation(size, seed);
+    }
+  },
+
+  /**
+   * A forward shuffle, only carried out as far as the permutation is walked.
+   * @see LazyPermutation
+   */
+  LAZY {
+    @Override
+    Permutation create(int size, long seed) {
+      return new LazyPermutation(size, seed);
+    }
+  };
+
+  /**
+   * Build and initialize a permutation in this format.
+   * @param size the number of elements in the permutation.
+   * @param seed the seed to generate it from.
+   * @return the permutation.
+   */
+  public Permutation build(int size, long seed) {
+    Permutation retval = create(size, seed);
+    retval.init();
+    return retval;
+  }
+
+  /**
+   * Construct a permutation in this format, without initializing it.
+   * @param size the number of elements in the permutation.
+   * @param seed the seed to generate it from.
+   * @return the permutation.
+   */
+  abstract Permutation create(int size, long seed);
+}
@@ -17,11 +17,16 @@
  */
 package com.stegosaurus.crypt;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * Builds and returns permutations of given sizes and using given random
  * seeds.
  * Java's own java.util.Random objects should be used to generate these
- * permutations.
+ * permutations, in the PermutationFormat the provider is configured with.
+ * <p>Providers may hang on to the permutations they build, so as to return
+ * them again, for as long as they see fit; permutations may be pinned to
+ * make sure they're kept around while they're being used heavily.</p>
  */
 public interface PermutationProvider {
   /**
@@ -32,4 +37,41 @@ public interface PermutationProvider {
    * @return the permutation.
    */
   Permutation getPermutation(int size, long seed);
+
+  /**
+   * Get a base permutation of the given size and seed: one derived from a
+   * key, rather than from a seed picked for a single embedding, which is
+   * thus likely to be requested over and over again, across requests.
+   * Providers may go to greater lengths to keep these around, but the
+   * permutation is otherwise identical to the one from getPermutation.
+   * @param size the number of elements in the desired permutation.
+   * @param seed the seed that should be used to generate it.
+   * @return the permutation.
+   */
+  Permutation getBasePermutation(int size, long seed);
+
+  /**
+   * Pin the permutation of the given size and seed, so that once it has been
+   * built it is kept around until unpinned, regardless of any other limits.
+   * Does not build the permutation itself. A permutation pinned several times
+   * has to be unpinned as many times.
+   * @param size the number of elements in the permutation.
+   * @param seed the seed of the permutation.
+   */
+  void pin(int size, long seed);
+
+  /**
+   * Undo one pinning of the permutation of the given size and seed.
+   * @param size the number of elements in the permutation.
+   * @param seed the seed of the permutation.
+   * @throws IllegalArgumentException if the permutation is not pinned.
+   */
+  void unpin(int size, long seed);
+
+  /**
+   * Get statistics on how well the provider is doing at returning the
+   * permutations it already has, rather than building them from scratch.
+   * @return the statistics.
+   */
+  CacheStats getStats();
 }
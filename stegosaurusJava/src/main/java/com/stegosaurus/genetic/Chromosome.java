@@ -57,6 +57,18 @@ public class Chromosome implements PMSequence {
     this.random = random;
   }
 
+  /**
+   * Make a copy of this chromosome, with the same genes, that may be changed
+   * without affecting this one. The copy shares this chromosome's random
+   * number generator.
+   * @return the copy.
+   */
+  public Chromosome copy() {
+    Chromosome retval = new Chromosome(size, random);
+    retval.set.or(set);
+    return retval;
+  }
+
   /**
    * Randomize the genes in this chromosome.
    * @return this object.
@@ -0,0 +1,79 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * Stops a run before it would go past a deadline, as measured by
+ * System.nanoTime(), so that its fittest individual may be made use of in
+ * time.
+ * Since runs may only be stopped in between generations, the policy stops
+ * a run as soon as another generation, as long as the average one so far,
+ * would not fit before the deadline. A run still goes at least one
+ * generation long, however short the time given.
+ * May be given another policy to stop runs whenever it says so, too.
+ */
+public class DeadlineStoppingPolicy implements StoppingPolicy {
+
+  /**
+   * The deadline, in System.nanoTime() terms.
+   */
+  private final long deadline;
+
+  /**
+   * The policy to also stop for; may be null.
+   */
+  private final StoppingPolicy other;
+
+  /**
+   * Construct a new policy.
+   * @param deadline the deadline, in System.nanoTime() terms.
+   * @param other another policy to stop whenever it says so; may be null.
+   */
+  public DeadlineStoppingPolicy(long deadline, StoppingPolicy other) {
+    this.deadline = deadline;
+    this.other = other;
+  }
+
+  /**
+   * Get the deadline.
+   * @return the deadline, in System.nanoTime() terms.
+   */
+  public long getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * Get the time left until the deadline.
+   * @return the time left, in nanoseconds; negative if it has gone by.
+   */
+  public long getRemainingNanos() {
+    return deadline - System.nanoTime();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean shouldStop(RunProgress progress) {
+    long average = progress.getElapsedNanos() / progress.getGenerations();
+    if(getRemainingNanos() <= average) {
+      return true;
+    }
+    return other != null && other.shouldStop(progress);
+  }
+}
@@ -71,7 +71,7 @@ public class DefaultGeneticAlgorithm<T extends Individual<T>> extends
    */
   @Override
   protected void sortPopulation(List<? extends Individual<T>> pop) {
-    Collections.sort(pop);
+    Collections.sort(pop, getRanking());
   }
 
   /**
@@ -0,0 +1,49 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * Stops a run once it has evaluated a given number of individuals, so as to
+ * bound the cost of a run whatever the population size.
+ * The check only takes place in between generations, so the last one may
+ * take the run over the limit.
+ * @see RunProgress#getEvaluations()
+ */
+public class EvaluationStoppingPolicy implements StoppingPolicy {
+
+  /**
+   * The number of evaluations to stop after.
+   */
+  private final long maxEvaluations;
+
+  /**
+   * Construct a new policy.
+   * @param maxEvaluations the number of evaluations to stop after.
+   */
+  public EvaluationStoppingPolicy(long maxEvaluations) {
+    this.maxEvaluations = maxEvaluations;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean shouldStop(RunProgress progress) {
+    return progress.getEvaluations() >= maxEvaluations;
+  }
+}
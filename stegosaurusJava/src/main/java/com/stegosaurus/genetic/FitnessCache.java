@@ -0,0 +1,82 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Remembers the fitness of the chromosomes simulated by a genetic algorithm,
+ * so that an individual that ends up with a chromosome already seen need not
+ * be simulated all over again.
+ * <p>A cache may be shared by several runs, or several algorithms, as long
+ * as they all work out the fitness of any given chromosome the same way:
+ * that is, as long as they use the same individual type, on the same
+ * problem.</p>
+ * <p>The cache is bounded, and forgets the chromosomes it has not been asked
+ * about for the longest once it is full. It is safe to use from several
+ * threads at once.</p>
+ * @see GeneticAlgorithm#setFitnessCache
+ */
+public class FitnessCache {
+
+  /**
+   * The fitness of every chromosome remembered.
+   */
+  private final Cache<Chromosome, Double> cache;
+
+  /**
+   * CTOR.
+   * @param maximumSize the number of chromosomes to remember at most.
+   */
+  public FitnessCache(long maximumSize) {
+    cache = CacheBuilder.newBuilder()
+      .maximumSize(maximumSize)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Get the fitness of the chromosome given, if remembered.
+   * @param chromosome the chromosome.
+   * @return the fitness, or null if not remembered.
+   */
+  public Double get(Chromosome chromosome) {
+    return cache.getIfPresent(chromosome);
+  }
+
+  /**
+   * Remember the fitness of the chromosome given. The chromosome is copied,
+   * so it may go on to be changed.
+   * @param chromosome the chromosome.
+   * @param fitness its fitness.
+   */
+  public void put(Chromosome chromosome, double fitness) {
+    cache.put(chromosome.copy(), fitness);
+  }
+
+  /**
+   * Get the statistics of this cache: how many times a fitness was found
+   * in it, and how many times it was not.
+   * @return the statistics.
+   */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+}
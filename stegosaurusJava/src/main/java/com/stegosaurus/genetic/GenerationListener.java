@@ -0,0 +1,42 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+import java.util.List;
+
+/**
+ * Gets told about the progress of a genetic algorithm's run.
+ * Listeners are invoked by the thread running the algorithm.
+ * @param <T> the individual type of the algorithm.
+ */
+public interface GenerationListener<T extends Individual<T>> {
+  /**
+   * A generation is about to be simulated: every individual in the
+   * population has its chromosome for the generation by now, but none of
+   * them has been simulated.
+   * @param population the population.
+   */
+  void generationStarting(List<? extends Individual<T>> population);
+
+  /**
+   * The run is over, whether because it is done or because it was cut short
+   * by an exception; no further generations will be simulated.
+   * @param population the population.
+   */
+  void runFinished(List<? extends Individual<T>> population);
+}
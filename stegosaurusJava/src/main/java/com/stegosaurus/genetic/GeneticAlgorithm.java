@@ -17,9 +17,12 @@
  */
 package com.stegosaurus.genetic;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
 
 /**
  * Any genetic algorithm: attempts to find the optimal solution to a problem
@@ -49,6 +52,31 @@ import java.util.Random;
  * conceptualized as the probability that any given gene in a chromosome will be
  * mutated.
  * </p>
+ *
+ * <p>
+ * A run may be cancelled by interrupting the thread running it: the
+ * interruption is noticed in between generations, and the run is abandoned
+ * by throwing a CancellationException.
+ * </p>
+ *
+ * <p>
+ * GenerationListeners may be added to find out about the progress of a run.
+ * </p>
+ *
+ * <p>
+ * A run may be given a StoppingPolicy, to cut it short once it seems to
+ * have converged.
+ * </p>
+ *
+ * <p>
+ * A FitnessCache may be set to spare the simulation of individuals whose
+ * chromosomes have been seen before.
+ * </p>
+ *
+ * <p>
+ * A SurrogateScreening may be set to simulate only the individuals a cheap
+ * estimate of the fitness deems most promising each generation.
+ * </p>
  * 
  * @param <T> the <em>Individual</em> type used in this particular algorithm.
  */
@@ -92,6 +120,36 @@ public abstract class GeneticAlgorithm<T extends Individual<T>> {
    */
   protected SelectionOperator<T> selection;
 
+  /**
+   * The listeners to tell about the progress of runs.
+   */
+  private final List<GenerationListener<T>> listeners = new ArrayList<>();
+
+  /**
+   * The cache to look up the fitness of individuals in; null if none.
+   */
+  private FitnessCache fitnessCache;
+
+  /**
+   * The screening to spare the simulation of unpromising individuals with;
+   * null if none.
+   */
+  private SurrogateScreening screening;
+
+  /**
+   * The order to sort the population in.
+   */
+  private final Comparator<Individual<T>> ranking =
+    new Comparator<Individual<T>>() {
+      public int compare(Individual<T> a, Individual<T> b) {
+        boolean standInA = holdsStandIn(a);
+        if(standInA != holdsStandIn(b)) {
+          return standInA ? 1 : -1;
+        }
+        return a.compareTo(b);
+      }
+    };
+
   /**
    * Construct a new Genetic Algorithm.
    * @param factory the IndividualFactory that'll build Individuals.
@@ -134,14 +192,18 @@ public abstract class GeneticAlgorithm<T extends Individual<T>> {
    */
   public Individual<T> runWithThreshold(double threshold) {
     List<? extends Individual<T>> population = getPopulation();
-    runGeneration();
-    double best = population.get(0).calculateFitness();
-    while(best > threshold) {
-      nextGeneration();
+    try {
       runGeneration();
-      best = population.get(0).calculateFitness();
+      double best = population.get(0).calculateFitness();
+      while(best > threshold) {
+        nextGeneration();
+        runGeneration();
+        best = population.get(0).calculateFitness();
+      }
+      return population.get(0);
+    } finally {
+      fireRunFinished();
     }
-    return population.get(0);
   }
 
   /**
@@ -152,12 +214,82 @@ public abstract class GeneticAlgorithm<T extends Individual<T>> {
    * @return the fittest individual.
    */
   public Individual<T> runNGenerations(int n) {
-    runGeneration();
-    for(int i = 1; i < n; i++) {
-      nextGeneration();
-      runGeneration();
+    return runNGenerations(n, null);
+  }
+
+  /**
+   * Run this algorithm for at most the number of generations given, but stop
+   * sooner if the stopping policy given says so after any of them; return
+   * the fittest individual produced.
+   *
+   * @param n the maximum number of generations; should be greater than 0.
+   * @param policy the policy to consult after every generation; null to
+   *    run every generation regardless.
+   * @return the fittest individual.
+   */
+  public Individual<T> runNGenerations(int n, StoppingPolicy policy) {
+    List<? extends Individual<T>> population = getPopulation();
+    RunProgress progress = new RunProgress();
+    try {
+      int screenedOut = runGeneration();
+      progress.recordGeneration(population.get(0).calculateFitness(),
+                                population.size() - screenedOut);
+      for(int i = 1; i < n; i++) {
+        if(policy != null && policy.shouldStop(progress)) {
+          break;
+        }
+        nextGeneration();
+        screenedOut = runGeneration();
+        /* The elites have been simulated before, and kept their fitness */
+        progress.recordGeneration(population.get(0).calculateFitness(),
+                                  population.size() - elites - screenedOut);
+      }
+      return population.get(0);
+    } finally {
+      fireRunFinished();
+    }
+  }
+
+  /**
+   * Add a listener to be told about the progress of any runs of this
+   * algorithm.
+   * @param listener the listener.
+   */
+  public void addGenerationListener(GenerationListener<T> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Set a cache for the fitness of the individuals built by this algorithm,
+   * so that those whose chromosomes are in the cache are not simulated.
+   * Only affects individuals built after the call, so should be called
+   * before init().
+   * @param cache the cache; null for none.
+   */
+  public void setFitnessCache(FitnessCache cache) {
+    fitnessCache = cache;
+  }
+
+  /**
+   * Set a surrogate screening for the individuals built by this algorithm,
+   * so that only the most promising of those needing evaluation are
+   * simulated each generation. Only affects individuals built after the
+   * call, so should be called before init().
+   * The individuals screened out rank after every simulated one, whatever
+   * the range of the fitness values.
+   * @param screening the screening; null for none.
+   */
+  public void setSurrogateScreening(SurrogateScreening screening) {
+    this.screening = screening;
+  }
+
+  /**
+   * Tell the listeners that the run is over.
+   */
+  private void fireRunFinished() {
+    for(GenerationListener<T> l : listeners) {
+      l.runFinished(getPopulation());
     }
-    return getPopulation().get(0);
   }
 
   /**
@@ -167,7 +299,89 @@ public abstract class GeneticAlgorithm<T extends Individual<T>> {
   protected Individual<T> buildIndividual() {
     Chromosome c = new Chromosome(chromosomeSize, random);
     c.randomize();
-    return factory.build(c);
+    Individual<T> retval = factory.build(c);
+    if(fitnessCache != null) {
+      retval = new MemoizedIndividual<>(retval, fitnessCache);
+    }
+    if(screening != null) {
+      retval = new ScreenedIndividual<>(retval, screening);
+    }
+    return retval;
+  }
+
+  /**
+   * Get the order to sort the population in: by fitness, fittest first,
+   * except that individuals holding stand-in fitness values from a
+   * surrogate screening go after every other, in the order of their
+   * stand-ins. Nothing need then be assumed about the range of the true
+   * fitness values.
+   * @return the ordering.
+   */
+  protected Comparator<Individual<T>> getRanking() {
+    return ranking;
+  }
+
+  /**
+   * Get the screened individual at the core of the individual given, if any.
+   * @param individual the individual, as found in the population.
+   * @return the screened individual, or null if it isn't one.
+   */
+  private ScreenedIndividual<T> asScreened(Individual<T> individual) {
+    if(individual instanceof ParallelIndividual) {
+      individual = ((ParallelIndividual<T>) individual).getDecorated();
+    }
+    if(individual instanceof ScreenedIndividual) {
+      return (ScreenedIndividual<T>) individual;
+    }
+    return null;
+  }
+
+  /**
+   * Get whether the individual given holds a stand-in fitness, having been
+   * screened out.
+   * @param individual the individual, as found in the population.
+   * @return whether its fitness is a stand-in.
+   */
+  private boolean holdsStandIn(Individual<T> individual) {
+    ScreenedIndividual<T> s = asScreened(individual);
+    return s != null && s.isProvisional();
+  }
+
+  /**
+   * Screen the individuals in the population given that need evaluating:
+   * estimate their fitness with the surrogate, leave the most promising ones
+   * to be simulated, and give the rest stand-in fitness values, being their
+   * positions in the order of their estimates. The ranking keeps them after
+   * every simulated individual.
+   * @param population the population.
+   * @return the number of individuals screened out.
+   */
+  private int screen(List<? extends Individual<T>> population) {
+    List<ScreenedIndividual<T>> candidates = new ArrayList<>();
+    for(Individual<T> i : population) {
+      ScreenedIndividual<T> s = asScreened(i);
+      if(s != null && s.needsEvaluation()) {
+        s.estimate();
+        candidates.add(s);
+      }
+    }
+    Collections.sort(candidates, new Comparator<ScreenedIndividual<T>>() {
+      public int compare(ScreenedIndividual<T> a, ScreenedIndividual<T> b) {
+        return Double.compare(a.getEstimate(), b.getEstimate());
+      }
+    });
+    int simulated = screening.toSimulate(candidates.size());
+    int screenedOut = candidates.size() - simulated;
+    for(int i = 0; i < candidates.size(); i++) {
+      ScreenedIndividual<T> s = candidates.get(i);
+      if(i < simulated) {
+        s.screen(Double.NaN);
+      } else {
+        s.screen(i - simulated + 1);
+      }
+    }
+    screening.recordScreenedOut(screenedOut);
+    return screenedOut;
   }
 
   /**
@@ -186,9 +400,10 @@ public abstract class GeneticAlgorithm<T extends Individual<T>> {
   protected abstract void simulateIndividual(int individual);
 
   /**
-   * Sort the population given by fitness value. This implies actually
-   * calculating the fitness for the entire population, unless it has already
-   * been obtained, something this class does not otherwise do explicitly.
+   * Sort the population given by fitness value, in the order given by
+   * getRanking(). This implies actually calculating the fitness for the
+   * entire population, unless it has already been obtained, something this
+   * class does not otherwise do explicitly.
    *
    * @param pop the population to sort.
    */
@@ -208,16 +423,38 @@ public abstract class GeneticAlgorithm<T extends Individual<T>> {
   public abstract void init();
 
   /**
-   * Run a generation of this algorithm: run the simulation, and sort by
-   * fitness value.
+   * Give up on the current run if the thread running it has been interrupted.
+   * The interrupted status of the thread is left as is.
+   *
+   * @throws CancellationException if the thread has been interrupted.
+   */
+  protected void checkForCancellation() {
+    if(Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Genetic algorithm interrupted");
+    }
+  }
+
+  /**
+   * Run a generation of this algorithm: screen the population if there's a
+   * surrogate screening, run the simulation, and sort by fitness value.
+   * @return the number of individuals screened out.
    */
-  private void runGeneration() {
+  private int runGeneration() {
+    checkForCancellation();
     List<? extends Individual<T>> population = getPopulation();
     prepareGeneration(population);
+    int screenedOut = 0;
+    if(screening != null) {
+      screenedOut = screen(population);
+    }
+    for(GenerationListener<T> l : listeners) {
+      l.generationStarting(population);
+    }
     for(int i = 0; i < population.size(); i++) {
       simulateIndividual(i);
     }
     sortPopulation(population);
+    return screenedOut;
   }
 
   /**
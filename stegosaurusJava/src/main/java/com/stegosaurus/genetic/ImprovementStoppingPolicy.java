@@ -0,0 +1,69 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * Stops a run once the last few generations, taken together, have improved
+ * the best fitness by less than a given fraction of what it was before them.
+ * If the best fitness was 0 before them, improvements are measured in
+ * absolute terms instead.
+ */
+public class ImprovementStoppingPolicy implements StoppingPolicy {
+
+  /**
+   * The number of generations to measure the improvement over.
+   */
+  private final int window;
+
+  /**
+   * The smallest relative improvement to carry on for.
+   */
+  private final double epsilon;
+
+  /**
+   * Construct a new policy.
+   * @param window the number of generations to measure the improvement
+   *    over; must be positive.
+   * @param epsilon the smallest relative improvement over those generations
+   *    for the run to carry on.
+   */
+  public ImprovementStoppingPolicy(int window, double epsilon) {
+    if(window < 1) {
+      throw new IllegalArgumentException("Window must be at least 1");
+    }
+    this.window = window;
+    this.epsilon = epsilon;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean shouldStop(RunProgress progress) {
+    final int last = progress.getGenerations() - 1;
+    if(last < window) {
+      return false;
+    }
+    double before = progress.getBestFitness(last - window);
+    double improvement = before - progress.getBestFitness();
+    if(before != 0) {
+      improvement /= Math.abs(before);
+    }
+    return improvement < epsilon;
+  }
+}
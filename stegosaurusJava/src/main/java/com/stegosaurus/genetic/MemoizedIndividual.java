@@ -0,0 +1,129 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * Wraps around Individual instances to look their fitness up in a fitness
+ * cache before simulating them, and to remember it there after.
+ * <p>Like the individuals it wraps, it only simulates again after being
+ * crossed over or mutated.</p>
+ * @see FitnessCache
+ */
+class MemoizedIndividual<T extends Individual<T>> implements Individual<T> {
+
+  /**
+   * The individual this instance wraps around.
+   */
+  private final Individual<T> decorated;
+
+  /**
+   * The cache to look the fitness up in.
+   */
+  private final FitnessCache cache;
+
+  /**
+   * The fitness, as of the last simulation.
+   */
+  private double fitness;
+
+  /**
+   * Whether we're unable to get the fitness until simulate has been called.
+   */
+  private boolean needsSimulation = true;
+
+  /**
+   * CTOR.
+   * @param decorated the individual to wrap around.
+   * @param cache the cache to look the fitness up in.
+   */
+  MemoizedIndividual(Individual<T> decorated, FitnessCache cache) {
+    this.decorated = decorated;
+    this.cache = cache;
+  }
+
+  /**
+   * {@inheritDoc}
+   * The simulation is skipped if the fitness of the chromosome is in the
+   * cache already.
+   */
+  public synchronized Individual<T> simulate() {
+    if(needsSimulation) {
+      Chromosome chromosome = decorated.getChromosome();
+      Double cached = cache.get(chromosome);
+      if(cached != null) {
+        fitness = cached;
+      } else {
+        fitness = decorated.simulate().calculateFitness();
+        cache.put(chromosome, fitness);
+      }
+      needsSimulation = false;
+    }
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized double calculateFitness() {
+    if(needsSimulation) {
+      throw new IllegalStateException("Simulation needs to be run.");
+    }
+    return fitness;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void crossover(Individual<T> other) {
+    synchronized(this) {
+      needsSimulation = true;
+    }
+    if(other instanceof MemoizedIndividual) {
+      MemoizedIndividual<T> mate = (MemoizedIndividual<T>) other;
+      synchronized(mate) {
+        mate.needsSimulation = true;
+      }
+      decorated.crossover(mate.decorated);
+    } else {
+      decorated.crossover(other);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Chromosome getChromosome() {
+    return decorated.getChromosome();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized Individual<T> mutate(double rate) {
+    decorated.mutate(rate);
+    needsSimulation = true;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int compareTo(Individual<T> other) {
+    return Double.compare(calculateFitness(), other.calculateFitness());
+  }
+}
@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.CancellationException;
 
 import com.google.common.util.concurrent.ListeningExecutorService;
 
@@ -82,10 +83,19 @@ class ParallelGA<T extends Individual<T>> extends GeneticAlgorithm<T> {
 
   /**
    * {@inheritDoc}
+   * If the wait for the fitness calculations is interrupted, those still
+   * pending are cancelled so as not to hog the executor service.
    */
   @Override
   protected void sortPopulation(List<? extends Individual<T>> pop) {
-    Collections.sort(pop);
+    try {
+      Collections.sort(pop, getRanking());
+    } catch(CancellationException e) {
+      for(ParallelIndividual<T> individual : population) {
+        individual.cancelFitnessCalculation();
+      }
+      throw e;
+    }
   }
 
   /**
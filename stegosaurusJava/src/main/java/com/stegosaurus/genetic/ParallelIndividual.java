@@ -18,6 +18,7 @@
 package com.stegosaurus.genetic;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 
 import com.google.common.util.concurrent.ListenableFuture;
@@ -50,6 +51,14 @@ public class ParallelIndividual<T extends Individual<T>>
     this.decorated = decorated;
   }
 
+  /**
+   * Get the individual this instance wraps around.
+   * @return the decorated individual.
+   */
+  Individual<T> getDecorated() {
+    return decorated;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -66,7 +75,10 @@ public class ParallelIndividual<T extends Individual<T>>
     if(fitnessFuture != null) {
       try {
         return fitnessFuture.get();
-      } catch(InterruptedException | ExecutionException e) {
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException("Interrupted awaiting fitness");
+      } catch(ExecutionException e) {
         throw new RuntimeException(e);
       }
     } else {
@@ -90,6 +102,16 @@ public class ParallelIndividual<T extends Individual<T>>
     });
   }
 
+  /**
+   * Cancel the fitness calculation started for this individual, if it's
+   * still underway or has yet to start.
+   */
+  public synchronized void cancelFitnessCalculation() {
+    if(fitnessFuture != null) {
+      fitnessFuture.cancel(true);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,120 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+import gnu.trove.list.TDoubleList;
+import gnu.trove.list.array.TDoubleArrayList;
+
+/**
+ * The progress of a single run of a genetic algorithm, as given to its
+ * StoppingPolicy: how many generations have been run, how long and how many
+ * fitness evaluations they took, and the fitness of the fittest individual
+ * after each of them.
+ * Remember that fitter individuals have smaller fitness values.
+ */
+public final class RunProgress {
+
+  /**
+   * The fitness of the fittest individual after each generation.
+   */
+  private final TDoubleList bestFitness = new TDoubleArrayList();
+
+  /**
+   * The number of individuals that have had to be evaluated.
+   */
+  private long evaluations = 0;
+
+  /**
+   * The number of generations in a row that have not improved on the best
+   * fitness so far.
+   */
+  private int generationsSinceImprovement = 0;
+
+  /**
+   * The value of System.nanoTime() when the run started.
+   */
+  private final long start = System.nanoTime();
+
+  /**
+   * Record a generation that has just been run.
+   * @param fitness the fitness of the fittest individual after it.
+   * @param evaluated the number of individuals that had to be evaluated.
+   */
+  void recordGeneration(double fitness, int evaluated) {
+    if(bestFitness.isEmpty() || fitness < getBestFitness()) {
+      generationsSinceImprovement = 0;
+    } else {
+      generationsSinceImprovement++;
+    }
+    bestFitness.add(fitness);
+    evaluations += evaluated;
+  }
+
+  /**
+   * Get the number of generations run so far.
+   * @return the number of generations.
+   */
+  public int getGenerations() {
+    return bestFitness.size();
+  }
+
+  /**
+   * Get the number of individuals that have had to be evaluated so far.
+   * Elites carry their fitness over from one generation to the next, and
+   * so only count towards this the first time around. Individuals whose
+   * fitness is found in a fitness cache do count, though.
+   * @return the number of evaluations.
+   */
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  /**
+   * Get the time elapsed since the run started.
+   * @return the time elapsed, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Get the fitness of the fittest individual so far.
+   * @return the best fitness.
+   */
+  public double getBestFitness() {
+    return bestFitness.get(bestFitness.size() - 1);
+  }
+
+  /**
+   * Get the fitness of the fittest individual after the generation given.
+   * @param generation the generation, counting from 0.
+   * @return the best fitness at the time.
+   */
+  public double getBestFitness(int generation) {
+    return bestFitness.get(generation);
+  }
+
+  /**
+   * Get the number of generations in a row, up to and including the last
+   * one, that have not improved on the best fitness so far.
+   * @return the number of generations.
+   */
+  public int getGenerationsSinceImprovement() {
+    return generationsSinceImprovement;
+  }
+}
@@ -0,0 +1,200 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * Wraps around Individual instances so that a surrogate screening may spare
+ * their simulation.
+ * <p>Before each generation is simulated, the genetic algorithm screens the
+ * individuals that need evaluating: the ones it picks are simulated as
+ * usual, while the rest take the stand-in fitness it gives them instead.
+ * A stand-in fitness is provisional, so individuals holding one are
+ * screened again the next generation, even if unchanged.</p>
+ * <p>Like the individuals it wraps, it only simulates again after being
+ * crossed over or mutated, or screened.</p>
+ * @see SurrogateScreening
+ */
+class ScreenedIndividual<T extends Individual<T>> implements Individual<T> {
+
+  /**
+   * The individual this instance wraps around.
+   */
+  private final Individual<T> decorated;
+
+  /**
+   * The screening to report simulated individuals to.
+   */
+  private final SurrogateScreening screening;
+
+  /**
+   * The fitness, as of the last simulation.
+   */
+  private double fitness;
+
+  /**
+   * Whether we're unable to get the fitness until simulate has been called.
+   */
+  private boolean needsSimulation = true;
+
+  /**
+   * Whether the fitness is a stand-in, rather than the result of simulating
+   * the decorated individual.
+   */
+  private boolean provisional = false;
+
+  /**
+   * The surrogate's estimate of the fitness, as of the last screening; NaN
+   * if not screened since the last simulation.
+   */
+  private double estimate = Double.NaN;
+
+  /**
+   * The stand-in fitness to take at the next simulation; NaN to simulate
+   * the decorated individual.
+   */
+  private double standIn = Double.NaN;
+
+  /**
+   * CTOR.
+   * @param decorated the individual to wrap around.
+   * @param screening the screening to report simulated individuals to.
+   */
+  ScreenedIndividual(Individual<T> decorated, SurrogateScreening screening) {
+    this.decorated = decorated;
+    this.screening = screening;
+  }
+
+  /**
+   * Get whether this individual's fitness is missing or provisional, and
+   * so whether it should be screened before the next simulation.
+   * @return whether it needs evaluating.
+   */
+  synchronized boolean needsEvaluation() {
+    return needsSimulation || provisional;
+  }
+
+  /**
+   * Get whether this individual's fitness is a stand-in, rather than the
+   * result of simulating the decorated individual.
+   * @return whether it is provisional.
+   */
+  synchronized boolean isProvisional() {
+    return provisional;
+  }
+
+  /**
+   * Estimate this individual's fitness with the screening's surrogate, and
+   * remember the estimate until the next simulation.
+   */
+  synchronized void estimate() {
+    estimate = screening.getSurrogate().estimateFitness(getChromosome());
+  }
+
+  /**
+   * Get the surrogate's estimate of this individual's fitness, as of the
+   * last screening.
+   * @return the estimate; NaN if not estimated since the last simulation.
+   */
+  synchronized double getEstimate() {
+    return estimate;
+  }
+
+  /**
+   * Decide what the next simulation will do: simulate the decorated
+   * individual, or just take on the stand-in fitness given.
+   * @param standIn the fitness to take on; NaN to simulate.
+   */
+  synchronized void screen(double standIn) {
+    this.standIn = standIn;
+    needsSimulation = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * The decorated individual is not simulated if this one was screened out.
+   */
+  public synchronized Individual<T> simulate() {
+    if(needsSimulation) {
+      if(Double.isNaN(standIn)) {
+        fitness = decorated.simulate().calculateFitness();
+        provisional = false;
+        if(!Double.isNaN(estimate)) {
+          screening.recordSimulated(estimate, fitness);
+        }
+      } else {
+        fitness = standIn;
+        provisional = true;
+      }
+      estimate = Double.NaN;
+      standIn = Double.NaN;
+      needsSimulation = false;
+    }
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized double calculateFitness() {
+    if(needsSimulation) {
+      throw new IllegalStateException("Simulation needs to be run.");
+    }
+    return fitness;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void crossover(Individual<T> other) {
+    synchronized(this) {
+      needsSimulation = true;
+    }
+    if(other instanceof ScreenedIndividual) {
+      ScreenedIndividual<T> mate = (ScreenedIndividual<T>) other;
+      synchronized(mate) {
+        mate.needsSimulation = true;
+      }
+      decorated.crossover(mate.decorated);
+    } else {
+      decorated.crossover(other);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Chromosome getChromosome() {
+    return decorated.getChromosome();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized Individual<T> mutate(double rate) {
+    decorated.mutate(rate);
+    needsSimulation = true;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int compareTo(Individual<T> other) {
+    return Double.compare(calculateFitness(), other.calculateFitness());
+  }
+}
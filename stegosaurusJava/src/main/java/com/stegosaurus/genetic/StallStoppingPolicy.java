@@ -0,0 +1,50 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * Stops a run once it has gone a number of generations without producing
+ * an individual any fitter than the fittest it already had.
+ */
+public class StallStoppingPolicy implements StoppingPolicy {
+
+  /**
+   * The number of generations without improvement to stop after.
+   */
+  private final int generations;
+
+  /**
+   * Construct a new policy.
+   * @param generations the number of generations without improvement to
+   *    stop after; must be positive.
+   */
+  public StallStoppingPolicy(int generations) {
+    if(generations < 1) {
+      throw new IllegalArgumentException("Must allow at least one generation");
+    }
+    this.generations = generations;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean shouldStop(RunProgress progress) {
+    return progress.getGenerationsSinceImprovement() >= generations;
+  }
+}
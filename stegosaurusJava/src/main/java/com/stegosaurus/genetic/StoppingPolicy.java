@@ -0,0 +1,35 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * Decides when a run of a genetic algorithm may be cut short, because
+ * carrying on is unlikely to be worth it.
+ * Policies are asked after every generation, and should keep no state of
+ * their own, so that a single policy may be shared by any number of runs:
+ * everything they need to know about a run is in its RunProgress.
+ */
+public interface StoppingPolicy {
+  /**
+   * Decide whether the run whose progress is given should stop here, with
+   * the fittest individual it has produced so far.
+   * @param progress the progress of the run; at least one generation long.
+   * @return whether to stop.
+   */
+  boolean shouldStop(RunProgress progress);
+}
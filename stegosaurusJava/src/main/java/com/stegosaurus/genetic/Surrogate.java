@@ -0,0 +1,39 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * A cheap stand-in for the fitness function of some individual type, used to
+ * screen each generation so that only the most promising individuals get
+ * simulated.
+ * Estimates need not be accurate, but they should order chromosomes much
+ * like their true fitness would; the closer they are to the true fitness,
+ * the more meaningful the correlation recorded by the SurrogateScreening.
+ * Surrogates should keep no state of their own that depends on the
+ * chromosomes estimated.
+ * @see SurrogateScreening
+ */
+public interface Surrogate {
+  /**
+   * Estimate the fitness of an individual with the chromosome given,
+   * without simulating it.
+   * @param chromosome the chromosome; must not be changed.
+   * @return the estimated fitness, smaller for fitter chromosomes.
+   */
+  double estimateFitness(Chromosome chromosome);
+}
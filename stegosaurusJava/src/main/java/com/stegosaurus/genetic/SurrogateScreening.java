@@ -0,0 +1,190 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+/**
+ * Has a genetic algorithm rank the individuals it must evaluate each
+ * generation with a Surrogate, and fully simulate only the top fraction of
+ * them.
+ * <p>The rest are screened out: they are not simulated, and rank after
+ * every individual that was, in the order the surrogate gave them. They
+ * take part in selection like any other, but cannot displace an individual
+ * whose fitness is known; should one of them end up an elite anyway, it is
+ * screened again the next generation.</p>
+ * <p>Keeps track of how the estimates of the individuals that were
+ * simulated correlate with their true fitness, so that the worth of the
+ * surrogate can be judged. A screening may be shared by several runs, and
+ * is safe to use from several threads at once.</p>
+ * @see GeneticAlgorithm#setSurrogateScreening
+ */
+public final class SurrogateScreening {
+
+  /**
+   * The surrogate to rank individuals with.
+   */
+  private final Surrogate surrogate;
+
+  /**
+   * The fraction of the individuals to evaluate that get simulated.
+   */
+  private final double fraction;
+
+  /**
+   * The number of individuals screened out.
+   */
+  private long screenedOut = 0;
+
+  /**
+   * The number of individuals simulated after being estimated.
+   */
+  private long simulated = 0;
+
+  /**
+   * The sum of the estimates of the individuals simulated.
+   */
+  private double sumEstimates = 0;
+
+  /**
+   * The sum of the true fitness of the individuals simulated.
+   */
+  private double sumFitness = 0;
+
+  /**
+   * The sum of the squares of the estimates of the individuals simulated.
+   */
+  private double sumSquaredEstimates = 0;
+
+  /**
+   * The sum of the squares of the true fitness of the individuals simulated.
+   */
+  private double sumSquaredFitness = 0;
+
+  /**
+   * The sum of the products of the estimate and the true fitness of each
+   * individual simulated.
+   */
+  private double sumProducts = 0;
+
+  /**
+   * CTOR.
+   * @param surrogate the surrogate to rank individuals with.
+   * @param fraction the fraction of the individuals to evaluate each
+   *    generation that get simulated; at least one always is.
+   */
+  public SurrogateScreening(Surrogate surrogate, double fraction) {
+    if(!(fraction > 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("Fraction must be in (0, 1]");
+    }
+    this.surrogate = surrogate;
+    this.fraction = fraction;
+  }
+
+  /**
+   * Get the surrogate to rank individuals with.
+   * @return the surrogate.
+   */
+  public Surrogate getSurrogate() {
+    return surrogate;
+  }
+
+  /**
+   * Get the fraction of the individuals to evaluate that get simulated.
+   * @return the fraction.
+   */
+  public double getFraction() {
+    return fraction;
+  }
+
+  /**
+   * Get the number of individuals out of the count given that should be
+   * simulated.
+   * @param count the number of individuals to evaluate.
+   * @return the number to simulate.
+   */
+  int toSimulate(int count) {
+    return Math.min(count, Math.max(1, (int) Math.ceil(count * fraction)));
+  }
+
+  /**
+   * Record an individual that was simulated after being estimated.
+   * @param estimate the surrogate's estimate of its fitness.
+   * @param fitness its true fitness.
+   */
+  synchronized void recordSimulated(double estimate, double fitness) {
+    simulated++;
+    sumEstimates += estimate;
+    sumFitness += fitness;
+    sumSquaredEstimates += estimate * estimate;
+    sumSquaredFitness += fitness * fitness;
+    sumProducts += estimate * fitness;
+  }
+
+  /**
+   * Record some individuals that were screened out.
+   * @param count the number of them.
+   */
+  synchronized void recordScreenedOut(int count) {
+    screenedOut += count;
+  }
+
+  /**
+   * Get the number of individuals that were simulated after being estimated.
+   * @return the number of them.
+   */
+  public synchronized long getSimulatedCount() {
+    return simulated;
+  }
+
+  /**
+   * Get the number of individuals that were screened out, and so spared a
+   * simulation.
+   * @return the number of them.
+   */
+  public synchronized long getScreenedOutCount() {
+    return screenedOut;
+  }
+
+  /**
+   * Get the Pearson correlation between the surrogate's estimates and the
+   * true fitness of the individuals simulated. Only the individuals the
+   * surrogate deemed most promising get simulated, so this says how well
+   * it tells good individuals apart, rather than good from bad ones.
+   * @return the correlation, or NaN if there is too little to work it out
+   *    from.
+   */
+  public synchronized double getCorrelation() {
+    double covariance = simulated * sumProducts - sumEstimates * sumFitness;
+    double estimateVariance = simulated * sumSquaredEstimates -
+      sumEstimates * sumEstimates;
+    double fitnessVariance = simulated * sumSquaredFitness -
+      sumFitness * sumFitness;
+    if(simulated < 2 || estimateVariance <= 0 || fitnessVariance <= 0) {
+      return Double.NaN;
+    }
+    return covariance / Math.sqrt(estimateVariance * fitnessVariance);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized String toString() {
+    return String.format("%d simulated, %d screened out, correlation %.3f",
+        simulated, screenedOut, getCorrelation());
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An embedder whose optimization may be bounded in time: it does as well
+ * as it can within a budget, and always comes up with a valid stego image,
+ * even if it has no time at all to optimize anything.
+ */
+public interface BudgetedEmbedder extends Embedder {
+  /**
+   * Embed according to the embed request given, within the time given.
+   * The budget bounds the optimization; the embedding itself, and whatever
+   * optimization step was underway when the budget ran out, may take the
+   * embed somewhat past it.
+   * @param request the request
+   * @param budget the time budget
+   * @param unit the unit of the budget
+   * @return the image containing the message, and how the embed went
+   */
+  BudgetedEmbedding embed(EmbedRequest request, long budget, TimeUnit unit);
+}
@@ -0,0 +1,119 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers;
+
+import com.stegosaurus.cpp.CoefficientAccessor;
+
+/**
+ * A copy, held on the Java heap, of the usable coefficients of an image (ie
+ * those that are neither DC nor zero), along with their true indices.
+ * <p>Taking the snapshot costs one trip across JNI; after that, walking the
+ * coefficients costs none, which makes it the thing to use when the same
+ * image is to be walked over and over again without being modified.</p>
+ * <p>Alongside the values, the snapshot keeps a bitmap of their parities,
+ * which is all that is needed to figure out how many changes an embedding
+ * would require.</p>
+ * <p>The snapshot is of the image as it was when the snapshot was taken, and
+ * does not reflect later changes. It is never modified, so it may be shared
+ * freely between threads.</p>
+ */
+public final class CoefficientSnapshot {
+  /**
+   * The true indices of the usable coefficients, in the same order as the
+   * accessor's array of usable coefficients.
+   */
+  private final int[] indices;
+
+  /**
+   * The values of the usable coefficients.
+   */
+  private final short[] values;
+
+  /**
+   * The parities of the usable coefficients, one bit each, 64 to a word:
+   * the parity of the coefficient at position i is bit i % 64 of word i / 64.
+   */
+  private final long[] parities;
+
+  /**
+   * Take a snapshot of the usable coefficients reachable through the
+   * accessor given.
+   * @param acc the coefficient accessor.
+   */
+  public CoefficientSnapshot(CoefficientAccessor acc) {
+    final int size = acc.getUsableCoefficientCount();
+    int[] positions = new int[size];
+    for(int i = 0; i < size; i++) {
+      positions[i] = i;
+    }
+    indices = new int[size];
+    values = new short[size];
+    acc.gatherUsableCoefficients(positions, indices, values, size);
+    parities = new long[(size + Long.SIZE - 1) / Long.SIZE];
+    for(int i = 0; i < size; i++) {
+      parities[i >>> 6] |= ((long) parityOf(values[i])) << i;
+    }
+  }
+
+  /**
+   * Get the parity of the coefficient value given, as seen by the PM1
+   * algorithms: negative coefficients have their parities flipped.
+   * @param value the coefficient value.
+   * @return the parity, 0 or 1.
+   */
+  public static int parityOf(int value) {
+    return (value < 0 ? ~value : value) & 1;
+  }
+
+  /**
+   * Get the number of usable coefficients in the snapshot.
+   * @return the size of the snapshot.
+   */
+  public int getSize() {
+    return indices.length;
+  }
+
+  /**
+   * Get the true index (ie the index in the coefficient accessor) of the
+   * usable coefficient at the position given.
+   * @param position the position, among the usable coefficients.
+   * @return the true index.
+   */
+  public int getIndex(int position) {
+    return indices[position];
+  }
+
+  /**
+   * Get the value of the usable coefficient at the position given.
+   * @param position the position, among the usable coefficients.
+   * @return the value.
+   */
+  public short getValue(int position) {
+    return values[position];
+  }
+
+  /**
+   * Get the parity of the usable coefficient at the position given.
+   * @param position the position, among the usable coefficients.
+   * @return the parity, 0 or 1.
+   * @see #parityOf
+   */
+  public int getParity(int position) {
+    return (int) (parities[position >>> 6] >>> position) & 1;
+  }
+}
@@ -0,0 +1,143 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers;
+
+import java.nio.ShortBuffer;
+
+import com.stegosaurus.cpp.JPEGComponent;
+import com.stegosaurus.cpp.JPEGImage;
+
+/**
+ * Gives direct access to the DCT coefficients of an image, through buffers
+ * over the native memory that holds them, so that they may be read and
+ * written in place without crossing over to the native side every time.
+ * <p>Coefficients are addressed by the same indices used by the image's
+ * CoefficientAccessor.</p>
+ * <p>A view is only good for as long as the coefficients of its image are:
+ * once the image is reset, the view must be discarded. Views are not thread
+ * safe.</p>
+ */
+public class CoefficientView {
+  /**
+   * The image whose coefficients we're viewing; held on to so that it is not
+   * collected, and its coefficients freed, while the view is in use.
+   */
+  private final JPEGImage image;
+
+  /**
+   * The components of the image.
+   */
+  private final JPEGComponent[] components;
+
+  /**
+   * The index of the first coefficient of every component, plus the total
+   * number of coefficients as the last element.
+   */
+  private final int[] offsets;
+
+  /**
+   * The number of coefficients in a row of blocks, for every component.
+   */
+  private final int[] rowLengths;
+
+  /**
+   * The rows of coefficients of every component, fetched as needed.
+   */
+  private final ShortBuffer[][] rows;
+
+  /**
+   * Construct a new view over the coefficients of the image given.
+   * @param image the image.
+   */
+  public CoefficientView(JPEGImage image) {
+    this.image = image;
+    final int count = image.getComponentCount();
+    components = new JPEGComponent[count];
+    offsets = new int[count + 1];
+    rowLengths = new int[count];
+    rows = new ShortBuffer[count][];
+    for(int c = 0; c < count; c++) {
+      JPEGComponent comp = image.getComponent(c);
+      components[c] = comp;
+      offsets[c + 1] = offsets[c] + (int) comp.getTotalNumberOfCoefficients();
+      rowLengths[c] = (int) (comp.getWidthInBlocks() * comp.getBlockSize());
+      rows[c] = new ShortBuffer[(int) comp.getHeightInBlocks()];
+    }
+  }
+
+  /**
+   * Get the total number of coefficients in the image.
+   * @return the number of coefficients.
+   */
+  public int getLength() {
+    return offsets[offsets.length - 1];
+  }
+
+  /**
+   * Get the coefficient at the index given.
+   * @param index the index of the coefficient.
+   * @return its value.
+   */
+  public short get(int index) {
+    int c = findComponent(index);
+    int local = index - offsets[c];
+    return getRow(c, local / rowLengths[c]).get(local % rowLengths[c]);
+  }
+
+  /**
+   * Set the coefficient at the index given.
+   * @param index the index of the coefficient.
+   * @param value its new value.
+   */
+  public void set(int index, short value) {
+    int c = findComponent(index);
+    int local = index - offsets[c];
+    getRow(c, local / rowLengths[c]).put(local % rowLengths[c], value);
+  }
+
+  /**
+   * Find the component that the coefficient with the index given belongs to.
+   * @param index the index of the coefficient.
+   * @return the index of its component.
+   */
+  private int findComponent(int index) {
+    if(index < 0 || index >= getLength()) {
+      throw new IndexOutOfBoundsException("No coefficient at " + index);
+    }
+    int c = 0;
+    while(index >= offsets[c + 1]) {
+      c++;
+    }
+    return c;
+  }
+
+  /**
+   * Get a row of blocks of coefficients, fetching it if needed.
+   * @param c the index of the component.
+   * @param row the index of the row.
+   * @return the row.
+   */
+  private ShortBuffer getRow(int c, int row) {
+    ShortBuffer retval = rows[c][row];
+    if(retval == null) {
+      retval = components[c].getCoefficientRow(row);
+      rows[c][row] = retval;
+    }
+    return retval;
+  }
+}
@@ -17,7 +17,10 @@
  */
 package com.stegosaurus.steganographers;
 
+import java.nio.ByteBuffer;
+
 import com.stegosaurus.cpp.JPEGImage;
+import com.stegosaurus.stegostreams.BitInputStream;
 
 /**
  * A very simple data structure that encapsulates the parameters of embedding
@@ -39,6 +42,18 @@ public class EmbedRequest {
    */
   private String key;
 
+  /**
+   * A snapshot of the cover's usable coefficients, taken the first time it
+   * is requested.
+   */
+  private CoefficientSnapshot snapshot;
+
+  /**
+   * The bits of the message as laid out in the image, packed into words,
+   * the first time they are requested.
+   */
+  private long[] packedMessage;
+
   /**
    * CTOR.
    * @param cover the cover image that will receive the embedding.
@@ -53,7 +68,8 @@ public class EmbedRequest {
 
   /**
    * Copy contructor; will copy the image in the other request, using the
-   * writeNew() method.
+   * writeNew() method. The snapshot of the other request, if any, is not
+   * carried over.
    * @param other the image to copy.
    */
   public EmbedRequest(EmbedRequest other) {
@@ -85,4 +101,41 @@ public class EmbedRequest {
   public String getKey() {
     return key;
   }
+
+  /**
+   * Get a snapshot of the usable coefficients of the cover image, taking it
+   * if this is the first time it is requested.
+   * @return the snapshot
+   */
+  public synchronized CoefficientSnapshot getSnapshot() {
+    if(snapshot == null) {
+      snapshot = new CoefficientSnapshot(cover.getCoefficientAccessor());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Get the bits of the message as laid out in the image, its length as a
+   * big endian short followed by the message itself, packed into words as
+   * by BitInputStream.pack(), packing them if this is the first time they
+   * are requested. The array should not be modified.
+   * @return the packed message.
+   */
+  public synchronized long[] getPackedMessage() {
+    if(packedMessage == null) {
+      byte[] length = ByteBuffer.allocate(Short.BYTES)
+        .putShort((short) message.length).array();
+      packedMessage = BitInputStream.pack(length, message);
+    }
+    return packedMessage;
+  }
+
+  /**
+   * Discard the snapshot of the cover image, if one has been taken. Must be
+   * invoked whenever the cover image's coefficients are changed, so that the
+   * next snapshot requested reflects the changes.
+   */
+  public synchronized void discardSnapshot() {
+    snapshot = null;
+  }
 }
@@ -38,4 +38,14 @@ public interface Embedder {
    * size, and may cut it off it comes to that: checking is on you.
    */
   long getMaximumMessageSize();
+
+  /**
+   * Get the size, in bytes, of the largest message that may be embedded into
+   * the cover given. Meant to be cheap, so that oversized messages may be
+   * turned away before any actual embedding work begins.
+   * Never more than getMaximumMessageSize().
+   * @param cover the cover image
+   * @return the capacity of the cover, in bytes
+   */
+  long getCapacity(JPEGImage cover);
 }
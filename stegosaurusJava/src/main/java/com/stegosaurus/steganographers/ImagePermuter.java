@@ -18,14 +18,15 @@
 package com.stegosaurus.steganographers;
 
 import gnu.trove.procedure.TIntIntProcedure;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 
 import java.nio.charset.Charset;
-import java.util.BitSet;
+import java.util.Arrays;
 
 import com.google.common.hash.HashFunction;
 import com.google.inject.Inject;
 import com.stegosaurus.cpp.CoefficientAccessor;
-import com.stegosaurus.cpp.cppIntArray;
 import com.stegosaurus.crypt.Permutation;
 import com.stegosaurus.crypt.PermutationProvider;
 
@@ -36,30 +37,101 @@ import com.stegosaurus.crypt.PermutationProvider;
  * <p>The permuter keeps track of already accessed indices and ensures they're
  * not repeated, so that it is possible to walk more than one permutation of
  * the same image.</p>
- * <p>Note however that it will start walking every permutation from the
- * very start.</p>
+ * <p>Every walk resumes right where the last one on the same permutation
+ * stopped, so a permutation may be walked in several segments without
+ * going over the segments already walked. Only the indices visited under
+ * earlier permutations are remembered, and only until each has been passed
+ * over once in the current permutation: once all of them have been, the
+ * rest of the walk goes ahead without checking anything.</p>
+ * <p>Coefficients may be walked either one at a time, by handing a procedure
+ * to the walk method, or in batches, by repeatedly asking for the next
+ * batch of them with the next method; the latter spares the caller a call
+ * per coefficient.</p>
+ * <p>The permuter may walk either the image itself, through a coefficient
+ * accessor, or a snapshot of its coefficients. When walking the image,
+ * coefficients are fetched from the native side in batches, rather than
+ * one at a time; when walking a snapshot, the native side is not involved
+ * at all.</p>
  */
 public class ImagePermuter {
 
+  /**
+   * The number of coefficients fetched from the native side at once.
+   */
+  private static final int BATCH_SIZE = 256;
+
   /**
    * The permutation in use.
    */
   private Permutation permutation;
 
   /**
-   * The coefficient accessor we're permuting.
+   * The coefficient accessor we're permuting; null if we're permuting a
+   * snapshot instead.
    */
   private CoefficientAccessor accessor;
 
   /**
-   * The coefficients that have already been visited.
+   * The coefficient snapshot we're permuting; null if we're permuting an
+   * accessor instead.
+   */
+  private CoefficientSnapshot snapshot;
+
+  /**
+   * The position in the permutation that the next walk resumes from.
+   */
+  private int cursor;
+
+  /**
+   * The coefficients visited under earlier permutations.
+   */
+  private final TIntSet consumed = new TIntHashSet();
+
+  /**
+   * The number of coefficients visited under earlier permutations that the
+   * current one has yet to pass over.
+   */
+  private int pending;
+
+  /**
+   * The positions, in the array of usable coefficients, of the batch of
+   * coefficients being walked.
+   */
+  private final int[] positions = new int[BATCH_SIZE];
+
+  /**
+   * For every coefficient in the batch being walked, the cursor to resume
+   * from if the walk stops right after it.
+   */
+  private final int[] resumeAt = new int[BATCH_SIZE];
+
+  /**
+   * For every coefficient in the batch being walked, the pending count to
+   * resume with if the walk stops right after it.
+   */
+  private final int[] pendingAt = new int[BATCH_SIZE];
+
+  /**
+   * The true indices of the batch of coefficients being walked.
+   */
+  private final int[] indices = new int[BATCH_SIZE];
+
+  /**
+   * The indices of the batch of coefficients whose parities are being taken
+   * from the accessor.
    */
-  private BitSet locked;
+  private final int[] parityIndices = new int[BATCH_SIZE];
 
   /**
-   * The array of usable coefficients, as given to us by our accessor.
+   * The values of the batch of coefficients whose parities are being taken
+   * from the accessor.
    */
-  private cppIntArray usables;
+  private final short[] parityValues = new short[BATCH_SIZE];
+
+  /**
+   * The values of the batch of coefficients being walked.
+   */
+  private final short[] values = new short[BATCH_SIZE];
 
   /**
    * The permutation provider to acquire the permutation objects that will
@@ -75,7 +147,7 @@ public class ImagePermuter {
   /**
    * CTOR.
    * @param acc the coefficient accessor to use.
-   * @param seed the seed to use for the permutation.
+   * @param seed the seed to use for the base permutation.
    * @param p the permutation of its indices.
    */
   protected ImagePermuter(CoefficientAccessor acc, long seed,
@@ -83,9 +155,21 @@ public class ImagePermuter {
     accessor = acc;
     this.permutationProvider = permutationProvider;
     length = acc.getUsableCoefficientCount();
-    this.permutation = permutationProvider.getPermutation(length, seed);
-    locked = new BitSet(permutation.getSize());
-    usables = cppIntArray.frompointer(acc.getUsableCoefficients());
+    this.permutation = permutationProvider.getBasePermutation(length, seed);
+  }
+
+  /**
+   * CTOR.
+   * @param snapshot the coefficient snapshot to use.
+   * @param seed the seed to use for the base permutation.
+   * @param p the permutation of its indices.
+   */
+  protected ImagePermuter(CoefficientSnapshot snapshot, long seed,
+                          PermutationProvider permutationProvider) {
+    this.snapshot = snapshot;
+    this.permutationProvider = permutationProvider;
+    length = snapshot.getSize();
+    this.permutation = permutationProvider.getBasePermutation(length, seed);
   }
 
   /**
@@ -94,41 +178,245 @@ public class ImagePermuter {
    * @param seed the seed for the permutation to change to.
    */
   public void setSeed(long seed) {
+    for(int i = 0; i < cursor; i++) {
+      consumed.add(permutation.get(i));
+    }
     permutation = permutationProvider.getPermutation(length, seed);
+    cursor = 0;
+    pending = consumed.size();
   }
 
   /**
    * Reset this permuter, thus allowing it to re-visit any previously visited
-   * indices.
+   * indices. The next walk starts at the very start of the permutation.
    */
   public void reset() {
-    locked.clear();
+    consumed.clear();
+    cursor = 0;
+    pending = 0;
+  }
+
+  /**
+   * Get the position in the current permutation that the next walk will
+   * resume from.
+   * @return the cursor.
+   */
+  public int getCursor() {
+    return cursor;
   }
 
   /**
    * Walk the permuted image, running the procedure given on every good
    * coefficient found (ie every non zero, non DC, coefficient).
-   * Note that the permutation will be walked from its start, regardless
-   * of whether this method has already been invoked.
+   * The walk resumes right after the last coefficient visited by the
+   * previous walk under the same permutation, or from the start if there
+   * was none.
    * The procedure's first argument is the index, and its second argument is
    * the value.
    * @param proc the procedure to run.
    */
   public void walk(TIntIntProcedure proc) {
+    if(snapshot != null) {
+      walkSnapshot(proc);
+    } else {
+      walkAccessor(proc);
+    }
+  }
+
+  /**
+   * Place the next coefficients in the walk into the arrays given, up to
+   * the maximum given, so that indices[i] becomes the true index of the ith
+   * one and values[i] its value.
+   * Every coefficient placed is considered visited; the next call, or walk,
+   * goes on from the one after the last.
+   * @param indices the array to place the indices into.
+   * @param values the array to place the values into.
+   * @param max the maximum number of coefficients to place; capped to the
+   *    length of the arrays.
+   * @return the number of coefficients placed; fewer than the maximum only
+   *    once the permutation runs out.
+   */
+  public int next(int[] indices, short[] values, int max) {
+    max = Math.min(max, Math.min(indices.length, values.length));
+    if(snapshot != null) {
+      return nextFromSnapshot(indices, values, max);
+    }
+    return nextFromAccessor(indices, values, max);
+  }
+
+  /**
+   * Place the parities of the next coefficients in the walk into the words
+   * given, up to the maximum given, 64 to a word: the parity of the ith one
+   * becomes bit i % 64 of words[i / 64], and any bits past the last one are
+   * cleared.
+   * Every coefficient is considered visited, as with the next method.
+   * @param words the array to place the parities into.
+   * @param max the maximum number of parities to place; capped to the
+   *    number of bits in the array.
+   * @return the number of parities placed; fewer than the maximum only once
+   *    the permutation runs out.
+   * @see CoefficientSnapshot#parityOf
+   */
+  public int nextParities(long[] words, int max) {
+    max = (int) Math.min(max, (long) words.length * Long.SIZE);
+    Arrays.fill(words, 0, (max + Long.SIZE - 1) / Long.SIZE, 0L);
+    if(snapshot != null) {
+      return nextParitiesFromSnapshot(words, max);
+    }
+    int count = 0;
+    while(count < max) {
+      int batch = nextFromAccessor(parityIndices, parityValues,
+                                   Math.min(BATCH_SIZE, max - count));
+      if(batch == 0) {
+        break;
+      }
+      for(int i = 0; i < batch; i++, count++) {
+        words[count >>> 6] |=
+          ((long) CoefficientSnapshot.parityOf(parityValues[i])) << count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Figure out whether the coefficient at the position given, in the array of
+   * usable coefficients, was visited under an earlier permutation, and must
+   * be skipped.
+   * @param index the position of the coefficient.
+   * @return whether to skip it.
+   */
+  private boolean skip(int index) {
+    if(pending > 0 && consumed.contains(index)) {
+      pending--;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Walk the permuted snapshot, running the procedure given on every
+   * coefficient not yet visited.
+   * @param proc the procedure to run.
+   */
+  private void walkSnapshot(TIntIntProcedure proc) {
     boolean go = true;
     final int size = permutation.getSize();
-    for(int i = 0; i < size && go; i++) {
-      int index = permutation.get(i);
-      /* getCoefficient is a native call, so we want to avoid it if possible,
-       * which is why we ensure the coefficient is not DC before going any
-       * further */
-      if(!locked.get(index)) {
-        int trueIndex = usables.getitem(index);
-        int value = accessor.getCoefficient(trueIndex);
-        locked.set(index);
-        go = proc.execute(trueIndex, value);
+    while(cursor < size && go) {
+      int index = permutation.get(cursor);
+      cursor++;
+      if(!skip(index)) {
+        go = proc.execute(snapshot.getIndex(index), snapshot.getValue(index));
+      }
+    }
+  }
+
+  /**
+   * Walk the permuted accessor, running the procedure given on every
+   * coefficient not yet visited.
+   * @param proc the procedure to run.
+   */
+  private void walkAccessor(TIntIntProcedure proc) {
+    boolean go = true;
+    final int size = permutation.getSize();
+    while(cursor < size && go) {
+      int count = 0;
+      int i = cursor;
+      for(; i < size && count < BATCH_SIZE; i++) {
+        int index = permutation.get(i);
+        if(!skip(index)) {
+          positions[count] = index;
+          resumeAt[count] = i + 1;
+          pendingAt[count] = pending;
+          count++;
+        }
+      }
+      accessor.gatherUsableCoefficients(positions, indices, values, count);
+      cursor = i;
+      /* The procedure may stop us halfway through the batch, in which case
+       * the rest of it remains unvisited, and we have to go back to it */
+      for(int j = 0; j < count && go; j++) {
+        go = proc.execute(indices[j], values[j]);
+        if(!go) {
+          cursor = resumeAt[j];
+          pending = pendingAt[j];
+        }
+      }
+    }
+  }
+
+  /**
+   * Place the next coefficients in the permuted snapshot into the arrays
+   * given.
+   * @param indices the array to place the indices into.
+   * @param values the array to place the values into.
+   * @param max the number of coefficients to place.
+   * @return the number of coefficients placed.
+   */
+  private int nextFromSnapshot(int[] indices, short[] values, int max) {
+    int count = 0;
+    final int size = permutation.getSize();
+    while(count < max && cursor < size) {
+      int index = permutation.get(cursor);
+      cursor++;
+      if(!skip(index)) {
+        indices[count] = snapshot.getIndex(index);
+        values[count] = snapshot.getValue(index);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Place the parities of the next coefficients in the permuted snapshot into
+   * the words given, which must be cleared.
+   * @param words the array to place the parities into.
+   * @param max the number of parities to place.
+   * @return the number of parities placed.
+   */
+  private int nextParitiesFromSnapshot(long[] words, int max) {
+    int count = 0;
+    final int size = permutation.getSize();
+    while(count < max && cursor < size) {
+      int index = permutation.get(cursor);
+      cursor++;
+      if(!skip(index)) {
+        words[count >>> 6] |= ((long) snapshot.getParity(index)) << count;
+        count++;
       }
     }
+    return count;
+  }
+
+  /**
+   * Place the next coefficients in the permuted accessor into the arrays
+   * given.
+   * @param indices the array to place the indices into.
+   * @param values the array to place the values into.
+   * @param max the number of coefficients to place.
+   * @return the number of coefficients placed.
+   */
+  private int nextFromAccessor(int[] indices, short[] values, int max) {
+    int count = 0;
+    final int size = permutation.getSize();
+    while(count < max && cursor < size) {
+      int batch = 0;
+      int limit = Math.min(BATCH_SIZE, max - count);
+      while(batch < limit && cursor < size) {
+        int index = permutation.get(cursor);
+        cursor++;
+        if(!skip(index)) {
+          positions[batch] = index;
+          batch++;
+        }
+      }
+      accessor.gatherUsableCoefficients(positions, this.indices, this.values,
+                                        batch);
+      System.arraycopy(this.indices, 0, indices, count, batch);
+      System.arraycopy(this.values, 0, values, count, batch);
+      count += batch;
+    }
+    return count;
   }
 
   /**
@@ -184,5 +472,26 @@ public class ImagePermuter {
     public ImagePermuter build(CoefficientAccessor acc, String key) {
       return build(acc, hashFunction.hashString(key, charset).asLong());
     }
+
+    /**
+     * Build a new ImagePermuter to permute the CoefficientSnapshot given.
+     * @param snapshot the snapshot whose coefficients will be permuted.
+     * @param seed the seed to generate the actual permutation.
+     */
+    public ImagePermuter build(CoefficientSnapshot snapshot, long seed) {
+      return new ImagePermuter(snapshot, seed, provider);
+    }
+
+    /**
+     * Build a new ImagePermuter to permute the CoefficientSnapshot given.
+     * Serves as a shortcut to the other build method, and will produce the
+     * seed from the key in the same way as for accessors, so that both walk
+     * the same permutation.
+     * @param snapshot the snapshot whose coefficients will be permuted.
+     * @param key the key, as a String, to generate the actual permutation.
+     */
+    public ImagePermuter build(CoefficientSnapshot snapshot, String key) {
+      return build(snapshot, hashFunction.hashString(key, charset).asLong());
+    }
   }
 }
@@ -50,6 +50,7 @@ public class SteganographersModule extends AbstractModule {
   protected void configure() {
     bind(PM1EmbedderFactory.class).to(PM1EmbedderFactoryImpl.class);
     bind(EmbedderFactory.class).to(GeneticPM1Factory.class);
+    bind(BudgetedEmbedderFactory.class).to(GeneticPM1Factory.class);
     bind(ExtractorFactory.class).to(PM1ExtractorFactory.class);
     bind(GeneticPM1Parameters.class).toInstance(params);
   }
@@ -19,10 +19,13 @@ package com.stegosaurus.steganographers.genetic;
 
 import java.util.Random;
 
+import com.stegosaurus.cpp.CoefficientAccessor;
+import com.stegosaurus.cpp.IncrementalBlockiness;
 import com.stegosaurus.cpp.JPEGImage;
 import com.stegosaurus.genetic.AbstractIndividual;
 import com.stegosaurus.genetic.Chromosome;
 import com.stegosaurus.steganographers.EmbedRequest;
+import com.stegosaurus.steganographers.pm1.CoefficientChanges;
 import com.stegosaurus.steganographers.pm1.PM1Embedder;
 import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
 
@@ -34,6 +37,19 @@ import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
  * Finally, the fitness function is the ratio between the blockiness of the
  * stego image, and the blockiness of an estimated image (the stego image
  * having been cropped by 4 pixels from the top and left).
+ * <p>The stego image is never written out: the changes the embedding would
+ * make are recorded, made to the cover's coefficients in place, and the
+ * ratio is worked out straight from them; the changes are then taken back
+ * out. The cover's coefficients are thus only ever decoded once, however
+ * many individuals are simulated on it.</p>
+ * <p>If given an IncrementalBlockiness for the cover, the stego image is
+ * never built: the changes the embedding would make are recorded instead,
+ * and the blockiness of the stego image is worked out from them. The
+ * cropped estimate is taken to be that of the cover, since embedding
+ * barely affects it, and so the ratio becomes the cover's own, scaled by
+ * how much the embedding changes the blockiness. This is an
+ * approximation, but the cost of it only grows with the number of changes,
+ * rather than with the size of the image.</p>
  */
 public class BlockinessIndividual
   extends AbstractIndividual<BlockinessIndividual> {
@@ -44,9 +60,10 @@ public class BlockinessIndividual
   private PM1EmbedderFactory embedderFactory;
 
   /**
-   * The last stego image produced.
+   * The reciprocal ROB of the stego image, as worked out by the last
+   * simulation.
    */
-  private JPEGImage stego = null;
+  private double reciprocalROB;
 
   /**
    * The seed we'll use to reseed the permutation.
@@ -58,6 +75,23 @@ public class BlockinessIndividual
    */
   private EmbedRequest request;
 
+  /**
+   * The blockiness of the cover, to work out that of the stego image with;
+   * null to build the stego image instead.
+   */
+  private IncrementalBlockiness coverBlockiness;
+
+  /**
+   * The reciprocal ROB of the cover.
+   */
+  private double coverROB;
+
+  /**
+   * The number of native threads the blockiness calculation is split up
+   * between.
+   */
+  private int blockinessThreads;
+
   /**
    * CTOR.
    * @param c the chromosome for this object.
@@ -68,10 +102,50 @@ public class BlockinessIndividual
   public BlockinessIndividual(Chromosome c, EmbedRequest request,
                               short seed,
                               PM1EmbedderFactory embedderFactory) {
+    this(c, request, seed, embedderFactory, 1);
+  }
+
+  /**
+   * CTOR.
+   * @param c the chromosome for this object.
+   * @param request the EmbedRequest we want to optimize for.
+   * @param seed the seed used to re-seed the embedding algorithm.
+   * @param embedderFactory a factory to construct PM1Embedders.
+   * @param blockinessThreads the number of native threads to split up the
+   *    blockiness calculation between.
+   */
+  public BlockinessIndividual(Chromosome c, EmbedRequest request,
+                              short seed,
+                              PM1EmbedderFactory embedderFactory,
+                              int blockinessThreads) {
+    this(c, request, seed, embedderFactory, null, 0);
+    this.blockinessThreads = blockinessThreads;
+  }
+
+  /**
+   * CTOR.
+   * @param c the chromosome for this object.
+   * @param request the EmbedRequest we want to optimize for. Its cover is
+   *    never changed if coverBlockiness is given.
+   * @param seed the seed used to re-seed the embedding algorithm.
+   * @param embedderFactory a factory to construct PM1Embedders.
+   * @param coverBlockiness the blockiness of the cover; null to build the
+   *    stego image instead.
+   * @param coverROB the reciprocal ROB of the cover; only used with
+   *    coverBlockiness.
+   */
+  public BlockinessIndividual(Chromosome c, EmbedRequest request,
+                              short seed,
+                              PM1EmbedderFactory embedderFactory,
+                              IncrementalBlockiness coverBlockiness,
+                              double coverROB) {
     super(c);
     this.seed = seed;
     this.embedderFactory = embedderFactory;
     this.request = request;
+    this.coverBlockiness = coverBlockiness;
+    this.coverROB = coverROB;
+    this.blockinessThreads = 1;
   }
 
   /**
@@ -80,12 +154,24 @@ public class BlockinessIndividual
   @Override
   protected void simulateImpl() {
     PM1Embedder embedder = embedderFactory.build(chromosome);
-    /* Can't hurt to make sure the stego image has been deleted. */
-    /* TODO Do we _really_ need to, though? */
-    if(stego != null) {
-      stego.delete();
+    CoefficientChanges changes = embedder.recordEmbed(request, seed);
+    if(coverBlockiness != null) {
+      double blockiness = coverBlockiness.getBlockinessWithChanges(
+          changes.getIndices(), changes.getDeltas(), changes.getSize());
+      double ratio = blockiness > 0 ?
+        coverBlockiness.getBlockiness() / blockiness : 1.0;
+      reciprocalROB = Math.min(1.0, coverROB * ratio);
+      return;
+    }
+    JPEGImage cover = request.getCover();
+    CoefficientAccessor accessor = cover.getCoefficientAccessor();
+    changes.applyTo(accessor);
+    try {
+      reciprocalROB =
+        cover.calculateCoefficientReciprocalROB(blockinessThreads);
+    } finally {
+      changes.revert(accessor);
     }
-    stego = embedder.embed(request, seed);
   }
 
   /**
@@ -96,6 +182,6 @@ public class BlockinessIndividual
     /* We want to maximize this ratio; since the GeneticAlgorithm class
      * seeks to _minimize_ the fitness, and the ratio is guaranteed to be
      * between 0 and 1, we can just do this. */
-    return 1.0 - (stego.calculateReciprocalROB());
+    return 1.0 - reciprocalROB;
   }
 }
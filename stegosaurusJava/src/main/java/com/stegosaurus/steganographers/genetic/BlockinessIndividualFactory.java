@@ -17,14 +17,22 @@
  */
 package com.stegosaurus.steganographers.genetic;
 
+import com.stegosaurus.cpp.IncrementalBlockiness;
+import com.stegosaurus.cpp.JPEGImage;
 import com.stegosaurus.genetic.Chromosome;
 import com.stegosaurus.genetic.IndividualFactory;
+import com.stegosaurus.genetic.Surrogate;
 import com.stegosaurus.steganographers.EmbedRequest;
 import com.stegosaurus.steganographers.pm1.PM1Embedder;
 import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
 
 /**
  * Builds BlockinessIndividuals for a specific image, message, key and seed.
+ * If asked to, works out the blockiness of the cover once, so that the
+ * individuals can work out that of their stego images incrementally;
+ * delete() should then be invoked once the individuals are no longer in use.
+ * The same goes for the surrogates it builds, which work out the fitness of
+ * chromosomes the incremental way regardless.
  */
 public class BlockinessIndividualFactory
   implements IndividualFactory<BlockinessIndividual> {
@@ -44,6 +52,28 @@ public class BlockinessIndividualFactory
    */
   private EmbedRequest request;
 
+  /**
+   * Whether the individuals work out their blockiness incrementally.
+   */
+  private boolean incremental;
+
+  /**
+   * The blockiness of the cover, if it is to be worked out incrementally,
+   * or a surrogate has been built.
+   */
+  private IncrementalBlockiness coverBlockiness = null;
+
+  /**
+   * The reciprocal ROB of the cover, if coverBlockiness is set.
+   */
+  private double coverROB;
+
+  /**
+   * The number of native threads every blockiness calculation is split up
+   * between.
+   */
+  private int blockinessThreads;
+
   /**
    * CTOR.
    * @param request the EmbedRequest we want to optimize for.
@@ -52,9 +82,43 @@ public class BlockinessIndividualFactory
    */
   public BlockinessIndividualFactory(EmbedRequest request, short seed,
                                      PM1EmbedderFactory embedderFactory) {
+    this(request, seed, embedderFactory, false, 1);
+  }
+
+  /**
+   * CTOR.
+   * @param request the EmbedRequest we want to optimize for.
+   * @param seed the seed used to re-seed the embedding algorithm.
+   * @param embedderFactory a factory to construct PM1Embedders.
+   * @param incremental whether the individuals should work out their
+   *    blockiness incrementally.
+   * @param blockinessThreads the number of native threads every blockiness
+   *    calculation is split up between.
+   */
+  public BlockinessIndividualFactory(EmbedRequest request, short seed,
+                                     PM1EmbedderFactory embedderFactory,
+                                     boolean incremental,
+                                     int blockinessThreads) {
     this.request = request;
     this.seed = seed;
     this.embedderFactory = embedderFactory;
+    this.blockinessThreads = blockinessThreads;
+    this.incremental = incremental;
+    if(incremental) {
+      workOutCoverBlockiness();
+    }
+  }
+
+  /**
+   * Work out the blockiness and reciprocal ROB of the cover, unless already
+   * worked out.
+   */
+  private void workOutCoverBlockiness() {
+    if(coverBlockiness == null) {
+      JPEGImage cover = request.getCover();
+      coverBlockiness = new IncrementalBlockiness(cover);
+      coverROB = cover.calculateReciprocalROB(blockinessThreads);
+    }
   }
 
   /**
@@ -62,12 +126,48 @@ public class BlockinessIndividualFactory
    */
   @Override
   public BlockinessIndividual build(Chromosome c) {
+    if(incremental) {
+      /* Nothing gets written into the cover, so there is no need to copy
+       * it, and the snapshot may as well be shared. */
+      return new BlockinessIndividual(c, request, seed, embedderFactory,
+                                      coverBlockiness, coverROB);
+    }
     /* We have to hand out a copy of the image to the individual, so as to
      * be able to parallelize some operations. Happily, because the JPEGImage
      * has not been manipulated in any significant way, writeNew is a pretty
      * fast operation here.
      */
     EmbedRequest r = new EmbedRequest(request);
-    return new BlockinessIndividual(c, r, seed, embedderFactory);
+    return new BlockinessIndividual(c, r, seed, embedderFactory,
+                                    blockinessThreads);
+  }
+
+  /**
+   * Build a surrogate for the fitness of the individuals built by this
+   * factory: the fitness they would have if they worked out their
+   * blockiness incrementally. That only looks at the coefficients the
+   * embedding changes, and how, so it is far cheaper than simulating an
+   * individual that builds its stego image.
+   * @return the surrogate.
+   */
+  public Surrogate buildSurrogate() {
+    workOutCoverBlockiness();
+    return new Surrogate() {
+      public double estimateFitness(Chromosome c) {
+        return new BlockinessIndividual(c, request, seed, embedderFactory,
+            coverBlockiness, coverROB).simulate().calculateFitness();
+      }
+    };
+  }
+
+  /**
+   * Delete the blockiness of the cover, if it was worked out. The
+   * individuals and surrogates built may not be used afterwards.
+   */
+  public void delete() {
+    if(coverBlockiness != null) {
+      coverBlockiness.delete();
+      coverBlockiness = null;
+    }
   }
 }
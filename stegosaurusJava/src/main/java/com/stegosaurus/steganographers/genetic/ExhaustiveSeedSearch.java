@@ -0,0 +1,252 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.genetic;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.stegosaurus.steganographers.EmbedRequest;
+import com.stegosaurus.steganographers.pm1.PM1Embedder;
+import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
+import com.stegosaurus.steganographers.utils.DummyPMSequence;
+
+/**
+ * Finds the seed requiring the fewest changes to embed a request, by trying
+ * every one of them.
+ * <p>The seeds are split up over a fork/join pool. Every seed is tried with
+ * a pretend embedding that gives up as soon as it needs more changes than
+ * the best seed found so far by any thread, so that most of them are
+ * abandoned well before the end of the message.</p>
+ * <p>Since every seed walks a different permutation, this is much cheaper
+ * with permutation formats that only work out as much of a permutation as
+ * is walked, such as the lazy or the Feistel ones, than with the classic
+ * one.</p>
+ * <p>Ties are broken in favour of the lowest seed, so the result does not
+ * depend on how the work happened to be split up.</p>
+ * <p>The search may be given a deadline, in which case it makes do with the
+ * best of the seeds it had time to try; the tie break then no longer holds.
+ * </p>
+ */
+class ExhaustiveSeedSearch {
+
+  /**
+   * The number of seeds below which a task tries them all itself, rather
+   * than splitting them up further.
+   */
+  private static final int THRESHOLD = 256;
+
+  /**
+   * The embed request to optimize for.
+   */
+  private final EmbedRequest request;
+
+  /**
+   * The embedder used for the pretend embeddings.
+   */
+  private final PM1Embedder embedder;
+
+  /**
+   * The pool to run the search in.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * The fewest changes required by any seed tried so far.
+   */
+  private final AtomicInteger best = new AtomicInteger();
+
+  /**
+   * The thread that started the search; the search is abandoned if it is
+   * interrupted.
+   */
+  private volatile Thread caller;
+
+  /**
+   * Whether the last search was given a deadline.
+   */
+  private volatile boolean bounded;
+
+  /**
+   * The deadline of the last search, in System.nanoTime() terms, if any.
+   */
+  private volatile long deadline;
+
+  /**
+   * CTOR.
+   * The request's coefficient snapshot is taken here, once, and shared by
+   * all the pretend embeddings.
+   * @param request the embed request to optimize for.
+   * @param factory an embedder factory.
+   * @param pool the pool to run the search in.
+   */
+  ExhaustiveSeedSearch(EmbedRequest request, PM1EmbedderFactory factory,
+                       ForkJoinPool pool) {
+    this.request = request;
+    this.embedder = factory.build(new DummyPMSequence());
+    this.pool = pool;
+    request.getSnapshot();
+  }
+
+  /**
+   * Find the best seed.
+   * @return the seed requiring the fewest changes.
+   * @throws CancellationException if the calling thread is interrupted.
+   */
+  short search() {
+    return search(Short.MIN_VALUE, Short.MAX_VALUE + 1);
+  }
+
+  /**
+   * Find the best seed that can be found before the deadline given. Every
+   * task tries at least one seed, however early the deadline.
+   * @param deadline the deadline, in System.nanoTime() terms.
+   * @return the seed requiring the fewest changes among those tried.
+   * @throws CancellationException if the calling thread is interrupted.
+   */
+  short searchUntil(long deadline) {
+    this.deadline = deadline;
+    bounded = true;
+    try {
+      return search();
+    } finally {
+      bounded = false;
+    }
+  }
+
+  /**
+   * Find the best seed among those in the range given.
+   * @param from the first seed to try, inclusive.
+   * @param to the last seed to try, exclusive.
+   * @return the seed requiring the fewest changes.
+   * @throws CancellationException if the calling thread is interrupted.
+   */
+  short search(int from, int to) {
+    /* No embedding needs more changes than it has bits */
+    best.set((request.getMessage().length * Byte.SIZE) + (2 * Short.SIZE));
+    caller = Thread.currentThread();
+    long result = pool.invoke(new Task(from, to));
+    if(caller.isInterrupted()) {
+      throw new CancellationException("Seed search interrupted");
+    }
+    return unpackSeed(result);
+  }
+
+  /**
+   * Get the number of changes required by the best seed found in the last
+   * search.
+   * @return the number of changes.
+   */
+  int getBestChanges() {
+    return best.get();
+  }
+
+  /**
+   * Get whether the search has a deadline, and it has gone by.
+   * @return whether to give up.
+   */
+  private boolean pastDeadline() {
+    return bounded && System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * Lower the best number of changes to the one given, unless some other
+   * thread has already gone lower.
+   * @param changes the number of changes.
+   */
+  private void offer(int changes) {
+    int current = best.get();
+    while(changes < current && !best.compareAndSet(current, changes)) {
+      current = best.get();
+    }
+  }
+
+  /**
+   * Pack the number of changes required by a seed, and the seed itself,
+   * into a long, so that the lowest long is the best seed.
+   * @param changes the number of changes.
+   * @param seed the seed.
+   * @return the packed pair.
+   */
+  private static long pack(int changes, int seed) {
+    return ((long) changes << Integer.SIZE) | (seed - Short.MIN_VALUE);
+  }
+
+  /**
+   * Get the seed out of a packed pair.
+   * @param packed the packed pair.
+   * @return the seed.
+   */
+  private static short unpackSeed(long packed) {
+    return (short) ((int) packed + Short.MIN_VALUE);
+  }
+
+  /**
+   * Tries every seed in a range, splitting it up if large enough.
+   * Yields the best of them, packed along with the changes it requires.
+   */
+  private class Task extends RecursiveTask<Long> {
+    /**
+     * The first seed, inclusive.
+     */
+    private final int from;
+
+    /**
+     * The last seed, exclusive.
+     */
+    private final int to;
+
+    /**
+     * CTOR.
+     * @param from the first seed, inclusive.
+     * @param to the last seed, exclusive.
+     */
+    Task(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Long compute() {
+      if(to - from > THRESHOLD) {
+        int middle = (from + to) >>> 1;
+        Task left = new Task(from, middle);
+        left.fork();
+        long right = new Task(middle, to).compute();
+        return Math.min(left.join(), right);
+      }
+      long retval = Long.MAX_VALUE;
+      for(int seed = from; seed < to && !caller.isInterrupted() &&
+          (seed == from || !pastDeadline()); seed++) {
+        /* Seeds tying with the best are seen through, for the sake of the
+         * tie break */
+        int bound = best.get() + 1;
+        int changes = embedder.fakeEmbed(request, (short) seed, bound);
+        if(changes < bound) {
+          offer(changes);
+          retval = Math.min(retval, pack(changes, seed));
+        }
+      }
+      return retval;
+    }
+  }
+}
@@ -18,21 +18,34 @@
 package com.stegosaurus.steganographers.genetic;
 
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.google.inject.Inject;
 import com.stegosaurus.cpp.JPEGImage;
+import com.stegosaurus.crypt.PermutationProvider;
+import com.stegosaurus.genetic.FitnessCache;
+import com.stegosaurus.genetic.DeadlineStoppingPolicy;
 import com.stegosaurus.genetic.GAFactory;
 import com.stegosaurus.genetic.GAParameters;
+import com.stegosaurus.genetic.GenerationListener;
 import com.stegosaurus.genetic.GeneticAlgorithm;
 import com.stegosaurus.genetic.Individual;
 import com.stegosaurus.genetic.IndividualFactory;
 import com.stegosaurus.genetic.RankSelection;
 import com.stegosaurus.genetic.SelectionOperator;
-import com.stegosaurus.steganographers.Embedder;
+import com.stegosaurus.genetic.StoppingPolicy;
+import com.stegosaurus.genetic.SurrogateScreening;
+import com.stegosaurus.steganographers.BudgetedEmbedder;
+import com.stegosaurus.steganographers.BudgetedEmbedding;
 import com.stegosaurus.steganographers.EmbedRequest;
+import com.stegosaurus.steganographers.pm1.PM1Algorithm;
 import com.stegosaurus.steganographers.pm1.PM1Embedder;
 import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
 import com.stegosaurus.steganographers.pm1.PMSequence;
+import com.stegosaurus.steganographers.utils.DummyPMSequence;
 
 /**
  * The core algorithm of Stegosaurus' JPEG capabilities: embeds messages into
@@ -44,9 +57,38 @@ import com.stegosaurus.steganographers.pm1.PMSequence;
  * modifications as hard to detect as possible.</p>
  * <p>Triviality of detection is quantified using the ratio of an image's
  * blockiness to a lossily cropped equivalent's blockiness</p>
+ * <p>Embeds may be given a time budget. Time for the final embed is set
+ * aside first; part of the rest goes to the seed optimization, and the
+ * remainder, along with whatever the seed optimization leaves unused, to
+ * the sequence optimization. Either of them stops with the best it has
+ * found when its time is up. The sequence optimization can't stop before
+ * it has built and scored a whole population, though, so should the time
+ * left not look like enough for that, a fixed sequence is used
+ * instead.</p>
  * @see PM1Embedder for a discussion of the structure of the stego image.
  */
-class GeneticPM1 implements Embedder {
+class GeneticPM1 implements BudgetedEmbedder {
+
+  /**
+   * The logger, for the hit rates of the fitness caches, and the worth of
+   * the surrogate screenings.
+   */
+  private static final Logger LOGGER =
+    Logger.getLogger(GeneticPM1.class.getName());
+
+  /**
+   * The share of an embed's time budget that goes to optimizing the seed.
+   * Its fitness evaluations are pretend embeddings, much cheaper than those
+   * of the sequence optimization, so it needs much less.
+   */
+  private static final double SEED_BUDGET_SHARE = 0.2;
+
+  /**
+   * A rough, pessimistic estimate of the time it takes to go over the whole
+   * of an image once, be it to copy it or to score its blockiness, in
+   * nanoseconds per DCT coefficient.
+   */
+  private static final long NANOS_PER_COEFFICIENT = 100;
 
   /**
    * The embedder factory in use.
@@ -72,17 +114,26 @@ class GeneticPM1 implements Embedder {
    */
   private GeneticPM1Parameters globalParams;
 
+  /**
+   * The permutation provider, in which the seed optimization pins the
+   * permutations it is working with.
+   */
+  private PermutationProvider permutationProvider;
+
   /**
    * Construct a new GeneticPM1 object.
    * @param embedderFactory the embedder factory to use.
    * @param gaFactory the genetic algorithm factory
    * @param globalParams the global parameters
+   * @param permutationProvider the permutation provider.
    */
   GeneticPM1(PM1EmbedderFactory embedderFactory,
-      GAFactory gaFactory, GeneticPM1Parameters globalParams) {
+      GAFactory gaFactory, GeneticPM1Parameters globalParams,
+      PermutationProvider permutationProvider) {
     this.embedderFactory = embedderFactory;
     this.gaFactory = gaFactory;
     this.globalParams = globalParams;
+    this.permutationProvider = permutationProvider;
   }
 
   @Override
@@ -90,58 +141,184 @@ class GeneticPM1 implements Embedder {
     return Short.MAX_VALUE;
   }
 
+  @Override
+  public long getCapacity(JPEGImage cover) {
+    return PM1Algorithm.computeCapacity(
+        cover.getCoefficientAccessor().getUsableCoefficientCount());
+  }
+
   /**
    * Run a GA to optimize some thing or another.
+   * Each run gets its own fitness cache, if the parameters call for one,
+   * and its hit rate is logged at the end. The run may stop short of the
+   * number of generations given, if the stopping policy given says so.
+   * Should it be given a surrogate screening, how that went is logged at
+   * the end as well.
    * @param <C> the specific individual type in use.
    * @param request the embed request we're working with.
    * @param gradient the gradient for the rank selection.
    * @param factory the individual factory we want to use.
    * @param params the GA parameters for this optimization.
-   * @param generations the number of generations to run.
+   * @param generations the maximum number of generations to run.
+   * @param listener a listener to add to the GA; may be null.
+   * @param policy the stopping policy for the run; may be null.
+   * @param screening the surrogate screening for the run; may be null.
    * @return the fittest individual.
    */
   private <C extends Individual<C>> Individual<C> optimize(
       EmbedRequest request, double gradient, int generations,
-      IndividualFactory<C> factory, GAParameters params) {
+      IndividualFactory<C> factory, GAParameters params,
+      GenerationListener<C> listener, StoppingPolicy policy,
+      SurrogateScreening screening) {
     SelectionOperator<C> o = new RankSelection<>(gradient);
     GeneticAlgorithm<C> algo = gaFactory.build(factory, o, motherNature,
         params);
+    if(listener != null) {
+      algo.addGenerationListener(listener);
+    }
+    FitnessCache cache = null;
+    if(globalParams.getFitnessCacheSize() > 0) {
+      cache = new FitnessCache(globalParams.getFitnessCacheSize());
+      algo.setFitnessCache(cache);
+    }
+    algo.setSurrogateScreening(screening);
     algo.init();
-    return algo.runNGenerations(generations);
+    try {
+      return algo.runNGenerations(generations, policy);
+    } finally {
+      if(cache != null && LOGGER.isLoggable(Level.FINE)) {
+        LOGGER.fine(String.format("Fitness cache for %s: %s, hit rate %.3f",
+            factory.getClass().getSimpleName(), cache.getStats(),
+            cache.getStats().hitRate()));
+      }
+      if(screening != null && LOGGER.isLoggable(Level.FINE)) {
+        LOGGER.fine(String.format("Surrogate screening for %s: %s",
+            factory.getClass().getSimpleName(), screening));
+      }
+    }
   }
 
   /**
-   * Optimize the seed for the embed request given.
+   * Optimize the seed for the embed request given, in whichever way the
+   * parameters call for.
    * @param request the embed request.
+   * @param deadline the deadline to optimize by; null for none.
    * @return the best seed we could come up with.
    */
-  private short optimizeSeed(EmbedRequest request) {
+  private short optimizeSeed(EmbedRequest request,
+                             DeadlineStoppingPolicy deadline) {
+    if(globalParams.getSeedOptimizer() == SeedOptimizer.EXHAUSTIVE) {
+      ExhaustiveSeedSearch search = new ExhaustiveSeedSearch(request,
+          embedderFactory, ForkJoinPool.commonPool());
+      if(deadline != null) {
+        return search.searchUntil(deadline.getDeadline());
+      }
+      return search.search();
+    }
+    return optimizeSeedGenetically(request, stoppingPolicy(deadline));
+  }
+
+  /**
+   * Optimize the seed for the embed request given, with a GA.
+   * @param request the embed request.
+   * @param policy the stopping policy for the GA.
+   * @return the best seed we could come up with.
+   */
+  private short optimizeSeedGenetically(EmbedRequest request,
+                                        StoppingPolicy policy) {
     SeedChangeCountIndividualFactory factory =
       new SeedChangeCountIndividualFactory(request, embedderFactory);
+    SeedPermutationPinner pinner = new SeedPermutationPinner(
+        permutationProvider, request.getSnapshot().getSize());
     Individual<SeedChangeCountIndividual> result = optimize(request,
         globalParams.getSSelectionGradient(),
         globalParams.getSNumberOfGenerations(),
-        factory, globalParams.getSParams());
+        factory, globalParams.getSParams(), pinner, policy, null);
     return result.getChromosome().asShort();
   }
 
   /**
    * Optimize the PM sequence for the embed request and seed given.
+   * Unless every individual is to be simulated, or they all work out their
+   * blockiness incrementally anyway, each generation is screened with the
+   * incremental estimate of the fitness first.
    * @param request the embed request.
    * @param seed the seed.
-   * @return the best PM sequence we could find.
+   * @param policy the stopping policy for the GA.
+   * @return the individual with the best PM sequence we could find.
    */
-  private PMSequence optimizeSequence(EmbedRequest request, short seed) {
+  private Individual<BlockinessIndividual> optimizeSequence(
+      EmbedRequest request, short seed, StoppingPolicy policy) {
     BlockinessIndividualFactory factory =
-      new BlockinessIndividualFactory(request, seed, embedderFactory);
+      new BlockinessIndividualFactory(request, seed, embedderFactory,
+                                      globalParams.getIncrementalBlockiness(),
+                                      globalParams.getBlockinessThreads());
     GAParameters params = new GAParameters(globalParams.getBPopSize(),
       (request.getMessage().length * 8) + 16, globalParams.getBElitismRate(),
       globalParams.getBMutationRate());
-    Individual<BlockinessIndividual> result = optimize(request,
-        globalParams.getBSelectionGradient(),
-        globalParams.getBNumberOfGenerations(),
-        factory, params);
-    return result.getChromosome();
+    try {
+      SurrogateScreening screening = null;
+      if(globalParams.getSurrogateFraction() < 1 &&
+         !globalParams.getIncrementalBlockiness()) {
+        screening = new SurrogateScreening(factory.buildSurrogate(),
+            globalParams.getSurrogateFraction());
+      }
+      Individual<BlockinessIndividual> result = optimize(request,
+          globalParams.getBSelectionGradient(),
+          globalParams.getBNumberOfGenerations(),
+          factory, params, null, policy, screening);
+      /* Make sure the fitness is in before the factory goes */
+      result.calculateFitness();
+      return result;
+    } finally {
+      factory.delete();
+    }
+  }
+
+  /**
+   * Estimate the time it takes to go over the whole of the cover of the
+   * request given once, be it to copy it or to score its blockiness.
+   * @param request the embed request.
+   * @return the estimate, in nanoseconds.
+   */
+  private long estimateImageNanos(EmbedRequest request) {
+    return request.getCover().getCoefficientAccessor().getLength() *
+      NANOS_PER_COEFFICIENT;
+  }
+
+  /**
+   * Estimate the time it takes the sequence optimization to build its
+   * population and run its first generation, none of which can be cut
+   * short.
+   * @param imageNanos the estimate of the time to go over the cover once.
+   * @return the estimate, in nanoseconds.
+   */
+  private long estimateFirstGenerationNanos(long imageNanos) {
+    if(globalParams.getIncrementalBlockiness()) {
+      /* The cover alone is scored, and its blockiness worked out; the
+       * individuals themselves only go over the changes they make. */
+      return 2 * imageNanos;
+    }
+    int popSize = globalParams.getBPopSize();
+    long setup = 0;
+    int scored = popSize;
+    if(globalParams.getSurrogateFraction() < 1) {
+      setup = 2 * imageNanos;
+      scored = (int) Math.ceil(popSize * globalParams.getSurrogateFraction());
+    }
+    /* Every individual gets a copy of the cover, and the ones not screened
+     * out are scored */
+    return setup + (popSize + scored) * imageNanos;
+  }
+
+  /**
+   * Get the stopping policy for a GA to run with: the parameters' own,
+   * along with the deadline, if any.
+   * @param deadline the deadline; null for none.
+   * @return the policy; may be null.
+   */
+  private StoppingPolicy stoppingPolicy(DeadlineStoppingPolicy deadline) {
+    return deadline != null ? deadline : globalParams.getStoppingPolicy();
   }
 
   /**
@@ -150,9 +327,47 @@ class GeneticPM1 implements Embedder {
    * @return the steganographic JPEG image
    */
   public JPEGImage embed(EmbedRequest request) {
-    short seed = optimizeSeed(request);
-    PMSequence sequence = optimizeSequence(request, seed);
+    short seed = optimizeSeed(request, null);
+    PMSequence sequence = optimizeSequence(request, seed,
+        stoppingPolicy(null)).getChromosome();
     PM1Embedder embedder = embedderFactory.build(sequence);
     return embedder.embed(request, seed);
   }
+
+  /**
+   * {@inheritDoc}
+   * The fitness reported is that of the PM sequence: 1 minus the reciprocal
+   * ROB of the stego image, as worked out during the optimization; NaN if
+   * the sequence optimization was skipped for lack of time.
+   */
+  @Override
+  public BudgetedEmbedding embed(EmbedRequest request, long budget,
+                                 TimeUnit unit) {
+    final long start = System.nanoTime();
+    final long end = start + unit.toNanos(budget);
+    final long imageNanos = estimateImageNanos(request);
+    /* The final embed writes out a whole new image */
+    final long optimizeNanos = Math.max(0, end - start - imageNanos);
+    StoppingPolicy policy = globalParams.getStoppingPolicy();
+    DeadlineStoppingPolicy deadline =
+      new DeadlineStoppingPolicy(start + optimizeNanos, policy);
+    short seed = optimizeSeed(request, new DeadlineStoppingPolicy(
+          start + (long) (optimizeNanos * SEED_BUDGET_SHARE), policy));
+    PMSequence sequence = new DummyPMSequence();
+    double fitness = Double.NaN;
+    if(deadline.getRemainingNanos() >=
+       estimateFirstGenerationNanos(imageNanos)) {
+      Individual<BlockinessIndividual> best =
+        optimizeSequence(request, seed, deadline);
+      sequence = best.getChromosome();
+      fitness = best.calculateFitness();
+    }
+    JPEGImage image = embedderFactory.build(sequence).embed(request, seed);
+    long remaining = end - System.nanoTime();
+    if(LOGGER.isLoggable(Level.FINE)) {
+      LOGGER.fine(String.format("Budgeted embed: %d ms left, fitness %.4f",
+          TimeUnit.NANOSECONDS.toMillis(remaining), fitness));
+    }
+    return new BudgetedEmbedding(image, remaining, fitness);
+  }
 }
@@ -19,16 +19,17 @@ package com.stegosaurus.steganographers.genetic;
 
 import com.google.inject.Inject;
 
+import com.stegosaurus.crypt.PermutationProvider;
 import com.stegosaurus.genetic.GAFactory;
-import com.stegosaurus.steganographers.EmbedderFactory;
-import com.stegosaurus.steganographers.Embedder;
+import com.stegosaurus.steganographers.BudgetedEmbedder;
+import com.stegosaurus.steganographers.BudgetedEmbedderFactory;
 import com.stegosaurus.steganographers.pm1.PM1Embedder;
 import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
 
 /**
  * Creates new GeneticPM1 embedders factory.
  */
-public class GeneticPM1Factory implements EmbedderFactory {
+public class GeneticPM1Factory implements BudgetedEmbedderFactory {
 
   /**
    * The embedder factory.
@@ -45,24 +46,33 @@ public class GeneticPM1Factory implements EmbedderFactory {
    */
   private GeneticPM1Parameters params;
 
+  /**
+   * The permutation provider.
+   */
+  private PermutationProvider permutationProvider;
+
   /**
    * CTOR.
    * @param embedderFactory the factory for embedders
    * @param gaFactory the factory for genetic algorithms
+   * @param permutationProvider the permutation provider
    */
   @Inject
   public GeneticPM1Factory(PM1EmbedderFactory embedderFactory,
-      GAFactory gaFactory, GeneticPM1Parameters params) {
+      GAFactory gaFactory, GeneticPM1Parameters params,
+      PermutationProvider permutationProvider) {
     this.embedderFactory = embedderFactory;
     this.gaFactory = gaFactory;
     this.params = params;
+    this.permutationProvider = permutationProvider;
   }
 
   /**
    * Build a new genetic embedder.
    */
   @Override
-  public Embedder build() {
-    return new GeneticPM1(embedderFactory, gaFactory, params);
+  public BudgetedEmbedder build() {
+    return new GeneticPM1(embedderFactory, gaFactory, params,
+                          permutationProvider);
   }
 }
@@ -0,0 +1,180 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.genetic;
+
+import com.stegosaurus.genetic.StoppingPolicy;
+
+/**
+ * The optional settings of GeneticPM1, on top of the hyperparameters of its
+ * two GAs: how the seed is optimized, and how the fitness of individuals is
+ * worked out. Every setting starts off at its default, and is set by name,
+ * so that only those that matter need be given.
+ * @see GeneticPM1Parameters
+ */
+public class GeneticPM1Options {
+
+  /**
+   * The way of optimizing the seed.
+   */
+  private SeedOptimizer seedOptimizer = SeedOptimizer.GENETIC;
+
+  /**
+   * The number of chromosomes whose fitness each GA remembers.
+   */
+  private int fitnessCacheSize = 0;
+
+  /**
+   * Whether the blockiness-optimizing GA works out the blockiness of its
+   * stego images incrementally.
+   */
+  private boolean incrementalBlockiness = false;
+
+  /**
+   * The number of native threads that every blockiness calculation is split
+   * up between.
+   */
+  private int blockinessThreads = 1;
+
+  /**
+   * The policy that may cut the runs of both GAs short.
+   */
+  private StoppingPolicy stoppingPolicy = null;
+
+  /**
+   * The fraction of the individuals to evaluate each generation that the
+   * blockiness-optimizing GA fully simulates.
+   */
+  private double surrogateFraction = 1.0;
+
+  /**
+   * Set the way of optimizing the seed. Defaults to SeedOptimizer.GENETIC.
+   * @param seedOptimizer the way of optimizing the seed.
+   * @return this object.
+   */
+  public GeneticPM1Options setSeedOptimizer(SeedOptimizer seedOptimizer) {
+    this.seedOptimizer = seedOptimizer;
+    return this;
+  }
+
+  /**
+   * Set the number of chromosomes whose fitness each GA remembers; 0 for
+   * none. Defaults to 0.
+   * @param fitnessCacheSize the number of chromosomes.
+   * @return this object.
+   */
+  public GeneticPM1Options setFitnessCacheSize(int fitnessCacheSize) {
+    this.fitnessCacheSize = fitnessCacheSize;
+    return this;
+  }
+
+  /**
+   * Set whether the blockiness-optimizing GA works out the blockiness of its
+   * stego images incrementally. Defaults to false.
+   * @param incrementalBlockiness whether to work it out incrementally.
+   * @return this object.
+   */
+  public GeneticPM1Options setIncrementalBlockiness(
+      boolean incrementalBlockiness) {
+    this.incrementalBlockiness = incrementalBlockiness;
+    return this;
+  }
+
+  /**
+   * Set the number of native threads that every blockiness calculation is
+   * split up between. Defaults to 1.
+   * @param blockinessThreads the number of threads.
+   * @return this object.
+   */
+  public GeneticPM1Options setBlockinessThreads(int blockinessThreads) {
+    this.blockinessThreads = blockinessThreads;
+    return this;
+  }
+
+  /**
+   * Set the policy that may cut the runs of both GAs short; null to always
+   * run every generation. Defaults to null.
+   * @param stoppingPolicy the policy.
+   * @return this object.
+   */
+  public GeneticPM1Options setStoppingPolicy(StoppingPolicy stoppingPolicy) {
+    this.stoppingPolicy = stoppingPolicy;
+    return this;
+  }
+
+  /**
+   * Set the fraction of the individuals to evaluate each generation that the
+   * blockiness-optimizing GA fully simulates; 1 for all of them. Defaults
+   * to 1.
+   * @param surrogateFraction the fraction, in (0, 1].
+   * @return this object.
+   * @throws IllegalArgumentException if the fraction is out of range.
+   */
+  public GeneticPM1Options setSurrogateFraction(double surrogateFraction) {
+    if(!(surrogateFraction > 0 && surrogateFraction <= 1)) {
+      throw new IllegalArgumentException(
+          "Surrogate fraction must be in (0, 1]");
+    }
+    this.surrogateFraction = surrogateFraction;
+    return this;
+  }
+
+  /**
+   * Get the way of optimizing the seed.
+   */
+  public SeedOptimizer getSeedOptimizer() {
+    return seedOptimizer;
+  }
+
+  /**
+   * Get the number of chromosomes whose fitness each GA remembers.
+   */
+  public int getFitnessCacheSize() {
+    return fitnessCacheSize;
+  }
+
+  /**
+   * Get whether the blockiness-optimizing GA works out the blockiness of its
+   * stego images incrementally.
+   */
+  public boolean getIncrementalBlockiness() {
+    return incrementalBlockiness;
+  }
+
+  /**
+   * Get the number of native threads that every blockiness calculation is
+   * split up between.
+   */
+  public int getBlockinessThreads() {
+    return blockinessThreads;
+  }
+
+  /**
+   * Get the policy that may cut the runs of both GAs short; may be null.
+   */
+  public StoppingPolicy getStoppingPolicy() {
+    return stoppingPolicy;
+  }
+
+  /**
+   * Get the fraction of the individuals to evaluate each generation that the
+   * blockiness-optimizing GA fully simulates.
+   */
+  public double getSurrogateFraction() {
+    return surrogateFraction;
+  }
+}
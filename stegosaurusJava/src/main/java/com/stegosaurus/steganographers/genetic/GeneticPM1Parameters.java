@@ -18,17 +18,20 @@
 package com.stegosaurus.steganographers.genetic;
 
 import com.stegosaurus.genetic.GAParameters;
+import com.stegosaurus.genetic.StoppingPolicy;
 
 /**
  * A container for  the parameters for the GAs in use within the class
  * GeneticPM1.
  * Mostly split into two: the parameters for the seed optimization, and
- * those for the sequence optimization.
+ * those for the sequence optimization. Any other settings are given in a
+ * GeneticPM1Options.
  */
 public class GeneticPM1Parameters {
 
   /**
    * CTOR. See individual fields for parameter documentation.
+   * Every optional setting is left at its default.
    * @param SPopSize
    * @param SNumberOfGenerations
    * @param SElitismRate
@@ -44,6 +47,38 @@ public class GeneticPM1Parameters {
       double SElitismRate, double SMutationRate, double SSelectionGradient,
       int BPopSize, int BNumberOfGenerations, double BElitismRate,
       double BMutationRate, double BSelectionGradient) {
+    this(new GeneticPM1Options(), SPopSize, SNumberOfGenerations,
+        SElitismRate, SMutationRate, SSelectionGradient, BPopSize,
+        BNumberOfGenerations, BElitismRate, BMutationRate,
+        BSelectionGradient);
+  }
+
+  /**
+   * CTOR. See individual fields for parameter documentation.
+   * The options are copied, so they may go on to be changed.
+   * @param options the optional settings.
+   * @param SPopSize
+   * @param SNumberOfGenerations
+   * @param SElitismRate
+   * @param SMutationRate
+   * @param SSelectionGradient
+   * @param BPopSize
+   * @param BNumberOfGenerations
+   * @param BElitismRate
+   * @param BMutationRate
+   * @param BSelectionGradient
+   */
+  public GeneticPM1Parameters(GeneticPM1Options options, int SPopSize,
+      int SNumberOfGenerations,
+      double SElitismRate, double SMutationRate, double SSelectionGradient,
+      int BPopSize, int BNumberOfGenerations, double BElitismRate,
+      double BMutationRate, double BSelectionGradient) {
+    this.seedOptimizer = options.getSeedOptimizer();
+    this.fitnessCacheSize = options.getFitnessCacheSize();
+    this.incrementalBlockiness = options.getIncrementalBlockiness();
+    this.blockinessThreads = options.getBlockinessThreads();
+    this.stoppingPolicy = options.getStoppingPolicy();
+    this.surrogateFraction = options.getSurrogateFraction();
     this.SPopSize = SPopSize;
     this.SNumberOfGenerations = SNumberOfGenerations;
     this.SElitismRate = SElitismRate;
@@ -58,6 +93,43 @@ public class GeneticPM1Parameters {
     this.BSelectionGradient = BSelectionGradient;
   }
 
+  /**
+   * The way of optimizing the seed. The seed-optimizing GA parameters only
+   * apply if it is done with a GA.
+   */
+  private final SeedOptimizer seedOptimizer;
+
+  /**
+   * The number of chromosomes whose fitness each GA remembers, so as not to
+   * simulate them again; 0 for none.
+   */
+  private final int fitnessCacheSize;
+
+  /**
+   * Whether the blockiness-optimizing GA works out the blockiness of its
+   * stego images from the changes to the cover, rather than building them.
+   */
+  private final boolean incrementalBlockiness;
+
+  /**
+   * The number of native threads that every blockiness calculation is split
+   * up between; 1 to work it out on the calling thread alone.
+   */
+  private final int blockinessThreads;
+
+  /**
+   * The policy that may cut the runs of both GAs short of their number of
+   * generations; null to always run every generation.
+   */
+  private final StoppingPolicy stoppingPolicy;
+
+  /**
+   * The fraction of the individuals to evaluate each generation that the
+   * blockiness-optimizing GA fully simulates, after screening them with an
+   * incremental estimate; 1 to simulate them all, without screening.
+   */
+  private final double surrogateFraction;
+
   /**
    * The population size of the seed-optimizing GA.
    */
@@ -113,6 +185,51 @@ public class GeneticPM1Parameters {
    */
   private final double BSelectionGradient;
 
+  /**
+   * Get the way of optimizing the seed.
+   */
+  public SeedOptimizer getSeedOptimizer() {
+    return seedOptimizer;
+  }
+
+  /**
+   * Get the number of chromosomes whose fitness each GA remembers.
+   */
+  public int getFitnessCacheSize() {
+    return fitnessCacheSize;
+  }
+
+  /**
+   * Get whether the blockiness-optimizing GA works out the blockiness of its
+   * stego images incrementally.
+   */
+  public boolean getIncrementalBlockiness() {
+    return incrementalBlockiness;
+  }
+
+  /**
+   * Get the number of native threads that every blockiness calculation is
+   * split up between.
+   */
+  public int getBlockinessThreads() {
+    return blockinessThreads;
+  }
+
+  /**
+   * Get the policy that may cut the runs of both GAs short; may be null.
+   */
+  public StoppingPolicy getStoppingPolicy() {
+    return stoppingPolicy;
+  }
+
+  /**
+   * Get the fraction of the individuals to evaluate each generation that the
+   * blockiness-optimizing GA fully simulates.
+   */
+  public double getSurrogateFraction() {
+    return surrogateFraction;
+  }
+
   /**
    * Get the population size of the seed-optimizing GA.
    */
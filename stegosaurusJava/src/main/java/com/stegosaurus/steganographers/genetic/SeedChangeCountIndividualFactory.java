@@ -43,6 +43,9 @@ public class SeedChangeCountIndividualFactory
   /**
    * Construct a factory to build individuals used in the optimization of
    * seeds for a given EmbedRequest.
+   * The request's coefficient snapshot is taken here, once, and all the
+   * individuals built share the request, since pretend embeddings only
+   * ever read the snapshot.
    * @param request the embed request to optimize for.
    * @param factory an embedder factory.
    * @see SeedChangeCountIndividual for info on the PM1Embedders built here.
@@ -51,6 +54,7 @@ public class SeedChangeCountIndividualFactory
                                           PM1EmbedderFactory factory) {
     this.embedder = factory.build(new DummyPMSequence());
     this.request = request;
+    request.getSnapshot();
   }
 
   /**
@@ -58,7 +62,6 @@ public class SeedChangeCountIndividualFactory
    */
   @Override
   public SeedChangeCountIndividual build(Chromosome c) {
-    EmbedRequest r = new EmbedRequest(request);
-    return new SeedChangeCountIndividual(c, r, embedder);
+    return new SeedChangeCountIndividual(c, request, embedder);
   }
 }
@@ -0,0 +1,36 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.genetic;
+
+/**
+ * The ways in which GeneticPM1 may go about choosing the seed to embed a
+ * message with.
+ */
+public enum SeedOptimizer {
+  /**
+   * Run a genetic algorithm over the seeds, as configured by the seed GA
+   * parameters. Cheap, but not guaranteed to find the best seed.
+   */
+  GENETIC,
+
+  /**
+   * Try every single seed, in parallel, and keep the best one.
+   * @see ExhaustiveSeedSearch
+   */
+  EXHAUSTIVE
+}
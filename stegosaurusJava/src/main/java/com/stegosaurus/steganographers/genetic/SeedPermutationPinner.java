@@ -0,0 +1,94 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.genetic;
+
+import gnu.trove.set.TShortSet;
+import gnu.trove.set.hash.TShortHashSet;
+
+import java.util.List;
+
+import com.stegosaurus.crypt.PermutationProvider;
+import com.stegosaurus.genetic.GenerationListener;
+import com.stegosaurus.genetic.Individual;
+
+/**
+ * Pins the permutations for the seeds of the current generation of a seed
+ * optimizing GA, so that they are not evicted while the generation is
+ * simulated, and unpins them as soon as they're no longer in the population.
+ */
+class SeedPermutationPinner
+  implements GenerationListener<SeedChangeCountIndividual> {
+
+  /**
+   * The permutation provider.
+   */
+  private final PermutationProvider provider;
+
+  /**
+   * The size of the permutations, being the number of usable coefficients.
+   */
+  private final int size;
+
+  /**
+   * The seeds currently pinned.
+   */
+  private TShortSet pinned = new TShortHashSet();
+
+  /**
+   * CTOR.
+   * @param provider the permutation provider to pin permutations in.
+   * @param size the size of the permutations.
+   */
+  SeedPermutationPinner(PermutationProvider provider, int size) {
+    this.provider = provider;
+    this.size = size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void generationStarting(
+      List<? extends Individual<SeedChangeCountIndividual>> population) {
+    TShortSet current = new TShortHashSet(population.size());
+    for(Individual<SeedChangeCountIndividual> i : population) {
+      short seed = i.getChromosome().asShort();
+      if(current.add(seed) && !pinned.contains(seed)) {
+        provider.pin(size, seed);
+      }
+    }
+    for(short seed : pinned.toArray()) {
+      if(!current.contains(seed)) {
+        provider.unpin(size, seed);
+      }
+    }
+    pinned = current;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void runFinished(
+      List<? extends Individual<SeedChangeCountIndividual>> population) {
+    for(short seed : pinned.toArray()) {
+      provider.unpin(size, seed);
+    }
+    pinned.clear();
+  }
+}
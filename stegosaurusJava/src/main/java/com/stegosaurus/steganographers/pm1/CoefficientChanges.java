@@ -0,0 +1,124 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.pm1;
+
+import java.util.Arrays;
+
+import com.stegosaurus.cpp.CoefficientAccessor;
+
+/**
+ * A record of the changes an embedding would make to the coefficients of
+ * its cover image, in the order they would be made: the index of every
+ * coefficient changed, as understood by the image's CoefficientAccessor,
+ * and the amount it is changed by.
+ */
+public final class CoefficientChanges {
+  /**
+   * The initial capacity of the arrays.
+   */
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * The indices of the coefficients changed.
+   */
+  private int[] indices = new int[INITIAL_CAPACITY];
+
+  /**
+   * The amount every coefficient is changed by.
+   */
+  private int[] deltas = new int[INITIAL_CAPACITY];
+
+  /**
+   * The number of changes recorded.
+   */
+  private int size = 0;
+
+  /**
+   * Record a change.
+   * @param index the index of the coefficient changed.
+   * @param delta the amount it is changed by.
+   */
+  public void add(int index, int delta) {
+    if(size == indices.length) {
+      indices = Arrays.copyOf(indices, size * 2);
+      deltas = Arrays.copyOf(deltas, size * 2);
+    }
+    indices[size] = index;
+    deltas[size] = delta;
+    size++;
+  }
+
+  /**
+   * Get the indices of the coefficients changed. Only the first getSize()
+   * elements of the array mean anything; it should not be modified.
+   * @return the indices.
+   */
+  public int[] getIndices() {
+    return indices;
+  }
+
+  /**
+   * Get the amount every coefficient is changed by. Only the first
+   * getSize() elements of the array mean anything; it should not be
+   * modified.
+   * @return the deltas.
+   */
+  public int[] getDeltas() {
+    return deltas;
+  }
+
+  /**
+   * Get the number of changes recorded.
+   * @return the number of changes.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Make the changes recorded to the coefficients of the accessor given.
+   * @param accessor the accessor over the coefficients to change.
+   */
+  public void applyTo(CoefficientAccessor accessor) {
+    shift(accessor, 1);
+  }
+
+  /**
+   * Take the changes recorded back out of the coefficients of the accessor
+   * given, after they have been made with applyTo().
+   * @param accessor the accessor over the coefficients to change back.
+   */
+  public void revert(CoefficientAccessor accessor) {
+    shift(accessor, -1);
+  }
+
+  /**
+   * Add the deltas recorded, times the sign given, to the coefficients of
+   * the accessor given.
+   * @param accessor the accessor over the coefficients to change.
+   * @param sign 1 to add the deltas, -1 to take them away.
+   */
+  private void shift(CoefficientAccessor accessor, int sign) {
+    short[] values = new short[size];
+    accessor.getCoefficients(indices, values, size);
+    for(int i = 0; i < size; i++) {
+      values[i] += sign * deltas[i];
+    }
+    accessor.setCoefficients(indices, values, size);
+  }
+}
@@ -17,19 +17,16 @@
  */
 package com.stegosaurus.steganographers.pm1;
 
-import gnu.trove.procedure.TIntIntProcedure;
-
-import com.stegosaurus.cpp.CoefficientAccessor;
+import com.stegosaurus.steganographers.ImagePermuter;
 import com.stegosaurus.stegostreams.BitInputStream;
 
 /**
  * The abstract callables used to embed data into images.
- * The class provides a method to actually construct an EmbedProcedure
- * depending on what is required.
- * Should be used with an ImagePermutater instance.
+ * The coefficients to embed into are taken from an ImagePermuter in
+ * batches, exactly as many as there are bits left in the message stream.
  * Construction is cheap, so it is safe to use this in a throwaway manner.
  */
-abstract class EmbedProcedure implements TIntIntProcedure {
+abstract class EmbedProcedure {
   /**
    * The message stream.
    */
@@ -50,12 +47,28 @@ abstract class EmbedProcedure implements TIntIntProcedure {
     changes = 0;
   }
 
-  protected abstract boolean doEmbed(int index, int val, int bit);
+  /**
+   * Take the next batch of coefficients from the permuter given, and embed
+   * the next bits of the message stream into them, one bit per coefficient.
+   * @param permuter the permuter to walk.
+   * @param max the number of coefficients to take; there are always at
+   *    least as many bits left in the stream.
+   * @return the number of coefficients taken; 0 if the permuter has run out.
+   */
+  protected abstract int doEmbed(ImagePermuter permuter, int max);
 
   protected void incrementChanges() {
     changes++;
   }
 
+  /**
+   * Add the number given to the change count.
+   * @param count the number of further changes required.
+   */
+  protected void addChanges(int count) {
+    changes += count;
+  }
+
   protected boolean changeNeeded(int val, int bit) {
     /*
      * A Negative even coefficient is a one, a negative odd coefficient
@@ -68,23 +81,48 @@ abstract class EmbedProcedure implements TIntIntProcedure {
   }
 
   /**
-   * {@inheritDoc}
+   * Get the next bit from the message stream.
+   * @return the bit.
    */
-  @Override
-  public boolean execute(int index, int val) {
-    int bit = in.read();
-    if(bit < 0) {
-      return false;
-    }
-    return doEmbed(index, val, bit);
+  protected int nextBit() {
+    return in.read();
+  }
+
+  /**
+   * Get the number of bits left to embed.
+   * @return the number of bits.
+   */
+  protected int bitsLeft() {
+    return in.available();
   }
 
-  public static EmbedProcedure build(BitInputStream in, CoefficientAccessor acc,
-                                     PMSequence seq, boolean real) {
-    if(real) {
-      return new RealEmbedProcedure(in, acc, seq);
+  /**
+   * Embed the whole message stream, walking the permuter given. Exactly as
+   * many coefficients are taken from the permuter as there are bits in
+   * the stream, unless it runs out first.
+   * @param permuter the permuter to walk.
+   */
+  public void embed(ImagePermuter permuter) {
+    embed(permuter, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Embed the message stream, walking the permuter given, until either the
+   * stream runs out or the number of changes required reaches the bound
+   * given; the bound is only checked in between batches.
+   * @param permuter the permuter to walk.
+   * @param bound the number of changes at which to stop.
+   */
+  public void embed(ImagePermuter permuter, int bound) {
+    int remaining = bitsLeft();
+    while(remaining > 0 && changes < bound) {
+      int count = doEmbed(permuter,
+                          Math.min(remaining, PM1Algorithm.BATCH_SIZE));
+      if(count == 0) {
+        return;
+      }
+      remaining -= count;
     }
-    return new FakeEmbedProcedure(in);
   }
 
   /**
@@ -17,28 +17,94 @@
  */
 package com.stegosaurus.steganographers.pm1;
 
-import com.stegosaurus.stegostreams.BitInputStream;
+import com.stegosaurus.steganographers.ImagePermuter;
 
 
 /**
  * Acts like an embed procedure but does not actively embed anything, instead
  * merely counts how many changes would be needed.
+ * <p>Only the parities of the coefficients matter for that, so rather than
+ * their values, their parities are taken from the permuter, 64 to a word,
+ * and the changes counted a word at a time, as the bits set when XORing
+ * them with the message bits. The message is taken already packed into
+ * words, as by BitInputStream.pack(), rather than as a stream.</p>
  */
 public class FakeEmbedProcedure extends EmbedProcedure {
 
+  /**
+   * The parities of the batch of coefficients being looked at.
+   */
+  private final long[] parities =
+    new long[PM1Algorithm.BATCH_SIZE / Long.SIZE];
+
+  /**
+   * The bits of the message, packed into words.
+   */
+  private final long[] message;
+
+  /**
+   * The number of bits in the message.
+   */
+  private final int length;
+
+  /**
+   * The index of the next bit of the message to embed.
+   */
+  private int position = 0;
+
   /**
    * CTOR.
-   * @param in the input stream.
+   * @param message the bits of the message, packed into words.
+   * @param length the number of bits in the message.
    */
-  public FakeEmbedProcedure(BitInputStream in) {
-    super(in);
+  public FakeEmbedProcedure(long[] message, int length) {
+    super(null);
+    this.message = message;
+    this.length = length;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected int bitsLeft() {
+    return length - position;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
   @Override
-  public boolean doEmbed(int index, int val, int bit) {
-    if(changeNeeded(val, bit)) {
-      incrementChanges();
+  protected int doEmbed(ImagePermuter permuter, int max) {
+    int count = permuter.nextParities(parities, max);
+    for(int i = 0, word = 0; i < count; i += Long.SIZE, word++) {
+      long bits = messageWord(position + i);
+      if(count - i < Long.SIZE) {
+        /* The parities past the end of the batch are clear already */
+        bits &= (1L << (count - i)) - 1;
+      }
+      addChanges(Long.bitCount(parities[word] ^ bits));
+    }
+    position += count;
+    return count;
+  }
+
+  /**
+   * Get the 64 bits of the message starting at the index given. Batches
+   * are a whole number of words long, so the index is always at the start
+   * of a word, save when the permuter has run out; the general case is
+   * handled all the same.
+   * @param index the index of the first bit.
+   * @return the bits, the first one in the lowest bit; those past the end of
+   *    the message are clear.
+   */
+  private long messageWord(int index) {
+    final int word = index / Long.SIZE;
+    final int shift = index % Long.SIZE;
+    long retval = message[word] >>> shift;
+    if(shift != 0 && word + 1 < message.length) {
+      retval |= message[word + 1] << (Long.SIZE - shift);
     }
-    return true;
+    return retval;
   }
 }
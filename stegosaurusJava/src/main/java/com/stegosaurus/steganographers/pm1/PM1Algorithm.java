@@ -30,6 +30,11 @@ import com.stegosaurus.stegutils.ByteBufferHelper;
  */
 public abstract class PM1Algorithm {
 
+  /**
+   * The number of coefficients taken from a permuter at once.
+   */
+  protected static final int BATCH_SIZE = 256;
+
   /**
    * The buffer helper we use to get byte buffers.
    */
@@ -61,6 +66,30 @@ public abstract class PM1Algorithm {
     return getClearedBuffer(2);
   }
 
+  /**
+   * Get the size, in bytes, of the largest message that may be embedded in
+   * an image with the number of usable coefficients given.
+   * Every usable coefficient carries one bit, and both the 16 bit seed and
+   * the 16 bit message length have to be carried as well as the message.
+   * @param usableCount the number of usable coefficients.
+   * @return the capacity, in bytes.
+   */
+  public static long computeCapacity(int usableCount) {
+    long bits = usableCount - (2 * Short.SIZE);
+    return Math.max(0, Math.min(Short.MAX_VALUE, bits / Byte.SIZE));
+  }
+
+  /**
+   * Get the size, in bytes, of the largest message that may be embedded in
+   * the image given.
+   * @param image the image.
+   * @return the capacity, in bytes.
+   */
+  protected long computeCapacity(JPEGImage image) {
+    return computeCapacity(
+        getAccessorForImage(image).getUsableCoefficientCount());
+  }
+
   /**
    * Get a coefficient accessor for the image given.
    * @param image the image.
@@ -34,6 +34,36 @@ public interface PM1Embedder extends Embedder {
    */
   public int fakeEmbed(EmbedRequest request, short seed);
 
+  /**
+   * Pretend to fulfill the embed request given, giving up as soon as the
+   * number of changes required reaches the bound given.
+   * @param request the embed request.
+   * @param seed the seed to reseed the permutation with.
+   * @param bound the number of changes at which to give up.
+   * @return the number of changes required if below the bound, or some
+   *    number no smaller than the bound otherwise.
+   */
+  public int fakeEmbed(EmbedRequest request, short seed, int bound);
+
+  /**
+   * Work out the changes that fulfilling the embed request given would
+   * make to its cover, in the order they would be made, without actually
+   * making any of them.
+   * @param request the embed request.
+   * @param seed the seed to reseed the permutation with.
+   * @return the changes.
+   */
+  public CoefficientChanges recordEmbed(EmbedRequest request, short seed);
+
+  /**
+   * Fulfill an embed request by changing its cover's coefficients in place,
+   * without writing a new image out of them. The changes only last until
+   * the cover is next reset, as by JPEGImage.discardCoefficientChanges().
+   * @param request the embed request to fulfill.
+   * @param seed the seed to reseed the permutation with.
+   */
+  public void embedInPlace(EmbedRequest request, short seed);
+
   /**
    * Fulfill an embed request, by embedding a message into a cover.
    * @param request the embed request to fulfill.
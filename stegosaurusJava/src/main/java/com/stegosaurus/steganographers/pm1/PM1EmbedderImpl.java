@@ -18,8 +18,8 @@
 package com.stegosaurus.steganographers.pm1;
 
 import com.google.inject.Inject;
-import com.stegosaurus.cpp.CoefficientAccessor;
 import com.stegosaurus.cpp.JPEGImage;
+import com.stegosaurus.steganographers.CoefficientView;
 import com.stegosaurus.steganographers.EmbedRequest;
 import com.stegosaurus.steganographers.ImagePermuter;
 import com.stegosaurus.stegostreams.BitInputStream;
@@ -63,12 +63,29 @@ public class PM1EmbedderImpl extends PM1Algorithm implements PM1Embedder {
 
   @Override
   public int fakeEmbed(EmbedRequest request, short seed) {
-    return embed(request, seed, false);
+    return fakeEmbed(request, seed, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int fakeEmbed(EmbedRequest request, short seed, int bound) {
+    return embed(request, seed, false, bound, null);
+  }
+
+  @Override
+  public CoefficientChanges recordEmbed(EmbedRequest request, short seed) {
+    CoefficientChanges changes = new CoefficientChanges();
+    embed(request, seed, false, Integer.MAX_VALUE, changes);
+    return changes;
+  }
+
+  @Override
+  public void embedInPlace(EmbedRequest request, short seed) {
+    embed(request, seed, true, Integer.MAX_VALUE, null);
   }
 
   @Override
   public JPEGImage embed(EmbedRequest request, short seed) {
-    embed(request, seed, true);
+    embedInPlace(request, seed);
     return request.getCover().writeNew();
   }
 
@@ -82,45 +99,110 @@ public class PM1EmbedderImpl extends PM1Algorithm implements PM1Embedder {
     return Short.MAX_VALUE;
   }
 
+  @Override
+  public long getCapacity(JPEGImage cover) {
+    return computeCapacity(cover);
+  }
+
   /**
    * Embed (or pretend to) the request's message into its cover image.
+   * Pretend embeddings walk the request's coefficient snapshot, and so need
+   * not cross over to the native side at all.
    * @param request the embed request.
    * @param seed the seed to reseed the permutation with.
    * @param real whether to actually do any changing of the image data.
-   * @return the number of changes required.
+   * @param bound the number of changes at which to give up.
+   * @param record where to record the changes of a pretend embedding; null
+   *    if they need not be recorded.
+   * @return the number of changes required, or some number no smaller than
+   *    the bound if it was reached.
    */
   private int embed(EmbedRequest request, short seed,
-                    boolean real) {
-    JPEGImage cover = request.getCover();
+                    boolean real, int bound, CoefficientChanges record) {
     String key = request.getKey();
     byte[] msg = request.getMessage();
-    CoefficientAccessor acc = getAccessorForImage(cover);
-    ImagePermuter permuter = permuterFactory.build(acc, key);
+    CoefficientView view = null;
+    ImagePermuter permuter;
+    if(real) {
+      JPEGImage cover = request.getCover();
+      view = new CoefficientView(cover);
+      permuter = permuterFactory.build(getAccessorForImage(cover), key);
+    } else {
+      permuter = permuterFactory.build(request.getSnapshot(), key);
+    }
     byte[] seedBytes = getClearedBuffer().putShort(seed).array();
+    if(!real && record == null) {
+      return countChanges(request, seed, seedBytes, permuter, bound);
+    }
     BitInputStream in = new BitInputStream(seedBytes);
-    int changed = doEmbed(in, acc, permuter, real);
+    int changed = doEmbed(in, view, permuter, bound, record);
+    if(changed >= bound) {
+      return changed;
+    }
     permuter.setSeed(seed);
     short len = (short) msg.length;
     byte[] lenBytes = getClearedBuffer().putShort(len).array();
     in.reset(lenBytes, msg);
-    changed += doEmbed(in, acc, permuter, real);
+    changed += doEmbed(in, view, permuter, bound - changed, record);
     in.close();
+    if(real) {
+      request.discardSnapshot();
+    }
     return changed;
   }
 
+  /**
+   * Count the changes an embedding would require, without making or
+   * recording them. Only the parities of the coefficients are looked at,
+   * against the bits of the seed and message packed into words; the
+   * message is packed once per request, however many seeds it is tried
+   * with.
+   * @param request the embed request.
+   * @param seed the seed to reseed the permutation with.
+   * @param seedBytes the bytes of the seed.
+   * @param permuter the image permuter in use.
+   * @param bound the number of changes at which to give up.
+   * @return the number of changes required, or some number no smaller than
+   *    the bound if it was reached.
+   */
+  private int countChanges(EmbedRequest request, short seed,
+                           byte[] seedBytes, ImagePermuter permuter,
+                           int bound) {
+    EmbedProcedure proc = new FakeEmbedProcedure(
+        BitInputStream.pack(seedBytes), seedBytes.length * Byte.SIZE);
+    proc.embed(permuter, bound);
+    int changed = proc.getChanges();
+    if(changed >= bound) {
+      return changed;
+    }
+    permuter.setSeed(seed);
+    int length = (request.getMessage().length + Short.BYTES) * Byte.SIZE;
+    proc = new FakeEmbedProcedure(request.getPackedMessage(), length);
+    proc.embed(permuter, bound - changed);
+    return changed + proc.getChanges();
+  }
+
   /**
    * Actually execute the embedding of the message stream given on the
-   * permutation and coefficient accesor given.
+   * permutation and coefficient view given.
    * @param in the bit input stream containing the message to embed.
-   * @param acc the CoefficientAccessor to embed into
+   * @param view the view over the coefficients to embed into; may be null if
+   *    the changes are only to be recorded.
    * @param permuter the image permuter in use.
-   * @param real whether to actually do any embedding.
+   * @param bound the number of changes at which to stop.
+   * @param record where to record the changes; null to make them.
    * @return the number of changes required for the embed.
    */
-  private int doEmbed(BitInputStream in, CoefficientAccessor acc,
-                      ImagePermuter permuter, boolean real) {
-    EmbedProcedure proc = EmbedProcedure.build(in, acc, sequence, real);
-    permuter.walk(proc);
+  private int doEmbed(BitInputStream in, CoefficientView view,
+                      ImagePermuter permuter, int bound,
+                      CoefficientChanges record) {
+    EmbedProcedure proc;
+    if(record != null) {
+      proc = new RecordingEmbedProcedure(in, sequence, record);
+    } else {
+      proc = new RealEmbedProcedure(in, view, sequence);
+    }
+    proc.embed(permuter, bound);
     return proc.getChanges();
   }
 }
@@ -17,10 +17,8 @@
  */
 package com.stegosaurus.steganographers.pm1;
 
-import gnu.trove.procedure.TIntIntProcedure;
-
-import com.stegosaurus.cpp.CoefficientAccessor;
 import com.stegosaurus.cpp.JPEGImage;
+import com.stegosaurus.steganographers.CoefficientSnapshot;
 import com.stegosaurus.steganographers.Extractor;
 import com.stegosaurus.steganographers.ImagePermuter;
 import com.stegosaurus.stegostreams.BitOutputStream;
@@ -36,6 +34,16 @@ public class PM1Extractor extends PM1Algorithm implements Extractor {
    */
   private final BitOutputStream os = new BitOutputStream();
 
+  /**
+   * The indices of the batch of coefficients being extracted from.
+   */
+  private final int[] indices = new int[BATCH_SIZE];
+
+  /**
+   * The values of the batch of coefficients being extracted from.
+   */
+  private final short[] values = new short[BATCH_SIZE];
+
   /**
    * A factory to construct image permuters.
    */
@@ -60,8 +68,9 @@ public class PM1Extractor extends PM1Algorithm implements Extractor {
    * @return the message as a byte array.
    */
   public byte[] extract(JPEGImage carrier, String key) {
-    CoefficientAccessor acc = getAccessorForImage(carrier);
-    ImagePermuter permuter = permFactory.build(acc, key);
+    CoefficientSnapshot snapshot =
+      new CoefficientSnapshot(getAccessorForImage(carrier));
+    ImagePermuter permuter = permFactory.build(snapshot, key);
     doExtract(permuter, Short.SIZE);
     short seed = getClearedBuffer().put(os.data()).getShort(0);
     permuter.setSeed(seed);
@@ -78,15 +87,18 @@ public class PM1Extractor extends PM1Algorithm implements Extractor {
    * @param os the bit output stream to place the message bits into.
    * @param len the number of bits to extract.
    */
-  private void doExtract(ImagePermuter permuter, final int len) {
+  private void doExtract(ImagePermuter permuter, int len) {
     os.reset();
-    permuter.walk(new TIntIntProcedure() {
-      private int count;
-      public boolean execute(int index, int value) {
+    while(len > 0) {
+      int count = permuter.next(indices, values, Math.min(len, BATCH_SIZE));
+      if(count == 0) {
+        return;
+      }
+      for(int i = 0; i < count; i++) {
+        int value = values[i];
         os.write((value < 0 ? ~value : value) & 1);
-        count++;
-        return count < len;
       }
-    });
+      len -= count;
+    }
   }
 }
@@ -17,12 +17,15 @@
  */
 package com.stegosaurus.steganographers.pm1;
 
-import com.stegosaurus.cpp.CoefficientAccessor;
+import com.stegosaurus.steganographers.CoefficientView;
+import com.stegosaurus.steganographers.ImagePermuter;
 import com.stegosaurus.stegostreams.BitInputStream;
 
 
 /**
  * An embed procedure that _will_ in fact embed into an image.
+ * The changes are written straight into the image's coefficients, through
+ * a view over them.
  */
 public class RealEmbedProcedure extends EmbedProcedure {
 
@@ -32,9 +35,9 @@ public class RealEmbedProcedure extends EmbedProcedure {
   private PMSequence seq;
 
   /**
-   * The accessor representing the image.
+   * The view over the image's coefficients.
    */
-  private CoefficientAccessor acc;
+  private CoefficientView view;
 
   /**
    * The total number of bits we've seen, regardless of whether they required
@@ -42,11 +45,21 @@ public class RealEmbedProcedure extends EmbedProcedure {
    */
   private int bitsSeen;
 
-  public RealEmbedProcedure(BitInputStream in, CoefficientAccessor acc,
+  /**
+   * The indices of the batch of coefficients being embedded into.
+   */
+  private final int[] indices = new int[PM1Algorithm.BATCH_SIZE];
+
+  /**
+   * The values of the batch of coefficients being embedded into.
+   */
+  private final short[] values = new short[PM1Algorithm.BATCH_SIZE];
+
+  public RealEmbedProcedure(BitInputStream in, CoefficientView view,
                             PMSequence seq) {
     super(in);
     this.seq = seq;
-    this.acc = acc;
+    this.view = view;
     bitsSeen = 0;
   }
 
@@ -54,16 +67,31 @@ public class RealEmbedProcedure extends EmbedProcedure {
    * {@inheritDoc}
    */
   @Override
-  protected boolean doEmbed(int index, int val, int bit) {
-    if(changeNeeded(val, bit)) {
-      incrementChanges();
-      val += (seq.atIndex(bitsSeen) ? 1 : -1);
-      if(val == 0) {
-        val = (bit == 0 ? -1 : 1);
+  protected int doEmbed(ImagePermuter permuter, int max) {
+    int count = permuter.next(indices, values, max);
+    for(int i = 0; i < count; i++) {
+      int val = values[i];
+      int bit = nextBit();
+      if(changeNeeded(val, bit)) {
+        incrementChanges();
+        val += (seq.atIndex(bitsSeen) ? 1 : -1);
+        if(val == 0) {
+          val = (bit == 0 ? -1 : 1);
+        }
+        apply(indices[i], values[i], val);
       }
-      acc.setCoefficient(index, val);
+      bitsSeen++;
     }
-    bitsSeen++;
-    return true;
+    return count;
+  }
+
+  /**
+   * Change the coefficient at the index given.
+   * @param index the index of the coefficient.
+   * @param original its value before the change.
+   * @param value its value after the change.
+   */
+  protected void apply(int index, int original, int value) {
+    view.set(index, (short) value);
   }
 }
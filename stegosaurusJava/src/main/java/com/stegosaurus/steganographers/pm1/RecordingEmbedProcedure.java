@@ -0,0 +1,53 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.pm1;
+
+import com.stegosaurus.stegostreams.BitInputStream;
+
+/**
+ * An embed procedure that makes the same changes a real one would, but
+ * records them instead of writing them into the image.
+ * It is meant to walk the cover's coefficient snapshot, so as not to cross
+ * over to the native side at all.
+ */
+class RecordingEmbedProcedure extends RealEmbedProcedure {
+  /**
+   * The record of the changes.
+   */
+  private CoefficientChanges changes;
+
+  /**
+   * CTOR.
+   * @param in the message stream.
+   * @param seq the sequence used to embed.
+   * @param changes the record to add the changes to.
+   */
+  public RecordingEmbedProcedure(BitInputStream in, PMSequence seq,
+                                 CoefficientChanges changes) {
+    super(in, null, seq);
+    this.changes = changes;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void apply(int index, int original, int value) {
+    changes.add(index, value - original);
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.stegosaurus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of an embedding with a time budget: how much of the budget
+ * was left over, and how well the embedding was optimized.
+ */
+public class BudgetedEmbedResult {
+  /**
+   * The part of the budget left over, in nanoseconds.
+   */
+  private final long remainingNanos;
+
+  /**
+   * The fitness achieved.
+   */
+  private final double fitness;
+
+  /**
+   * CTOR.
+   * @param remainingNanos the part of the budget left over, in nanoseconds;
+   *    negative if the embedding went over it
+   * @param fitness the fitness achieved; NaN if nothing was optimized
+   */
+  BudgetedEmbedResult(long remainingNanos, double fitness) {
+    this.remainingNanos = remainingNanos;
+    this.fitness = fitness;
+  }
+
+  /**
+   * Get the part of the budget left over once the output was written.
+   * @param unit the unit to get it in.
+   * @return the time left over; negative if the embedding went over budget.
+   */
+  public long getRemaining(TimeUnit unit) {
+    return unit.convert(remainingNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the fitness achieved by the optimization; the lower the better.
+   * @return the fitness, or NaN if there was no time to optimize anything.
+   */
+  public double getFitness() {
+    return fitness;
+  }
+}
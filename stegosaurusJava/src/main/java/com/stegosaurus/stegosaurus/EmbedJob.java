@@ -0,0 +1,97 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.stegosaurus;
+
+import java.nio.file.Path;
+
+/**
+ * A single embedding job to be run as part of a batch: a cover image, where
+ * the result should be written, and the message and key to embed with.
+ */
+public class EmbedJob {
+  /**
+   * The path to the cover image.
+   */
+  private final Path cover;
+
+  /**
+   * The path where the result should be written.
+   */
+  private final Path output;
+
+  /**
+   * The message.
+   */
+  private final String message;
+
+  /**
+   * The key.
+   */
+  private final String key;
+
+  /**
+   * CTOR.
+   * @param cover the path to the cover image
+   * @param output the path where the result should be written
+   * @param message the message
+   * @param key the key
+   */
+  public EmbedJob(Path cover, Path output, String message, String key) {
+    this.cover = cover;
+    this.output = output;
+    this.message = message;
+    this.key = key;
+  }
+
+  /**
+   * Get the path to the cover image.
+   * @return the cover's path.
+   */
+  public Path getCover() {
+    return cover;
+  }
+
+  /**
+   * Get the path where the result should be written.
+   * @return the output path.
+   */
+  public Path getOutput() {
+    return output;
+  }
+
+  /**
+   * Get the message.
+   * @return the message.
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * Get the key.
+   * @return the key.
+   */
+  public String getKey() {
+    return key;
+  }
+
+  @Override
+  public String toString() {
+    return "EmbedJob(" + cover + " -> " + output + ")";
+  }
+}
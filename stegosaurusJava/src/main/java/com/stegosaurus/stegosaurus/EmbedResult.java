@@ -0,0 +1,67 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.stegosaurus;
+
+/**
+ * The outcome of a single EmbedJob run as part of a batch.
+ */
+public class EmbedResult {
+  /**
+   * The job.
+   */
+  private final EmbedJob job;
+
+  /**
+   * Why the job failed, or null if it didn't.
+   */
+  private final Throwable failure;
+
+  /**
+   * CTOR.
+   * @param job the job
+   * @param failure why the job failed, or null if it succeeded
+   */
+  EmbedResult(EmbedJob job, Throwable failure) {
+    this.job = job;
+    this.failure = failure;
+  }
+
+  /**
+   * Get the job this is the result of.
+   * @return the job.
+   */
+  public EmbedJob getJob() {
+    return job;
+  }
+
+  /**
+   * Whether the job succeeded, in which case its output has been written.
+   * @return true if the job succeeded.
+   */
+  public boolean isSuccessful() {
+    return failure == null;
+  }
+
+  /**
+   * Get the reason the job failed.
+   * @return the failure, or null if the job succeeded.
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.stegosaurus;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.stegosaurus.concurrent.JobScheduler;
+
+/**
+ * Runs a stream of embedding jobs, and hands out their results in the order
+ * in which they finish.
+ * Jobs are only pulled from the source as there is room for them, so that
+ * no more than a bounded number of them are in flight at any time.
+ */
+class EmbedResultIterator implements Iterator<EmbedResult> {
+  /**
+   * The facade that actually runs the jobs.
+   */
+  private final StegosaurusFacadeImpl facade;
+
+  /**
+   * Where the jobs come from.
+   */
+  private final Iterator<EmbedJob> source;
+
+  /**
+   * The scheduler to run the jobs on.
+   */
+  private final JobScheduler scheduler;
+
+  /**
+   * The results of the jobs that are done, but haven't been handed out.
+   */
+  private final BlockingQueue<EmbedResult> done = new LinkedBlockingQueue<>();
+
+  /**
+   * The number of jobs started whose results haven't been handed out.
+   */
+  private int pending = 0;
+
+  /**
+   * CTOR. Starts as many jobs as allowed straight away.
+   * @param facade the facade that actually runs the jobs
+   * @param source where the jobs come from
+   * @param scheduler the scheduler to run the jobs on
+   */
+  EmbedResultIterator(StegosaurusFacadeImpl facade, Iterator<EmbedJob> source,
+                      JobScheduler scheduler) {
+    this.facade = facade;
+    this.source = source;
+    this.scheduler = scheduler;
+    while(pending < scheduler.getMaxConcurrentJobs() && source.hasNext()) {
+      startNext();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return pending > 0;
+  }
+
+  /**
+   * Get the result of the next job to finish, waiting for it if needed.
+   * @return the result.
+   */
+  @Override
+  public EmbedResult next() {
+    if(!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    EmbedResult retval = Uninterruptibles.takeUninterruptibly(done);
+    pending--;
+    if(source.hasNext()) {
+      startNext();
+    }
+    return retval;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Start the next job in the source.
+   * A result is posted for it whatever happens, even if the job dies of an
+   * Error, so that next() is never left waiting on it; the Error is still
+   * thrown on after that.
+   */
+  private void startNext() {
+    final EmbedJob job = source.next();
+    pending++;
+    scheduler.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          done.add(facade.runJob(job));
+        } catch(Throwable t) {
+          done.add(new EmbedResult(job, t));
+          throw t;
+        }
+      }
+    });
+  }
+}
@@ -20,7 +20,14 @@ package com.stegosaurus.stegosaurus;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Wraps stegosaurus functionality together to offer a simple facade.
@@ -50,4 +57,196 @@ public interface StegosaurusFacade {
    * @throws IOException on io failure
    */
   String extract(InputStream in, String key) throws IOException;
+
+  /**
+   * Embed the message given, using the key given, into the image in the
+   * file at the path given, writing the resulting jpeg image to the file at
+   * the output path, which is created or replaced as needed.
+   * The cover image is memory mapped rather than read in, and is done with
+   * before the output is written, so the two paths may be the same. The
+   * output only ever holds a whole image: nothing is written to it should
+   * the embedding fail.
+   *
+   * @param in the path to the cover image
+   * @param out the path to write the result to
+   * @param message the message
+   * @param key the key
+   * @throws IOException on io failure
+   */
+  void embed(Path in, Path out, String message, String key) throws IOException;
+
+  /**
+   * Embed the message given, using the key given, into the image contained
+   * in the input stream given, placing the resulting jpeg image at the
+   * output stream given, within the time budget given.
+   * The budget runs from the call onwards, and bounds the optimization of
+   * the embedding: however short it is, a valid image is written, though
+   * the call may take somewhat longer than the budget to write it.
+   *
+   * @param in the input stream
+   * @param out the output stream
+   * @param message the message
+   * @param key the key
+   * @param budget the time budget
+   * @param unit the unit of the budget
+   * @return the part of the budget left over, and the fitness achieved
+   * @throws IOException on io failure
+   */
+  BudgetedEmbedResult embed(InputStream in, OutputStream out, String message,
+                            String key, long budget, TimeUnit unit)
+      throws IOException;
+
+  /**
+   * Embed the message given, using the key given, into the image in the
+   * file at the path given, writing the resulting jpeg image to the file at
+   * the output path, within the time budget given.
+   * The budget is as for the stream based budgeted embed.
+   *
+   * @param in the path to the cover image
+   * @param out the path to write the result to
+   * @param message the message
+   * @param key the key
+   * @param budget the time budget
+   * @param unit the unit of the budget
+   * @return the part of the budget left over, and the fitness achieved
+   * @throws IOException on io failure
+   */
+  BudgetedEmbedResult embed(Path in, Path out, String message, String key,
+                            long budget, TimeUnit unit) throws IOException;
+
+  /**
+   * Embed the message given, using the key given, into the image in the
+   * file channel given, from its current position onwards, writing the
+   * resulting jpeg image into the output channel.
+   * The cover image is memory mapped rather than read in.
+   *
+   * @param in the channel with the cover image; must be readable
+   * @param out the channel to write to; must be writable
+   * @param message the message
+   * @param key the key
+   * @throws IOException on io failure
+   */
+  void embed(FileChannel in, FileChannel out, String message, String key)
+      throws IOException;
+
+  /**
+   * Extract a message from the image in the file at the path given, using
+   * the key given. The image is memory mapped rather than read in.
+   *
+   * @param in the path to the image
+   * @param key the key
+   * @return the message
+   * @throws IOException on io failure
+   */
+  String extract(Path in, String key) throws IOException;
+
+  /**
+   * Extract a message from the image in the file channel given, from its
+   * current position onwards, using the key given. The image is memory mapped
+   * rather than read in.
+   *
+   * @param in the channel; must be readable
+   * @param key the key
+   * @return the message
+   * @throws IOException on io failure
+   */
+  String extract(FileChannel in, String key) throws IOException;
+
+  /**
+   * Run all the embedding jobs given, several of them at once, and wait for
+   * all of them to finish.
+   * A job failing does not affect the others; its failure is reported in its
+   * result instead of being thrown.
+   *
+   * @param jobs the jobs to run
+   * @return the results of the jobs, in the same order as the jobs
+   */
+  List<EmbedResult> embedAll(Collection<EmbedJob> jobs);
+
+  /**
+   * Run the embedding jobs given, several of them at once, handing out their
+   * results in the order in which they finish.
+   * Jobs are only taken from the iterator given as there is room to run them,
+   * so it may be arbitrarily long (or lazily built). A job failing does not
+   * affect the others; its failure is reported in its result instead of being
+   * thrown.
+   *
+   * @param jobs the jobs to run
+   * @return an iterator over the results, which blocks until one is ready
+   */
+  Iterator<EmbedResult> embedAll(Iterator<EmbedJob> jobs);
+
+  /**
+   * Embed the message given, using the key given, into the image contained
+   * in the input stream given, placing the resulting jpeg image at the
+   * output stream given, in the background.
+   * Cancelling the future returned with interruption stops the embedding in
+   * between generations of its genetic algorithms.
+   *
+   * @param in the input stream
+   * @param out the output stream
+   * @param message the message
+   * @param key the key
+   * @return a future that completes when the embedding is done
+   */
+  ListenableFuture<Void> embedAsync(InputStream in, OutputStream out,
+                                    String message, String key);
+
+  /**
+   * Embed the message given, using the key given, into the image in the
+   * file at the path given, writing the result to the output path, in the
+   * background.
+   * Cancelling the future returned with interruption stops the embedding in
+   * between generations of its genetic algorithms.
+   *
+   * @param in the path to the cover image
+   * @param out the path to write the result to
+   * @param message the message
+   * @param key the key
+   * @return a future that completes when the embedding is done
+   */
+  ListenableFuture<Void> embedAsync(Path in, Path out, String message,
+                                    String key);
+
+  /**
+   * Extract a message from the image inside the input stream given, using
+   * the key given, in the background.
+   *
+   * @param in the input stream
+   * @param key the key
+   * @return a future for the message
+   */
+  ListenableFuture<String> extractAsync(InputStream in, String key);
+
+  /**
+   * Extract a message from the image in the file at the path given, using
+   * the key given, in the background.
+   *
+   * @param in the path to the image
+   * @param key the key
+   * @return a future for the message
+   */
+  ListenableFuture<String> extractAsync(Path in, String key);
+
+  /**
+   * Get the size, in bytes, of the largest message that may be embedded into
+   * the image contained in the input stream given.
+   * This is much cheaper than an embedding.
+   *
+   * @param in the input stream
+   * @return the capacity of the image, in bytes
+   * @throws IOException on io failure
+   */
+  long getCapacity(InputStream in) throws IOException;
+
+  /**
+   * Get the size, in bytes, of the largest message that may be embedded into
+   * the image in the file at the path given.
+   * This is much cheaper than an embedding.
+   *
+   * @param in the path to the image
+   * @return the capacity of the image, in bytes
+   * @throws IOException on io failure
+   */
+  long getCapacity(Path in) throws IOException;
 }
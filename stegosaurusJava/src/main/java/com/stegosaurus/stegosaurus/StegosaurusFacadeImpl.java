@@ -23,15 +23,30 @@ import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
 
+import com.stegosaurus.concurrent.JobScheduler;
 import com.stegosaurus.cpp.JPEGImage;
-import com.stegosaurus.cpp.JoctetArray;
+import com.stegosaurus.steganographers.BudgetedEmbedder;
+import com.stegosaurus.steganographers.BudgetedEmbedderFactory;
+import com.stegosaurus.steganographers.BudgetedEmbedding;
 import com.stegosaurus.steganographers.EmbedRequest;
 import com.stegosaurus.steganographers.Embedder;
-import com.stegosaurus.steganographers.EmbedderFactory;
 import com.stegosaurus.steganographers.Extractor;
 import com.stegosaurus.steganographers.ExtractorFactory;
 import com.stegosaurus.stegutils.NativeUtils;
@@ -44,46 +59,308 @@ class StegosaurusFacadeImpl implements StegosaurusFacade {
   /**
    * The embedder factory.
    */
-  private EmbedderFactory embedderFactory;
+  private BudgetedEmbedderFactory embedderFactory;
 
   /**
    * The extractor factory.
    */
   private ExtractorFactory extractorFactory;
 
+  /**
+   * The scheduler that runs batched jobs.
+   */
+  private JobScheduler scheduler;
+
   /**
    * CTOR.
    *
    * @param embedderFactory the embedder factory
    * @param extractorFactory the extractor factory
+   * @param scheduler the scheduler to run batched jobs on
    */
   @Inject
-  StegosaurusFacadeImpl(EmbedderFactory embedderFactory,
-                        ExtractorFactory extractorFactory) {
+  StegosaurusFacadeImpl(BudgetedEmbedderFactory embedderFactory,
+                        ExtractorFactory extractorFactory,
+                        JobScheduler scheduler) {
     this.embedderFactory = embedderFactory;
     this.extractorFactory = extractorFactory;
+    this.scheduler = scheduler;
   }
 
   @Override
   public void embed(InputStream in, OutputStream out, String message, String key)
       throws IOException {
-    Embedder embedder = embedderFactory.build();
+    Embedder embedder = buildEmbedder(message);
+    JPEGImage cover = NativeUtils.readImage(in);
+    NativeUtils.writeImage(out, doEmbed(embedder, cover, message, key));
+  }
+
+  @Override
+  public void embed(Path in, Path out, String message, String key)
+      throws IOException {
+    /* The cover is read in full before the output is touched, since they
+     * may well be the same file */
+    Embedder embedder = buildEmbedder(message);
+    JPEGImage stego;
+    try(FileChannel inChannel = FileChannel.open(in, StandardOpenOption.READ)) {
+      stego = doEmbed(embedder, NativeUtils.mapImage(inChannel), message, key);
+    }
+    writeAtomically(out, stego);
+  }
+
+  @Override
+  public BudgetedEmbedResult embed(InputStream in, OutputStream out,
+      String message, String key, long budget, TimeUnit unit)
+      throws IOException {
+    long deadline = System.nanoTime() + unit.toNanos(budget);
+    BudgetedEmbedder embedder = buildEmbedder(message);
+    JPEGImage cover = NativeUtils.readImage(in);
+    BudgetedEmbedding embedding =
+      doEmbed(embedder, cover, message, key, deadline);
+    NativeUtils.writeImage(out, embedding.getImage());
+    return new BudgetedEmbedResult(deadline - System.nanoTime(),
+                                   embedding.getFitness());
+  }
+
+  @Override
+  public BudgetedEmbedResult embed(Path in, Path out, String message,
+      String key, long budget, TimeUnit unit) throws IOException {
+    long deadline = System.nanoTime() + unit.toNanos(budget);
+    BudgetedEmbedder embedder = buildEmbedder(message);
+    BudgetedEmbedding embedding;
+    try(FileChannel inChannel = FileChannel.open(in, StandardOpenOption.READ)) {
+      embedding = doEmbed(embedder, NativeUtils.mapImage(inChannel), message,
+                          key, deadline);
+    }
+    writeAtomically(out, embedding.getImage());
+    return new BudgetedEmbedResult(deadline - System.nanoTime(),
+                                   embedding.getFitness());
+  }
+
+  @Override
+  public void embed(FileChannel in, FileChannel out, String message,
+                    String key) throws IOException {
+    Embedder embedder = buildEmbedder(message);
+    JPEGImage cover = NativeUtils.mapImage(in);
+    NativeUtils.writeImage(out, doEmbed(embedder, cover, message, key));
+  }
+
+  @Override
+  public String extract(InputStream in, String key) throws IOException {
+    return doExtract(NativeUtils.readImage(in), key);
+  }
+
+  @Override
+  public String extract(Path in, String key) throws IOException {
+    try(FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+      return extract(channel, key);
+    }
+  }
+
+  @Override
+  public String extract(FileChannel in, String key) throws IOException {
+    return doExtract(NativeUtils.mapImage(in), key);
+  }
+
+  @Override
+  public long getCapacity(InputStream in) throws IOException {
+    return embedderFactory.build().getCapacity(NativeUtils.readImage(in));
+  }
+
+  @Override
+  public long getCapacity(Path in) throws IOException {
+    try(FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+      return embedderFactory.build().getCapacity(NativeUtils.mapImage(channel));
+    }
+  }
+
+  @Override
+  public List<EmbedResult> embedAll(Collection<EmbedJob> jobs) {
+    List<ListenableFuture<EmbedResult>> futures = new ArrayList<>();
+    for(final EmbedJob job : jobs) {
+      futures.add(scheduler.submit(new Callable<EmbedResult>() {
+        @Override
+        public EmbedResult call() {
+          /* A job dying of an Error is reported like any other failure,
+           * so that the rest of the results are not lost to it */
+          try {
+            return runJob(job);
+          } catch(Throwable t) {
+            return new EmbedResult(job, t);
+          }
+        }
+      }));
+    }
+    List<EmbedResult> retval = new ArrayList<>(futures.size());
+    for(ListenableFuture<EmbedResult> future : futures) {
+      retval.add(Futures.getUnchecked(future));
+    }
+    return retval;
+  }
+
+  @Override
+  public Iterator<EmbedResult> embedAll(Iterator<EmbedJob> jobs) {
+    return new EmbedResultIterator(this, jobs, scheduler);
+  }
+
+  @Override
+  public ListenableFuture<Void> embedAsync(final InputStream in,
+      final OutputStream out, final String message, final String key) {
+    return scheduler.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        embed(in, out, message, key);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<Void> embedAsync(final Path in, final Path out,
+      final String message, final String key) {
+    return scheduler.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        embed(in, out, message, key);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<String> extractAsync(final InputStream in,
+                                               final String key) {
+    return scheduler.submit(new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        return extract(in, key);
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<String> extractAsync(final Path in,
+                                               final String key) {
+    return scheduler.submit(new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        return extract(in, key);
+      }
+    });
+  }
+
+  /**
+   * Run a single job from a batch, catching any failure.
+   * @param job the job
+   * @return the result of the job
+   */
+  EmbedResult runJob(EmbedJob job) {
+    try {
+      embed(job.getCover(), job.getOutput(), job.getMessage(), job.getKey());
+      return new EmbedResult(job, null);
+    } catch(Exception e) {
+      return new EmbedResult(job, e);
+    }
+  }
+
+  /**
+   * Build an embedder, and ensure that it can take on the message given.
+   * @param message the message to embed
+   * @return the embedder
+   */
+  private BudgetedEmbedder buildEmbedder(String message) {
+    BudgetedEmbedder embedder = embedderFactory.build();
     if (embedder.getMaximumMessageSize() < message.length()) {
       throw new IllegalArgumentException("Message is too long; must be under " +
           embedder.getMaximumMessageSize());
     }
-    NativeUtils.StegJoctetArray arr = NativeUtils.readInputStream(in);
-    JPEGImage cover = new JPEGImage(arr.cast(), arr.length());
-    EmbedRequest request = new EmbedRequest(cover, message.getBytes(), key);
-    JPEGImage result = embedder.embed(request);
-    JoctetArray outArray = JoctetArray.frompointer(result.getData());
-    NativeUtils.writeOctetArray(out, outArray, result.getDataLen());
+    return embedder;
   }
 
-  @Override
-  public String extract(InputStream in, String key) throws IOException {
-    NativeUtils.StegJoctetArray arr = NativeUtils.readInputStream(in);
-    JPEGImage cover = new JPEGImage(arr.cast(), arr.length());
+  /**
+   * Embed the message given into the cover given, after making sure that it
+   * fits.
+   * @param embedder the embedder to use
+   * @param cover the cover image
+   * @param message the message
+   * @param key the key
+   * @return the resulting image
+   */
+  private JPEGImage doEmbed(Embedder embedder, JPEGImage cover,
+                            String message, String key) {
+    return embedder.embed(buildRequest(embedder, cover, message, key));
+  }
+
+  /**
+   * Embed the message given into the cover given, after making sure that it
+   * fits, optimizing the embedding for as long as the deadline allows.
+   * @param embedder the embedder to use
+   * @param cover the cover image
+   * @param message the message
+   * @param key the key
+   * @param deadline the deadline, in System.nanoTime() terms
+   * @return the resulting image, and how the embedding went
+   */
+  private BudgetedEmbedding doEmbed(BudgetedEmbedder embedder,
+                                    JPEGImage cover, String message,
+                                    String key, long deadline) {
+    EmbedRequest request = buildRequest(embedder, cover, message, key);
+    return embedder.embed(request, deadline - System.nanoTime(),
+                          TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Build the request to embed the message given into the cover given,
+   * after making sure that it fits.
+   * @param embedder the embedder to use
+   * @param cover the cover image
+   * @param message the message
+   * @param key the key
+   * @return the request
+   */
+  private EmbedRequest buildRequest(Embedder embedder, JPEGImage cover,
+                                    String message, String key) {
+    byte[] bytes = message.getBytes();
+    long capacity = embedder.getCapacity(cover);
+    if (capacity < bytes.length) {
+      throw new IllegalArgumentException("Message is too long for this " +
+          "cover; it can take at most " + capacity + " bytes");
+    }
+    return new EmbedRequest(cover, bytes, key);
+  }
+
+  /**
+   * Write the image given to the path given, by way of a temporary file in
+   * the same directory, so that the path only ever holds a whole image.
+   * @param out the path to write to
+   * @param image the image
+   * @throws IOException on write error
+   */
+  private void writeAtomically(Path out, JPEGImage image) throws IOException {
+    Path tmp = Files.createTempFile(out.toAbsolutePath().getParent(),
+                                    out.getFileName().toString(), ".tmp");
+    try {
+      try(FileChannel channel = FileChannel.open(tmp,
+                                                 StandardOpenOption.WRITE)) {
+        NativeUtils.writeImage(channel, image);
+      }
+      try {
+        Files.move(tmp, out, StandardCopyOption.ATOMIC_MOVE);
+      } catch(AtomicMoveNotSupportedException e) {
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Extract the message in the image given.
+   * @param cover the image
+   * @param key the key
+   * @return the message
+   */
+  private String doExtract(JPEGImage cover, String key) {
     Extractor ex = extractorFactory.build();
     byte[] byteArray = ex.extract(cover, key);
     return new String(byteArray);
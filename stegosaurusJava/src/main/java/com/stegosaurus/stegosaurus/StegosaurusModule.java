@@ -17,18 +17,26 @@
  */
 package com.stegosaurus.stegosaurus;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.AbstractModule;
+import com.stegosaurus.concurrent.JobScheduler;
 import com.stegosaurus.concurrent.ListeningExecutorServiceProvider;
 import com.stegosaurus.crypt.DefaultPermutationProvider;
+import com.stegosaurus.crypt.MappedPermutationProvider;
+import com.stegosaurus.crypt.PermutationFormat;
 import com.stegosaurus.crypt.PermutationProvider;
 import com.stegosaurus.genetic.GeneticModule;
+import com.stegosaurus.genetic.StoppingPolicy;
 import com.stegosaurus.steganographers.SteganographersModule;
+import com.stegosaurus.steganographers.genetic.GeneticPM1Options;
 import com.stegosaurus.steganographers.genetic.GeneticPM1Parameters;
+import com.stegosaurus.steganographers.genetic.SeedOptimizer;
 import com.stegosaurus.stegutils.ByteBufferHelper;
 import com.stegosaurus.stegutils.ByteBufferHelperImpl;
 
@@ -44,21 +52,52 @@ public class StegosaurusModule extends AbstractModule {
     install(new SteganographersModule(buildGeneticParams()));
     install(new GeneticModule());
     bind(ByteBufferHelper.class).to(ByteBufferHelperImpl.class);
-    bind(PermutationProvider.class).to(DefaultPermutationProvider.class);
+    bindPermutationProvider();
+    bind(PermutationFormat.class).toInstance(getPermutationFormat());
     bind(ListeningExecutorService.class)
-      .toProvider(ListeningExecutorServiceProvider.class);
+      .toProvider(new ListeningExecutorServiceProvider(getWorkerThreadCount()));
+    bind(JobScheduler.class).toInstance(new JobScheduler(getMaxConcurrentJobs()));
     bind(HashFunction.class).toInstance(Hashing.sipHash24());
     bind(Charset.class).toInstance(Charset.defaultCharset());
     bind(StegosaurusFacade.class).to(StegosaurusFacadeImpl.class);
   }
 
+  /**
+   * Bind the permutation provider: an in-memory one, unless a permutation
+   * store has been configured, in which case base permutations are kept
+   * there.
+   */
+  private void bindPermutationProvider() {
+    PermutationProvider provider = new DefaultPermutationProvider(
+        getPermutationFormat(), getPermutationCacheBytes());
+    Path store = getPermutationStore();
+    if(store != null) {
+      try {
+        provider = new MappedPermutationProvider(store,
+            getPermutationFormat(), provider);
+      } catch(IOException e) {
+        addError(e);
+        return;
+      }
+    }
+    bind(PermutationProvider.class).toInstance(provider);
+  }
+
   /**
    * Build the genetic pm1 parameters instance to be used for the hyperparameters
    * of the genetic algorithm.
    * @return the parameters.
    */
   private GeneticPM1Parameters buildGeneticParams() {
+    GeneticPM1Options options = new GeneticPM1Options()
+      .setSeedOptimizer(getSeedOptimizer())
+      .setFitnessCacheSize(getFitnessCacheSize())
+      .setIncrementalBlockiness(getIncrementalBlockiness())
+      .setBlockinessThreads(getBlockinessThreads())
+      .setStoppingPolicy(getStoppingPolicy())
+      .setSurrogateFraction(getSurrogateFraction());
     return new GeneticPM1Parameters(
+      options,
       getSPopSize(),
       getSNumberOfGenerations(),
       getSElitismRate(),
@@ -72,6 +111,72 @@ public class StegosaurusModule extends AbstractModule {
     );
   }
 
+  /**
+   * Get the way of optimizing the seed.
+   * Defaults to SeedOptimizer.GENETIC.
+   */
+  protected SeedOptimizer getSeedOptimizer() {
+    return SeedOptimizer.GENETIC;
+  }
+
+  /**
+   * Get the number of chromosomes whose fitness each of the genetic
+   * algorithms remembers, so as not to simulate them again; 0 for none.
+   * Every chromosome remembered is kept as a copy, so this costs memory in
+   * proportion to the chromosome size. A few thousand is plenty.
+   * Defaults to 0.
+   */
+  protected int getFitnessCacheSize() {
+    return 0;
+  }
+
+  /**
+   * Get whether the blockiness-optimizing GA should work out the blockiness
+   * of its stego images from the coefficients it changes, rather than by
+   * building and decoding every one of them. Much faster, but only an
+   * approximation of the ratio it optimizes.
+   * Defaults to false.
+   */
+  protected boolean getIncrementalBlockiness() {
+    return false;
+  }
+
+  /**
+   * Get the number of native threads to split up every blockiness
+   * calculation between, so that the fitness of a single large cover may
+   * make use of every core; the frames are then decoded whole into memory
+   * first. Fitness evaluations already run on getWorkerThreadCount() threads
+   * of their own, so this is mostly worth raising for large covers and
+   * small populations.
+   * Defaults to 1, for no extra threads at all.
+   */
+  protected int getBlockinessThreads() {
+    return 1;
+  }
+
+  /**
+   * Get the policy under which both GAs may stop before running their full
+   * number of generations, once they seem to have converged; a
+   * StallStoppingPolicy, say, lets easy covers finish much sooner. Null to
+   * always run every generation.
+   * Defaults to null.
+   */
+  protected StoppingPolicy getStoppingPolicy() {
+    return null;
+  }
+
+  /**
+   * Get the fraction of the individuals to evaluate each generation that the
+   * blockiness-optimizing GA should fully simulate. The rest are screened
+   * out by the incremental estimate of their fitness, and ranked after
+   * those simulated; the correlation between the two is logged at level
+   * FINE. Only makes a difference without getIncrementalBlockiness().
+   * Defaults to 1, for every individual to be simulated.
+   */
+  protected double getSurrogateFraction() {
+    return 1.0;
+  }
+
   /**
    * Get the population size of the seed-optimizing GA.
    * Defaults to 50.
@@ -151,4 +256,52 @@ public class StegosaurusModule extends AbstractModule {
   protected double getBSelectionGradient() {
     return 10;
   }
+
+  /**
+   * Get the number of threads shared by all requests for fitness evaluations.
+   * Defaults to the number of available processors.
+   */
+  protected int getWorkerThreadCount() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Get the maximum number of batched or asynchronous requests to run at
+   * once. Each of them mostly waits on the worker threads, so there is little
+   * point to this being much larger than the worker thread count.
+   * Defaults to the number of available processors.
+   */
+  protected int getMaxConcurrentJobs() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Get the format of the permutations that decide where message bits go.
+   * Images can only be extracted with the format they were embedded with.
+   * Defaults to CLASSIC, the format of every image embedded so far.
+   */
+  protected PermutationFormat getPermutationFormat() {
+    return PermutationFormat.CLASSIC;
+  }
+
+  /**
+   * Get the number of bytes that permutations may take up while they're kept
+   * around for reuse. Permutations pinned by running genetic algorithms do
+   * not count towards this.
+   * Defaults to 256 MiB.
+   */
+  protected long getPermutationCacheBytes() {
+    return DefaultPermutationProvider.DEFAULT_MAXIMUM_BYTES;
+  }
+
+  /**
+   * Get the directory in which to keep base permutations (those derived from
+   * keys) as memory mapped files, to be shared by every process using the
+   * same directory and reused across restarts. Null to keep them in memory
+   * like any other permutation.
+   * Defaults to null.
+   */
+  protected Path getPermutationStore() {
+    return null;
+  }
 }
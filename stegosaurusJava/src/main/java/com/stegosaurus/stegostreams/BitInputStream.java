@@ -82,6 +82,25 @@ public class BitInputStream extends InputStream {
     return retval;
   }
 
+  /**
+   * Pack the bits a stream over the byte arrays given would produce into
+   * words, 64 to a word, the first bit in the lowest bit of the first word.
+   * Any bits in the last word past the end of the arrays are clear.
+   * @param in the first array of bytes.
+   * @param additional further byte arrays.
+   * @return the words.
+   */
+  public static long[] pack(byte[] in, byte... additional) {
+    byte[] bytes = Bytes.concat(in, additional);
+    long[] retval = new long[(bytes.length + Long.BYTES - 1) / Long.BYTES];
+    for(int i = 0; i < bytes.length; i++) {
+      /* Streams go from the most significant bit of every byte down */
+      long reversed = Integer.reverse(bytes[i] & 0xFF) >>> 24;
+      retval[i / Long.BYTES] |= reversed << ((i % Long.BYTES) * Byte.SIZE);
+    }
+    return retval;
+  }
+
   /**
    * Try to read n bits from the byte array and place them in b, where n is
    * the length of b.
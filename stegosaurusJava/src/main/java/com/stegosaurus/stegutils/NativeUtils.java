@@ -20,8 +20,15 @@ package com.stegosaurus.stegutils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 import com.google.common.io.ByteStreams;
+import com.stegosaurus.cpp.JPEGImage;
 import com.stegosaurus.cpp.JoctetArray;
 
 /**
@@ -35,6 +42,12 @@ public final class NativeUtils {
   static {
     System.loadLibrary("stegosaurus");
   }
+  /**
+   * The size of the buffer we start with when the size of an input stream
+   * can't be guessed.
+   */
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
   /**
    * Private CTOR.
    */
@@ -104,4 +117,83 @@ public final class NativeUtils {
       out.write(array.getitem(i));
     }
   }
+
+  /**
+   * Read an input stream in its entirety into a direct ByteBuffer, ready to be
+   * handed over to the native side.
+   * The buffer returned is flipped: its position is 0 and its limit is the
+   * number of bytes read.
+   * @param in the input stream to read.
+   * @return the direct buffer with the stream's contents.
+   * @throws IOException on read error.
+   */
+  public static ByteBuffer readToDirectBuffer(InputStream in)
+    throws IOException {
+    ReadableByteChannel channel = Channels.newChannel(in);
+    ByteBuffer buffer =
+      ByteBuffer.allocateDirect(Math.max(in.available(), INITIAL_BUFFER_SIZE));
+    while(channel.read(buffer) >= 0) {
+      if(!buffer.hasRemaining()) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Read an input stream into a new JPEGImage. The image data crosses over
+   * into native memory in a single bulk copy.
+   * @param in the input stream to read.
+   * @return the image.
+   * @throws IOException on read error.
+   */
+  public static JPEGImage readImage(InputStream in) throws IOException {
+    return JPEGImage.fromBuffer(readToDirectBuffer(in));
+  }
+
+  /**
+   * Map the file behind the channel given, from the channel's position to
+   * its end, and build a JPEGImage that reads straight out of the mapping.
+   * The image keeps the mapping alive for as long as it needs it.
+   * @param in the file channel; must be readable.
+   * @return the image.
+   * @throws IOException on read error.
+   */
+  public static JPEGImage mapImage(FileChannel in) throws IOException {
+    long position = in.position();
+    MappedByteBuffer mapped =
+      in.map(FileChannel.MapMode.READ_ONLY, position, in.size() - position);
+    return JPEGImage.wrap(mapped);
+  }
+
+  /**
+   * Write the raw data of the image given into the output stream given.
+   * The data is copied out of native memory in a single bulk copy.
+   * @param out the output stream.
+   * @param image the image to write.
+   * @throws IOException on write error.
+   */
+  public static void writeImage(OutputStream out, JPEGImage image)
+    throws IOException {
+    writeImage(Channels.newChannel(out), image);
+  }
+
+  /**
+   * Write the raw data of the image given into the channel given.
+   * @param out the channel.
+   * @param image the image to write.
+   * @throws IOException on write error.
+   */
+  public static void writeImage(WritableByteChannel out, JPEGImage image)
+    throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(image.getDataLen());
+    image.copyDataTo(buffer);
+    while(buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
 }
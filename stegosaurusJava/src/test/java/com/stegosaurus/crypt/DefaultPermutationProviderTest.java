@@ -18,11 +18,14 @@
 package com.stegosaurus.crypt;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * Test the DefaultPermutationProvider class.
  */
@@ -79,4 +82,100 @@ public class DefaultPermutationProviderTest {
       assertEquals(expected.get(i), returned.get(i));
     }
   }
+
+  /**
+   * Test that the permutations returned are in the format the provider was
+   * configured with.
+   */
+  @Test
+  public void testFormat() {
+    final long seed = 0xDEADBEEF;
+    final int length = 1000;
+    provider = new DefaultPermutationProvider(PermutationFormat.FEISTEL);
+    Permutation expected = new FeistelPermutation(length, seed);
+    expected.init();
+    Permutation returned = provider.getPermutation(length, seed);
+    for(int i = 0; i < expected.getSize(); i++)  {
+      assertEquals(expected.get(i), returned.get(i));
+    }
+  }
+
+  /**
+   * Test that hits and misses are counted.
+   */
+  @Test
+  public void testStats() {
+    provider.getPermutation(100, 20);
+    provider.getPermutation(100, 20);
+    provider.getPermutation(100, 21);
+    CacheStats stats = provider.getStats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(2, stats.missCount());
+  }
+
+  /**
+   * Test that permutations are evicted once they take up too many bytes.
+   */
+  @Test
+  public void testWeightLimit() {
+    final int size = 1000;
+    /* Room for a single permutation of this size, but not two */
+    provider = new DefaultPermutationProvider(PermutationFormat.CLASSIC,
+                                              size * 6);
+    Permutation first = provider.getPermutation(size, 20);
+    provider.getPermutation(size, 21);
+    assertFalse(first == provider.getPermutation(size, 20));
+    assertTrue(provider.getStats().evictionCount() > 0);
+  }
+
+  /**
+   * Test that the weight limit still holds once the lazy permutations held
+   * on to have been walked, and have grown.
+   */
+  @Test
+  public void testWeightLimitLazy() {
+    final int size = 1000;
+    final long maximumBytes = 8 * (size * 11 + 64);
+    provider = new DefaultPermutationProvider(PermutationFormat.LAZY,
+                                              maximumBytes);
+    for(int seed = 0; seed < 40; seed++) {
+      Permutation p = provider.getPermutation(size, seed);
+      for(int i = 0; i < size; i++) {
+        p.get(i);
+      }
+    }
+    long total = 0;
+    for(Permutation p : provider.getCachedPermutations()) {
+      total += p.getFootprint();
+    }
+    assertTrue(total <= maximumBytes);
+    assertTrue(provider.getStats().evictionCount() > 0);
+  }
+
+  /**
+   * Test that pinned permutations are kept around regardless of the weight
+   * limit, until unpinned.
+   */
+  @Test
+  public void testPinning() {
+    final int size = 1000;
+    provider = new DefaultPermutationProvider(PermutationFormat.CLASSIC, 1);
+    provider.pin(size, 20);
+    provider.pin(size, 20);
+    Permutation first = provider.getPermutation(size, 20);
+    provider.getPermutation(size, 21);
+    assertTrue(first == provider.getPermutation(size, 20));
+    provider.unpin(size, 20);
+    assertTrue(first == provider.getPermutation(size, 20));
+    provider.unpin(size, 20);
+    assertFalse(first == provider.getPermutation(size, 20));
+  }
+
+  /**
+   * Test that unpinning a permutation that is not pinned is an error.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnpinUnpinned() {
+    provider.unpin(100, 20);
+  }
 }
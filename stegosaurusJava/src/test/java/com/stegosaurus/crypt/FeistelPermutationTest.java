@@ -0,0 +1,130 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.crypt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the FeistelPermutation class.
+ */
+public class FeistelPermutationTest {
+  /**
+   * A random number generator.
+   */
+  private Random r;
+
+  /**
+   * The size of the permutation, completely arbitrary; not a power of two,
+   * so that cycle walking is exercised.
+   */
+  private static final int size = 1201;
+
+  /**
+   * The seed of the permutation.
+   */
+  private long seed;
+
+  /**
+   * The actual permutation.
+   */
+  private FeistelPermutation permutation;
+
+  /**
+   * The indices we've seen.
+   */
+  private BitSet seen;
+
+  /**
+   * Set up the test.
+   */
+  @Before
+  public void setUp() {
+    r = new Random();
+    seed = r.nextLong();
+    permutation = new FeistelPermutation(size, seed);
+    permutation.init();
+    seen = new BitSet(size);
+  }
+
+  /**
+   * Test that there are no repetitions, and that every element is returned.
+   */
+  @Test
+  public void testIsPermutation() {
+    for(int i = 0; i < size; i++) {
+      int val = permutation.get(i);
+      String msg = "Repetition at " + val + ", index " + i;
+      assertFalse(msg, seen.get(val));
+      seen.set(val);
+    }
+    assertEquals("Not every number returned", size, seen.cardinality());
+  }
+
+  /**
+   * Test that small permutations, with tiny domains, are still permutations.
+   */
+  @Test
+  public void testSmallSizes() {
+    for(int s = 1; s < 20; s++) {
+      Permutation p = new FeistelPermutation(s, seed);
+      p.init();
+      BitSet set = new BitSet(s);
+      for(int i = 0; i < s; i++) {
+        set.set(p.get(i));
+      }
+      assertEquals("Size " + s, s, set.cardinality());
+    }
+  }
+
+  /**
+   * Test that two permutations with the same seed and size are identical.
+   */
+  @Test
+  public void testDeterminism() {
+    Permutation other = new FeistelPermutation(size, seed);
+    other.init();
+    for(int i = 0; i < size; i++) {
+      assertEquals(permutation.get(i), other.get(i));
+    }
+  }
+
+  /**
+   * Test that we can't try to get permutation elements before calling init().
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testGetBeforeInit() {
+    Permutation p = new FeistelPermutation(size, r.nextLong());
+    p.get(0);
+  }
+
+  /**
+   * Test that the init() method can only be called once on a given
+   * permutation.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testMultipleInit() {
+    permutation.init();
+  }
+}
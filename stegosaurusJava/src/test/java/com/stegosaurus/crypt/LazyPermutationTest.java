@@ -0,0 +1,134 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.crypt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the LazyPermutation class.
+ */
+public class LazyPermutationTest {
+  /**
+   * A random number generator.
+   */
+  private Random r;
+
+  /**
+   * The size of the permutation, completely arbitrary.
+   */
+  private static final int size = 1201;
+
+  /**
+   * The seed of the permutation.
+   */
+  private long seed;
+
+  /**
+   * The actual permutation.
+   */
+  private LazyPermutation permutation;
+
+  /**
+   * Set up the test.
+   */
+  @Before
+  public void setUp() {
+    r = new Random();
+    seed = r.nextLong();
+    permutation = new LazyPermutation(size, seed);
+    permutation.init();
+  }
+
+  /**
+   * Test that there are no repetitions, and that every element is returned.
+   */
+  @Test
+  public void testIsPermutation() {
+    BitSet seen = new BitSet(size);
+    for(int i = 0; i < size; i++) {
+      int val = permutation.get(i);
+      String msg = "Repetition at " + val + ", index " + i;
+      assertFalse(msg, seen.get(val));
+      seen.set(val);
+    }
+    assertEquals("Not every number returned", size, seen.cardinality());
+  }
+
+  /**
+   * Test that the permutation is the same as a forward Fisher-Yates shuffle
+   * carried out in full, however it is walked.
+   */
+  @Test
+  public void testMatchesFullShuffle() {
+    Random random = new Random(seed);
+    int[] expected = new int[size];
+    for(int i = 0; i < size; i++) {
+      expected[i] = i;
+    }
+    for(int i = 0; i < size; i++) {
+      int j = i + random.nextInt(size - i);
+      int tmp = expected[i];
+      expected[i] = expected[j];
+      expected[j] = tmp;
+    }
+    /* Jump ahead first, and then go back to the start */
+    assertEquals(expected[size / 2], permutation.get(size / 2));
+    for(int i = 0; i < size; i++) {
+      assertEquals("Index " + i, expected[i], permutation.get(i));
+    }
+  }
+
+  /**
+   * Test that walking the permutation never takes it past its maximum
+   * footprint.
+   */
+  @Test
+  public void testFootprintBounded() {
+    for(int i = 0; i < size; i++) {
+      permutation.get(i);
+      assertTrue(permutation.getFootprint() <=
+                 permutation.getMaximumFootprint());
+    }
+  }
+
+  /**
+   * Test that we can't try to get permutation elements before calling init().
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testGetBeforeInit() {
+    Permutation p = new LazyPermutation(size, r.nextLong());
+    p.get(0);
+  }
+
+  /**
+   * Test that the init() method can only be called once on a given
+   * permutation.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testMultipleInit() {
+    permutation.init();
+  }
+}
@@ -0,0 +1,137 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.crypt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the MappedPermutationProvider class.
+ */
+public class MappedPermutationProviderTest {
+  /**
+   * The size of the permutations, completely arbitrary.
+   */
+  private static final int SIZE = 1201;
+
+  /**
+   * The seed of the permutations, completely arbitrary.
+   */
+  private static final long SEED = 0xDEADBEEF;
+
+  /**
+   * A temporary folder for the permutation store.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The directory of the store.
+   */
+  private Path store;
+
+  /**
+   * Set up the test.
+   */
+  @Before
+  public void setUp() {
+    store = folder.getRoot().toPath().resolve("store");
+  }
+
+  /**
+   * Build a provider over the store.
+   * @return the provider.
+   */
+  private MappedPermutationProvider buildProvider() throws IOException {
+    return new MappedPermutationProvider(store, PermutationFormat.CLASSIC,
+                                         new DefaultPermutationProvider());
+  }
+
+  /**
+   * Assert that the permutation given is the classic permutation of our
+   * size and seed.
+   * @param p the permutation.
+   */
+  private void assertExpectedPermutation(Permutation p) {
+    Permutation expected = new Permutation(SIZE, SEED);
+    expected.init();
+    assertEquals(SIZE, p.getSize());
+    for(int i = 0; i < SIZE; i++) {
+      assertEquals("Index " + i, expected.get(i), p.get(i));
+    }
+  }
+
+  /**
+   * Test that base permutations are written to the store, and are the same
+   * as those built in memory.
+   */
+  @Test
+  public void testBasePermutation() throws IOException {
+    MappedPermutationProvider provider = buildProvider();
+    Permutation p = provider.getBasePermutation(SIZE, SEED);
+    assertTrue(p instanceof MappedPermutation);
+    assertExpectedPermutation(p);
+    assertTrue(p == provider.getBasePermutation(SIZE, SEED));
+    File[] files = store.toFile().listFiles();
+    assertEquals("Expected a single permutation file", 1, files.length);
+  }
+
+  /**
+   * Test that a different provider, as another process would have, maps the
+   * file already there rather than writing it anew.
+   */
+  @Test
+  public void testSharedStore() throws IOException {
+    buildProvider().getBasePermutation(SIZE, SEED);
+    Path file = store.toFile().listFiles()[0].toPath();
+    long modified = Files.getLastModifiedTime(file).toMillis();
+    assertExpectedPermutation(buildProvider().getBasePermutation(SIZE, SEED));
+    assertEquals(modified, Files.getLastModifiedTime(file).toMillis());
+  }
+
+  /**
+   * Test that a corrupt file in the store is replaced.
+   */
+  @Test
+  public void testCorruptFile() throws IOException {
+    buildProvider().getBasePermutation(SIZE, SEED);
+    Path file = store.toFile().listFiles()[0].toPath();
+    Files.write(file, new byte[] { 1, 2, 3 });
+    assertExpectedPermutation(buildProvider().getBasePermutation(SIZE, SEED));
+  }
+
+  /**
+   * Test that other permutations are left to the in-memory provider.
+   */
+  @Test
+  public void testOtherPermutations() throws IOException {
+    Permutation p = buildProvider().getPermutation(SIZE, SEED);
+    assertExpectedPermutation(p);
+    assertEquals(0, store.toFile().listFiles().length);
+  }
+}
@@ -144,6 +144,19 @@ public class ChromosomeTest {
       first.hashCode(), second.hashCode());
   }
 
+  /**
+   * Test that copies are equal to the original, but independent of it.
+   */
+  @Test
+  public void testCopy() {
+    Chromosome first = new Chromosome(SIZE, random).randomize();
+    Chromosome copy = first.copy();
+    assertEquals(first, copy);
+    assertFalse("Copy is the same object", first == copy);
+    copy.mutate(1.0);
+    assertNotEquals("Copy shares genes with the original", first, copy);
+  }
+
   /**
    * Test the crossover method when the chromosomes are of unequal length.
    */
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
 
 import static org.junit.Assert.*;
 import org.junit.Before;
@@ -140,6 +141,72 @@ public class DefaultGeneticAlgorithmTest {
     }
   }
 
+  /**
+   * An individual whose fitness is that of the direct fitness individual
+   * with the corresponding chromosome, plus 100: nothing says that fitness
+   * values must stay under 1.
+   */
+  private static class ShiftedIndividual
+    implements Individual<ShiftedIndividual> {
+
+    /**
+     * The direct fitness individual doing the actual work.
+     */
+    private final DirectFitnessIndividual direct;
+
+    /**
+     * CTOR.
+     * @param c the chromosome.
+     */
+    ShiftedIndividual(Chromosome c) {
+      direct = new DirectFitnessIndividual(c);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Individual<ShiftedIndividual> simulate() {
+      direct.simulate();
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double calculateFitness() {
+      return 100 + direct.calculateFitness();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void crossover(Individual<ShiftedIndividual> other) {
+      direct.crossover(((ShiftedIndividual) other).direct);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Chromosome getChromosome() {
+      return direct.getChromosome();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Individual<ShiftedIndividual> mutate(double rate) {
+      direct.mutate(rate);
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int compareTo(Individual<ShiftedIndividual> other) {
+      return Double.compare(calculateFitness(), other.calculateFitness());
+    }
+  }
+
   /**
    * Set up a test.
    */
@@ -243,4 +310,219 @@ public class DefaultGeneticAlgorithmTest {
       algo.runWithThreshold(threshold);
     assertTrue(expected.calculateFitness() <= threshold);
   }
+
+  /**
+   * Test that a run is abandoned if the thread running it is interrupted.
+   */
+  @Test
+  public void testCancellation() {
+    algo.init();
+    Thread.currentThread().interrupt();
+    try {
+      algo.runNGenerations(10);
+      fail("Interrupted run should have been cancelled");
+    } catch(CancellationException e) {
+      assertTrue("Interrupt should still be flagged",
+                 Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  /**
+   * Test that a fitness cache spares simulations without altering the
+   * course of the algorithm: the same run, with and without a cache,
+   * produces the same result, and only cache misses get simulated.
+   */
+  @Test
+  public void testFitnessCache() {
+    final int generations = 20;
+    final int size = 6;
+    final int[] simulations = new int[1];
+    IndividualFactory<DirectFitnessIndividual> counting =
+      new IndividualFactory<DirectFitnessIndividual>() {
+        public DirectFitnessIndividual build(Chromosome c) {
+          return new DirectFitnessIndividual(c) {
+            @Override
+            protected void simulateImpl() {
+              simulations[0]++;
+            }
+          };
+        }
+      };
+    GAParameters params =
+      new GAParameters(POP_SIZE, size, ELITISM_RATE, MUTATION_RATE);
+    GeneticAlgorithm<DirectFitnessIndividual> plain =
+      new DefaultGeneticAlgorithm<>(counting, selector, new Random(SEED),
+                                    params);
+    plain.init();
+    Chromosome expected = plain.runNGenerations(generations).getChromosome();
+
+    simulations[0] = 0;
+    FitnessCache cache = new FitnessCache(100);
+    GeneticAlgorithm<DirectFitnessIndividual> cached =
+      new DefaultGeneticAlgorithm<>(counting, selector, new Random(SEED),
+                                    params);
+    cached.setFitnessCache(cache);
+    cached.init();
+    Chromosome result = cached.runNGenerations(generations).getChromosome();
+    assertEquals(expected, result);
+    assertEquals(cache.getStats().missCount(), simulations[0]);
+    /* There are only 64 chromosomes to go around */
+    assertTrue(cache.getStats().hitCount() > 0);
+  }
+
+  /**
+   * Test that a surrogate screening only lets the given fraction of the
+   * individuals to evaluate be simulated, that the fittest individual is
+   * always a simulated one, and that a perfect surrogate is recorded as
+   * such.
+   */
+  @Test
+  public void testSurrogateScreening() {
+    final int generations = 20;
+    final int[] simulations = new int[1];
+    IndividualFactory<DirectFitnessIndividual> counting =
+      new IndividualFactory<DirectFitnessIndividual>() {
+        public DirectFitnessIndividual build(Chromosome c) {
+          return new DirectFitnessIndividual(c) {
+            @Override
+            protected void simulateImpl() {
+              simulations[0]++;
+            }
+          };
+        }
+      };
+    Surrogate exact = new Surrogate() {
+      public double estimateFitness(Chromosome c) {
+        return new DirectFitnessIndividual(c).simulate().calculateFitness();
+      }
+    };
+    SurrogateScreening screening = new SurrogateScreening(exact, 0.5);
+    GeneticAlgorithm<DirectFitnessIndividual> screened =
+      new DefaultGeneticAlgorithm<>(counting, selector, new Random(SEED),
+                                    PARAMS);
+    screened.setSurrogateScreening(screening);
+    screened.init();
+    Individual<DirectFitnessIndividual> result =
+      screened.runNGenerations(generations);
+    assertEquals(screening.getSimulatedCount(), simulations[0]);
+    /* Half of the first generation alone is screened out */
+    assertTrue(screening.getScreenedOutCount() >= POP_SIZE / 2);
+    assertEquals(1.0, screening.getCorrelation(), 1e-9);
+    assertEquals(exact.estimateFitness(result.getChromosome()),
+                 result.calculateFitness(), 0);
+  }
+
+  /**
+   * Test that the individuals screened out rank after every simulated one,
+   * even when the true fitness values are well over any stand-in's.
+   */
+  @Test
+  public void testSurrogateScreeningRanking() {
+    IndividualFactory<ShiftedIndividual> shifted =
+      new IndividualFactory<ShiftedIndividual>() {
+        public ShiftedIndividual build(Chromosome c) {
+          return new ShiftedIndividual(c);
+        }
+      };
+    Surrogate exact = new Surrogate() {
+      public double estimateFitness(Chromosome c) {
+        return new ShiftedIndividual(c).simulate().calculateFitness();
+      }
+    };
+    GeneticAlgorithm<ShiftedIndividual> screened =
+      new DefaultGeneticAlgorithm<>(shifted,
+          new RankSelection<ShiftedIndividual>(FACTOR), new Random(SEED),
+          PARAMS);
+    screened.setSurrogateScreening(new SurrogateScreening(exact, 0.5));
+    screened.init();
+    for(int generations = 1; generations <= 10; generations++) {
+      Individual<ShiftedIndividual> result =
+        screened.runNGenerations(generations);
+      assertEquals(exact.estimateFitness(result.getChromosome()),
+                   result.calculateFitness(), 0);
+    }
+  }
+
+  /**
+   * Test that an out of range screening fraction is refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSurrogateScreeningFraction() {
+    new SurrogateScreening(null, 0);
+  }
+
+  /**
+   * Test that generation listeners are told about every generation, and
+   * about the end of the run, even if it is cancelled.
+   */
+  @Test
+  public void testGenerationListener() {
+    final int[] counts = new int[2];
+    algo.addGenerationListener(
+      new GenerationListener<DirectFitnessIndividual>() {
+        public void generationStarting(
+            List<? extends Individual<DirectFitnessIndividual>> pop) {
+          assertEquals(POP_SIZE, pop.size());
+          counts[0]++;
+        }
+
+        public void runFinished(
+            List<? extends Individual<DirectFitnessIndividual>> pop) {
+          counts[1]++;
+        }
+      });
+    algo.init();
+    algo.runNGenerations(3);
+    assertEquals(3, counts[0]);
+    assertEquals(1, counts[1]);
+    Thread.currentThread().interrupt();
+    try {
+      algo.runNGenerations(3);
+      fail("Interrupted run should have been cancelled");
+    } catch(CancellationException e) {
+      assertEquals(3, counts[0]);
+      assertEquals(2, counts[1]);
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  /**
+   * Test that a run stops as soon as its stopping policy says so, and not
+   * before, and that it runs every generation without one.
+   */
+  @Test
+  public void testStoppingPolicy() {
+    final int generations = 1000;
+    final int[] counts = new int[1];
+    algo.addGenerationListener(
+      new GenerationListener<DirectFitnessIndividual>() {
+        public void generationStarting(
+            List<? extends Individual<DirectFitnessIndividual>> pop) {
+          counts[0]++;
+        }
+
+        public void runFinished(
+            List<? extends Individual<DirectFitnessIndividual>> pop) {
+        }
+      });
+    algo.init();
+    algo.runNGenerations(generations, new StoppingPolicy() {
+        public boolean shouldStop(RunProgress progress) {
+          return progress.getGenerations() == 3;
+        }
+      });
+    assertEquals(3, counts[0]);
+    counts[0] = 0;
+    algo.runNGenerations(5, null);
+    assertEquals(5, counts[0]);
+    counts[0] = 0;
+    Individual<DirectFitnessIndividual> result =
+      algo.runNGenerations(generations, new StallStoppingPolicy(10));
+    assertTrue(counts[0] < generations);
+    assertEquals(result.calculateFitness(),
+                 algo.getPopulation().get(0).calculateFitness(), 0);
+  }
 }
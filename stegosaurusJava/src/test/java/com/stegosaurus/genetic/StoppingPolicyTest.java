@@ -0,0 +1,113 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.genetic;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test the stopping policies, by feeding them made up runs.
+ */
+public class StoppingPolicyTest {
+
+  /**
+   * Build the progress of a run whose generations ended with the best
+   * fitness values given, each of them having evaluated 10 individuals.
+   * @param fitness the best fitness after each generation.
+   * @return the progress.
+   */
+  private RunProgress progress(double... fitness) {
+    RunProgress retval = new RunProgress();
+    for(double f : fitness) {
+      retval.recordGeneration(f, 10);
+    }
+    return retval;
+  }
+
+  /**
+   * Test that the progress of a run is kept track of properly.
+   */
+  @Test
+  public void testRunProgress() {
+    RunProgress p = progress(0.9, 0.5, 0.5, 0.5);
+    assertEquals(4, p.getGenerations());
+    assertEquals(40, p.getEvaluations());
+    assertEquals(0.5, p.getBestFitness(), 0);
+    assertEquals(0.9, p.getBestFitness(0), 0);
+    assertEquals(2, p.getGenerationsSinceImprovement());
+    p.recordGeneration(0.4, 6);
+    assertEquals(0, p.getGenerationsSinceImprovement());
+    assertEquals(46, p.getEvaluations());
+  }
+
+  /**
+   * Test the policy that stops after a stall.
+   */
+  @Test
+  public void testStall() {
+    StoppingPolicy policy = new StallStoppingPolicy(2);
+    assertFalse(policy.shouldStop(progress(0.9)));
+    assertFalse(policy.shouldStop(progress(0.9, 0.8, 0.8)));
+    assertTrue(policy.shouldStop(progress(0.9, 0.8, 0.8, 0.8)));
+    assertFalse(policy.shouldStop(progress(0.9, 0.8, 0.8, 0.8, 0.7)));
+  }
+
+  /**
+   * Test the policy that stops once improvements become small.
+   */
+  @Test
+  public void testImprovement() {
+    StoppingPolicy policy = new ImprovementStoppingPolicy(2, 0.1);
+    /* Not enough generations to tell */
+    assertFalse(policy.shouldStop(progress(0.5, 0.5)));
+    assertFalse(policy.shouldStop(progress(0.5, 0.48, 0.44)));
+    assertTrue(policy.shouldStop(progress(0.5, 0.48, 0.46)));
+    /* Nothing to be relative to */
+    assertTrue(policy.shouldStop(progress(0, 0, 0)));
+    assertFalse(policy.shouldStop(progress(0, -0.1, -0.2)));
+  }
+
+  /**
+   * Test the policy that stops after a number of evaluations.
+   */
+  @Test
+  public void testEvaluations() {
+    StoppingPolicy policy = new EvaluationStoppingPolicy(30);
+    assertFalse(policy.shouldStop(progress(1, 1)));
+    assertTrue(policy.shouldStop(progress(1, 1, 1)));
+  }
+
+  /**
+   * Test the policy that stops by a deadline.
+   */
+  @Test
+  public void testDeadline() {
+    long now = System.nanoTime();
+    assertTrue(new DeadlineStoppingPolicy(now, null)
+               .shouldStop(progress(1)));
+    long later = now + TimeUnit.HOURS.toNanos(1);
+    assertFalse(new DeadlineStoppingPolicy(later, null)
+                .shouldStop(progress(1)));
+    assertTrue(new DeadlineStoppingPolicy(later, new StallStoppingPolicy(1))
+               .shouldStop(progress(1, 1)));
+    assertTrue(new DeadlineStoppingPolicy(later, null).getRemainingNanos() > 0);
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNoException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.stegosaurus.cpp.CoefficientAccessor;
+import com.stegosaurus.cpp.JPEGImage;
+import com.stegosaurus.stegutils.NativeUtils;
+
+/**
+ * Test the CoefficientView class.
+ */
+public class CoefficientViewTest {
+  /**
+   * The image under test.
+   */
+  private JPEGImage cover;
+
+  /**
+   * The coefficient accessor for our image.
+   */
+  private CoefficientAccessor accessor;
+
+  /**
+   * The view under test.
+   */
+  private CoefficientView view;
+
+  /**
+   * Set up a test.
+   */
+  @Before
+  public void setUp() {
+    InputStream in = getClass().getResourceAsStream("lena-colour.jpeg");
+    try {
+      cover = NativeUtils.readImage(in);
+      in.close();
+    } catch(IOException ioe) {
+      assumeNoException(ioe);
+    }
+    accessor = cover.getCoefficientAccessor();
+    view = new CoefficientView(cover);
+  }
+
+  /**
+   * Tear down the test.
+   */
+  @After
+  public void tearDown() {
+    cover.delete();
+  }
+
+  /**
+   * Test that the view sees the same coefficients as the accessor.
+   */
+  @Test
+  public void testGet() {
+    assertEquals(accessor.getLength(), view.getLength());
+    for(int i = 0; i < view.getLength(); i++) {
+      assertEquals("Index " + i, accessor.getCoefficient(i), view.get(i));
+    }
+  }
+
+  /**
+   * Test that changes made through the view are seen by the accessor.
+   */
+  @Test
+  public void testSet() {
+    final int step = 997;
+    for(int i = 0; i < view.getLength(); i += step) {
+      short value = (short) (view.get(i) ^ 1);
+      view.set(i, value);
+      assertEquals("Index " + i, value, accessor.getCoefficient(i));
+    }
+  }
+}
@@ -19,8 +19,11 @@ package com.stegosaurus.steganographers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeNoException;
 
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.procedure.TIntIntProcedure;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
@@ -155,9 +158,150 @@ public class ImagePermuterTest extends TestWithInjection {
   public void testNoRepeat() {
     final TIntSet set = new TIntHashSet();
     walk(set, permuter, 100, true);
-    /* Doing this is kind of equivalent to starting the walk from scratch,
-     * since the only state being kept are the indices we've seen.
-     */
+    /* The second walk picks up where the first one left off */
     walk(set, permuter, 200, true);
   }
+
+  /**
+   * Test that walking a permutation in segments produces the same indices
+   * and values, in the same order, as walking it all at once.
+   */
+  @Test
+  public void testResume() {
+    final int elements = 500;
+    ImagePermuter other = injector.getInstance(ImagePermuter.Factory.class)
+      .build(accessor, SEED);
+    TIntList expected = record(other, elements * 2);
+    TIntList result = record(permuter, elements);
+    assertEquals(elements, permuter.getCursor());
+    result.addAll(record(permuter, elements));
+    assertEquals(expected, result);
+  }
+
+  /**
+   * Test that, after a change of seed, walking the new permutation in
+   * segments skips exactly the indices visited under the old one.
+   */
+  @Test
+  public void testResumeAfterChangeSeed() {
+    final int elements = 500;
+    final long otherSeed = 200;
+    ImagePermuter other = injector.getInstance(ImagePermuter.Factory.class)
+      .build(accessor, otherSeed);
+    TIntList seen = record(permuter, elements);
+    permuter.setSeed(otherSeed);
+    TIntList result = record(permuter, elements);
+    result.addAll(record(permuter, elements));
+    TIntList expected = new TIntArrayList();
+    TIntList full = record(other, elements * 4);
+    TIntSet visited = new TIntHashSet();
+    for(int i = 0; i < seen.size(); i += 2) {
+      visited.add(seen.get(i));
+    }
+    for(int i = 0; i < full.size() && expected.size() < elements * 4;
+        i += 2) {
+      if(!visited.contains(full.get(i))) {
+        expected.add(full.get(i));
+        expected.add(full.get(i + 1));
+      }
+    }
+    assertEquals(expected, result);
+  }
+
+  /**
+   * Test that taking coefficients in batches produces the same indices and
+   * values, in the same order, as walking them one at a time, regardless of
+   * the size of the batches, and whether the image or a snapshot is walked.
+   */
+  @Test
+  public void testNext() {
+    final int elements = 1000;
+    ImagePermuter.Factory factory =
+      injector.getInstance(ImagePermuter.Factory.class);
+    TIntList expected = record(permuter, elements);
+    ImagePermuter[] others = { factory.build(accessor, SEED),
+      factory.build(new CoefficientSnapshot(accessor), SEED) };
+    int[] indices = new int[300];
+    short[] values = new short[300];
+    for(ImagePermuter other : others) {
+      TIntList result = new TIntArrayList();
+      int max = 1;
+      while(result.size() < elements * 2) {
+        int count = other.next(indices, values,
+                               Math.min(max, elements - result.size() / 2));
+        assertTrue(count > 0);
+        for(int i = 0; i < count; i++) {
+          result.add(indices[i]);
+          result.add(values[i]);
+        }
+        max = max * 3 + 1;
+      }
+      assertEquals(expected, result);
+      assertEquals(elements, other.getCursor());
+    }
+  }
+
+  /**
+   * Test that taking the parities of the coefficients, from either the image
+   * or a snapshot, produces the parities of the values walked.
+   */
+  @Test
+  public void testNextParities() {
+    final int elements = 1000;
+    ImagePermuter.Factory factory =
+      injector.getInstance(ImagePermuter.Factory.class);
+    TIntList expected = record(permuter, elements);
+    ImagePermuter[] others = { factory.build(accessor, SEED),
+      factory.build(new CoefficientSnapshot(accessor), SEED) };
+    long[] words = new long[3];
+    for(ImagePermuter other : others) {
+      int seen = 0;
+      while(seen < elements) {
+        int count = other.nextParities(words, elements - seen);
+        assertTrue(count > 0);
+        for(int i = 0; i < words.length * Long.SIZE; i++) {
+          long bit = (words[i / Long.SIZE] >>> i) & 1;
+          if(i < count) {
+            int value = expected.get(((seen + i) * 2) + 1);
+            assertEquals(CoefficientSnapshot.parityOf(value), bit);
+          } else {
+            assertEquals(0, bit);
+          }
+        }
+        seen += count;
+      }
+    }
+  }
+
+  /**
+   * Test that walking a snapshot of the image produces the same indices and
+   * values, in the same order, as walking the image itself.
+   */
+  @Test
+  public void testSnapshotWalk() {
+    final int elements = 1000;
+    ImagePermuter other = injector.getInstance(ImagePermuter.Factory.class)
+      .build(new CoefficientSnapshot(accessor), SEED);
+    TIntList expected = record(permuter, elements);
+    TIntList result = record(other, elements);
+    assertEquals(expected, result);
+  }
+
+  /**
+   * Walk the permuter given, recording the indices and values seen.
+   * @param permuter the permuter.
+   * @param n the number of coefficients to record.
+   * @return a list of every index seen, followed by its value.
+   */
+  private TIntList record(ImagePermuter permuter, final int n) {
+    final TIntList list = new TIntArrayList();
+    permuter.walk(new TIntIntProcedure() {
+      public boolean execute(int index, int value) {
+        list.add(index);
+        list.add(value);
+        return list.size() < n * 2;
+      }
+    });
+    return list;
+  }
 }
@@ -0,0 +1,74 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.genetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.stegosaurus.cpp.CoefficientAccessor;
+import com.stegosaurus.genetic.Chromosome;
+import com.stegosaurus.steganographers.pm1.AbstractPM1Test;
+import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
+
+/**
+ * Tests the BlockinessIndividual class.
+ */
+public class BlockinessIndividualTest extends AbstractPM1Test {
+  /**
+   * The seed for the embedding.
+   */
+  private static final short SEED = (short) 0xBEEF;
+
+  /**
+   * Ensure that simulating an individual leaves its cover's coefficients
+   * just as they were, without reading them from the image data again: a
+   * change made to them behind the individual's back, to a coefficient no
+   * embedding touches, must survive two simulations.
+   */
+  @Test
+  public void testCoefficientsNotReread() {
+    PM1EmbedderFactory embedderFactory =
+      injector.getInstance(PM1EmbedderFactory.class);
+    Random random = new Random(SEED);
+    Chromosome c = new Chromosome((MSG.length() * 8) + 16, random);
+    c.randomize();
+    BlockinessIndividual individual =
+      new BlockinessIndividual(c, request, SEED, embedderFactory);
+    CoefficientAccessor acc = cover.getCoefficientAccessor();
+    /* The DC coefficients are never embedded into */
+    short sentinel = (short) (acc.getCoefficient(0) + 1);
+    acc.setCoefficient(0, sentinel);
+    int[] expected = new int[(int) acc.getLength()];
+    for(int i = 0; i < acc.getLength(); i++) {
+      expected[i] = acc.getCoefficient(i);
+    }
+    individual.simulate().calculateFitness();
+    individual.mutate(0.5);
+    individual.simulate().calculateFitness();
+    assertEquals(sentinel, acc.getCoefficient(0));
+    int[] result = new int[(int) acc.getLength()];
+    for(int i = 0; i < acc.getLength(); i++) {
+      result[i] = acc.getCoefficient(i);
+    }
+    assertArrayEquals(expected, result);
+  }
+}
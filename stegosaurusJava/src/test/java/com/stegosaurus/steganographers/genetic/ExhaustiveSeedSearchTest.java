@@ -0,0 +1,152 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.genetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.stegosaurus.crypt.PermutationFormat;
+import com.stegosaurus.genetic.GAFactory;
+import com.stegosaurus.genetic.GAParameters;
+import com.stegosaurus.genetic.GeneticAlgorithm;
+import com.stegosaurus.genetic.RankSelection;
+import com.stegosaurus.steganographers.EmbedRequest;
+import com.stegosaurus.steganographers.pm1.AbstractPM1Test;
+import com.stegosaurus.steganographers.pm1.PM1Embedder;
+import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
+import com.stegosaurus.steganographers.utils.DummyPMSequence;
+import com.stegosaurus.stegosaurus.StegosaurusModule;
+
+/**
+ * Tests the ExhaustiveSeedSearch class.
+ * Permutations are worked out lazily, as the search is meant to be run;
+ * trying every seed would take far too long with the classic format.
+ */
+public class ExhaustiveSeedSearchTest extends AbstractPM1Test {
+
+  /**
+   * The embedder factory.
+   */
+  private PM1EmbedderFactory embedderFactory;
+
+  /**
+   * An embedder to check the searches' results with.
+   */
+  private PM1Embedder embedder;
+
+  /**
+   * Use lazy permutations.
+   * @return the module.
+   */
+  @Override
+  protected StegosaurusModule getModule() {
+    return new StegosaurusModule() {
+      @Override
+      protected PermutationFormat getPermutationFormat() {
+        return PermutationFormat.LAZY;
+      }
+    };
+  }
+
+  /**
+   * Set up the test.
+   */
+  @Before
+  public void setUp() {
+    super.setUp();
+    embedderFactory = injector.getInstance(PM1EmbedderFactory.class);
+    embedder = embedderFactory.build(new DummyPMSequence());
+  }
+
+  /**
+   * Test that a bounded pretend embedding gives up at the bound, and is
+   * otherwise exact.
+   */
+  @Test
+  public void testBoundedFakeEmbed() {
+    final short seed = 12;
+    int changes = embedder.fakeEmbed(request, seed);
+    assertEquals(changes, embedder.fakeEmbed(request, seed, changes + 1));
+    assertTrue(embedder.fakeEmbed(request, seed, changes / 2) >= changes / 2);
+  }
+
+  /**
+   * Test that a search over a range of seeds finds the lowest of the seeds
+   * requiring the fewest changes, just like trying them one by one would.
+   */
+  @Test
+  public void testSearchRange() {
+    final int from = -300;
+    final int to = 700;
+    int expected = from;
+    int fewest = Integer.MAX_VALUE;
+    for(int seed = from; seed < to; seed++) {
+      int changes = embedder.fakeEmbed(request, (short) seed);
+      if(changes < fewest) {
+        fewest = changes;
+        expected = seed;
+      }
+    }
+    ExhaustiveSeedSearch search = new ExhaustiveSeedSearch(request,
+        embedderFactory, ForkJoinPool.commonPool());
+    assertEquals((short) expected, search.search(from, to));
+    assertEquals(fewest, search.getBestChanges());
+  }
+
+  /**
+   * Test that a search whose deadline has already gone by still comes up
+   * with a seed, having tried only a few of them.
+   */
+  @Test
+  public void testSearchUntil() {
+    ExhaustiveSeedSearch search = new ExhaustiveSeedSearch(request,
+        embedderFactory, ForkJoinPool.commonPool());
+    search.search();
+    int fewest = search.getBestChanges();
+    short seed = search.searchUntil(System.nanoTime());
+    assertEquals(search.getBestChanges(), embedder.fakeEmbed(request, seed));
+    assertTrue(search.getBestChanges() >= fewest);
+  }
+
+  /**
+   * Test that the full search never does worse than a small
+   * seed-optimizing GA. The timings are left to the SeedSearchBenchmark.
+   */
+  @Test
+  public void testAgainstGenetic() {
+    EmbedRequest small = new EmbedRequest(cover, new byte[] { 42 }, KEY);
+    GAParameters params = new GAParameters(10, Short.SIZE, 0.4, 0.3);
+    GeneticAlgorithm<SeedChangeCountIndividual> algo =
+      injector.getInstance(GAFactory.class).build(
+          new SeedChangeCountIndividualFactory(small, embedderFactory),
+          new RankSelection<SeedChangeCountIndividual>(10), new Random(),
+          params);
+    algo.init();
+    short genetic = algo.runNGenerations(5).getChromosome().asShort();
+    short seed = new ExhaustiveSeedSearch(small, embedderFactory,
+        ForkJoinPool.commonPool()).search();
+    assertTrue(embedder.fakeEmbed(small, seed) <=
+               embedder.fakeEmbed(small, genetic));
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.genetic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the GeneticPM1Options class.
+ */
+public class GeneticPM1OptionsTest {
+
+  /**
+   * Test that a fraction in range is taken.
+   */
+  @Test
+  public void testSurrogateFraction() {
+    assertEquals(0.25, new GeneticPM1Options().setSurrogateFraction(0.25)
+                 .getSurrogateFraction(), 0);
+  }
+
+  /**
+   * Test that a fraction of zero is refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroSurrogateFraction() {
+    new GeneticPM1Options().setSurrogateFraction(0);
+  }
+
+  /**
+   * Test that a fraction over one is refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testLargeSurrogateFraction() {
+    new GeneticPM1Options().setSurrogateFraction(1.5);
+  }
+
+  /**
+   * Test that a fraction that is not a number is refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNaNSurrogateFraction() {
+    new GeneticPM1Options().setSurrogateFraction(Double.NaN);
+  }
+}
@@ -17,13 +17,30 @@
  */
 package com.stegosaurus.steganographers.genetic;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import com.stegosaurus.cpp.JPEGImage;
+import com.stegosaurus.crypt.PermutationProvider;
+import com.stegosaurus.genetic.GAFactory;
+import com.stegosaurus.genetic.GAParameters;
+import com.stegosaurus.genetic.GeneticAlgorithm;
+import com.stegosaurus.genetic.Individual;
+import com.stegosaurus.genetic.IndividualFactory;
+import com.stegosaurus.genetic.SelectionOperator;
+import com.stegosaurus.steganographers.BudgetedEmbedding;
 import com.stegosaurus.steganographers.Embedder;
 import com.stegosaurus.steganographers.pm1.AbstractPM1Test;
+import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
 
 /**
  * Tests the GeneticPM1 class.
@@ -54,4 +71,67 @@ public class GeneticPM1Test extends AbstractPM1Test {
     assertImageContainsMessage("Stego image lacks message", stego, KEY,
                                MSG.getBytes());
   }
+
+  /**
+   * Test an embed whose sequence optimization only simulates half of each
+   * generation, screening out the rest with the incremental surrogate.
+   */
+  @Test
+  public void testSurrogateScreening() {
+    GeneticPM1Parameters params = new GeneticPM1Parameters(
+        new GeneticPM1Options().setSurrogateFraction(0.5),
+        10, 2, 0.2, 0.1, 10.0, 10, 3, 0.2, 0.02, 10.0);
+    GeneticPM1 algo = new GeneticPM1(
+        injector.getInstance(PM1EmbedderFactory.class),
+        injector.getInstance(GAFactory.class), params,
+        injector.getInstance(PermutationProvider.class));
+    BudgetedEmbedding result = algo.embed(request, 1, TimeUnit.HOURS);
+    assertFalse(Double.isNaN(result.getFitness()));
+    assertImageContainsMessage("Stego image lacks message", result.getImage(),
+                               KEY, MSG.getBytes());
+  }
+
+  /**
+   * Test that an embed with no time at all to optimize anything still comes
+   * up with a valid stego image, and says as much.
+   */
+  @Test
+  public void testNoBudget() {
+    BudgetedEmbedding result = factory.build().embed(request, 0,
+                                                     TimeUnit.SECONDS);
+    assertImageContainsMessage("Stego image lacks message", result.getImage(),
+                               KEY, MSG.getBytes());
+    assertTrue(Double.isNaN(result.getFitness()));
+    assertTrue(result.getRemaining(TimeUnit.NANOSECONDS) <= 0);
+  }
+
+  /**
+   * Test that an embed with a budget far too small to optimize the sequence
+   * doesn't try to: no GA is ever built for it.
+   */
+  @Test
+  public void testTinyBudget() {
+    final AtomicInteger sequenceGAs = new AtomicInteger();
+    final GAFactory gaFactory = injector.getInstance(GAFactory.class);
+    GAFactory counting = new GAFactory() {
+      @Override
+      public <C extends Individual<C>> GeneticAlgorithm<C> build(
+          IndividualFactory<C> individuals, SelectionOperator<C> selection,
+          Random random, GAParameters params) {
+        if(individuals instanceof BlockinessIndividualFactory) {
+          sequenceGAs.incrementAndGet();
+        }
+        return gaFactory.build(individuals, selection, random, params);
+      }
+    };
+    GeneticPM1 algo = new GeneticPM1(
+        injector.getInstance(PM1EmbedderFactory.class), counting,
+        injector.getInstance(GeneticPM1Parameters.class),
+        injector.getInstance(PermutationProvider.class));
+    BudgetedEmbedding result = algo.embed(request, 10, TimeUnit.MILLISECONDS);
+    assertEquals(0, sequenceGAs.get());
+    assertTrue(Double.isNaN(result.getFitness()));
+    assertImageContainsMessage("Stego image lacks message", result.getImage(),
+                               KEY, MSG.getBytes());
+  }
 }
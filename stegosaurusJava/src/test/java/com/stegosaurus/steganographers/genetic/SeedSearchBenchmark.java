@@ -0,0 +1,116 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.stegosaurus.steganographers.genetic;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.stegosaurus.crypt.PermutationFormat;
+import com.stegosaurus.genetic.GAFactory;
+import com.stegosaurus.genetic.GeneticAlgorithm;
+import com.stegosaurus.genetic.Individual;
+import com.stegosaurus.genetic.RankSelection;
+import com.stegosaurus.steganographers.pm1.AbstractPM1Test;
+import com.stegosaurus.steganographers.pm1.PM1Embedder;
+import com.stegosaurus.steganographers.pm1.PM1EmbedderFactory;
+import com.stegosaurus.steganographers.utils.DummyPMSequence;
+import com.stegosaurus.stegosaurus.StegosaurusModule;
+
+/**
+ * Benchmarks the ExhaustiveSeedSearch against the seed-optimizing GA, as
+ * configured by default, for the time it takes each to come up with its
+ * best seed.
+ * <p>This is not part of the unit suite: it is run by the benchmark task,
+ * and logs its timings to standard output.</p>
+ */
+public class SeedSearchBenchmark extends AbstractPM1Test {
+
+  /**
+   * The embedder factory.
+   */
+  private PM1EmbedderFactory embedderFactory;
+
+  /**
+   * An embedder to check the seeds found with.
+   */
+  private PM1Embedder embedder;
+
+  /**
+   * Use lazy permutations, which the search is meant for.
+   * @return the module.
+   */
+  @Override
+  protected StegosaurusModule getModule() {
+    return new StegosaurusModule() {
+      @Override
+      protected PermutationFormat getPermutationFormat() {
+        return PermutationFormat.LAZY;
+      }
+    };
+  }
+
+  /**
+   * Set up the benchmark.
+   */
+  @Before
+  public void setUp() {
+    super.setUp();
+    embedderFactory = injector.getInstance(PM1EmbedderFactory.class);
+    embedder = embedderFactory.build(new DummyPMSequence());
+  }
+
+  /**
+   * Time the GA and the full search on the same request. The full search
+   * should never do worse than the GA.
+   */
+  @Test
+  public void benchmarkAgainstGenetic() {
+    GeneticPM1Parameters params =
+      injector.getInstance(GeneticPM1Parameters.class);
+
+    long start = System.nanoTime();
+    GeneticAlgorithm<SeedChangeCountIndividual> algo =
+      injector.getInstance(GAFactory.class).build(
+          new SeedChangeCountIndividualFactory(request, embedderFactory),
+          new RankSelection<SeedChangeCountIndividual>(
+            params.getSSelectionGradient()),
+          new Random(), params.getSParams());
+    algo.init();
+    Individual<SeedChangeCountIndividual> fittest =
+      algo.runNGenerations(params.getSNumberOfGenerations());
+    long geneticTime = System.nanoTime() - start;
+    int geneticChanges =
+      embedder.fakeEmbed(request, fittest.getChromosome().asShort());
+
+    start = System.nanoTime();
+    short seed = new ExhaustiveSeedSearch(request, embedderFactory,
+        ForkJoinPool.commonPool()).search();
+    long exhaustiveTime = System.nanoTime() - start;
+    int exhaustiveChanges = embedder.fakeEmbed(request, seed);
+
+    System.out.printf("Seed search: GA %d changes in %d ms, "
+        + "exhaustive %d changes in %d ms%n", geneticChanges,
+        geneticTime / 1000000, exhaustiveChanges, exhaustiveTime / 1000000);
+    assertTrue(exhaustiveChanges <= geneticChanges);
+  }
+}
@@ -18,6 +18,7 @@
 package com.stegosaurus.steganographers.pm1;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assume.assumeNoException;
 
 import java.io.IOException;
@@ -69,6 +70,31 @@ public class PM1Test extends AbstractPM1Test {
         stego, KEY, MSG.getBytes());
   }
 
+  /**
+   * Ensure that embedding in place leaves the message in the cover's
+   * coefficients, and that those may then be put back the way they were.
+   */
+  @Test
+  public void testEmbedInPlace() {
+    PM1Embedder emb = embedderFactory.build(new DummyPMSequence());
+    CoefficientAccessor acc = cover.getCoefficientAccessor();
+    int[] expected = new int[(int) acc.getLength()];
+    for(int i = 0; i < acc.getLength(); i++) {
+      expected[i] = acc.getCoefficient(i);
+    }
+    emb.embedInPlace(request, SEED);
+    assertImageContainsMessage("Cover lacks message", cover.writeNew(), KEY,
+        MSG.getBytes());
+    emb.embedInPlace(request, SEED);
+    cover.discardCoefficientChanges();
+    acc = cover.getCoefficientAccessor();
+    int[] result = new int[(int) acc.getLength()];
+    for(int i = 0; i < acc.getLength(); i++) {
+      result[i] = acc.getCoefficient(i);
+    }
+    assertArrayEquals(expected, result);
+  }
+
   /**
    * Ensure that the fakeEmbed doesn't actually change anything at all.
    */
@@ -89,4 +115,30 @@ public class PM1Test extends AbstractPM1Test {
     }
     assertArrayEquals(expected, result);
   }
+
+  /**
+   * Ensure that the changes recorded by recordEmbed are exactly those that
+   * a real embedding makes.
+   */
+  @Test
+  public void testRecordEmbed() {
+    PM1Embedder emb = embedderFactory.build(new DummyPMSequence());
+    CoefficientAccessor acc = cover.getCoefficientAccessor();
+    int[] expected = new int[(int) acc.getLength()];
+    for(int i = 0; i < acc.getLength(); i++) {
+      expected[i] = acc.getCoefficient(i);
+    }
+    CoefficientChanges changes = emb.recordEmbed(request, SEED);
+    assertEquals(emb.fakeEmbed(request, SEED), changes.getSize());
+    for(int i = 0; i < changes.getSize(); i++) {
+      expected[changes.getIndices()[i]] += changes.getDeltas()[i];
+    }
+    JPEGImage stego = emb.embed(request, SEED);
+    acc = stego.getCoefficientAccessor();
+    int[] result = new int[(int) acc.getLength()];
+    for(int i = 0; i < acc.getLength(); i++) {
+      result[i] = acc.getCoefficient(i);
+    }
+    assertArrayEquals(expected, result);
+  }
 }
@@ -21,11 +21,26 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.stegosaurus.testing.TestWithInjection;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests the StegosaurusFacadeImpl class.
@@ -43,6 +58,12 @@ public class StegosaurusFacadeImplTest extends TestWithInjection {
    */
   private static String KEY = "Lionel Messi";
 
+  /**
+   * A temporary folder for the file based tests.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   /**
    * Test the facade end to end.
    */
@@ -58,4 +79,229 @@ public class StegosaurusFacadeImplTest extends TestWithInjection {
     String result = facade.extract(readBack, KEY);
     assertEquals(MSG, result);
   }
+
+  /**
+   * Test the file based entry points of the facade end to end.
+   */
+  @Test
+  public void pathIntegrationTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    Path cover = copyCover();
+    Path stego = folder.getRoot().toPath().resolve("stego.jpg");
+    facade.embed(cover, stego, MSG, KEY);
+    assertEquals(MSG, facade.extract(stego, KEY));
+  }
+
+  /**
+   * Test the budgeted entry points of the facade end to end: with no time
+   * to optimize anything, the message still makes it in.
+   */
+  @Test
+  public void budgetedIntegrationTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    InputStream in =
+      StegosaurusFacadeImplTest.class.getResourceAsStream("napoleon.jpg");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BudgetedEmbedResult result =
+      facade.embed(in, out, MSG, KEY, 0, TimeUnit.SECONDS);
+    assertTrue(Double.isNaN(result.getFitness()));
+    assertTrue(result.getRemaining(TimeUnit.NANOSECONDS) <= 0);
+    ByteArrayInputStream readBack = new ByteArrayInputStream(out.toByteArray());
+    assertEquals(MSG, facade.extract(readBack, KEY));
+
+    Path stego = folder.getRoot().toPath().resolve("stego.jpg");
+    result = facade.embed(copyCover(), stego, MSG, KEY, 0, TimeUnit.SECONDS);
+    assertTrue(Double.isNaN(result.getFitness()));
+    assertEquals(MSG, facade.extract(stego, KEY));
+  }
+
+  /**
+   * Test that a cover may be embedded into in place.
+   */
+  @Test
+  public void inPlaceTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    Path cover = copyCover();
+    facade.embed(cover, cover, MSG, KEY);
+    assertEquals(MSG, facade.extract(cover, KEY));
+  }
+
+  /**
+   * Test that an embedding that fails leaves neither the cover nor the
+   * output touched.
+   */
+  @Test
+  public void failedPathEmbedTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    Path cover = copyCover();
+    byte[] original = Files.readAllBytes(cover);
+    Path stego = folder.getRoot().toPath().resolve("stego.jpg");
+    char[] tooLong = new char[Short.MAX_VALUE + 1];
+    Arrays.fill(tooLong, 'x');
+    for(Path out : Arrays.asList(stego, cover)) {
+      try {
+        facade.embed(cover, out, new String(tooLong), KEY);
+        fail("Message should have been turned away");
+      } catch(IllegalArgumentException e) {
+        /* Expected */
+      }
+    }
+    assertFalse(Files.exists(stego));
+    assertArrayEquals(original, Files.readAllBytes(cover));
+    assertEquals(1, folder.getRoot().list().length);
+  }
+
+  /**
+   * Test the asynchronous entry points of the facade end to end.
+   */
+  @Test
+  public void asyncIntegrationTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    InputStream in =
+      StegosaurusFacadeImplTest.class.getResourceAsStream("napoleon.jpg");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    facade.embedAsync(in, out, MSG, KEY).get();
+    ByteArrayInputStream readBack = new ByteArrayInputStream(out.toByteArray());
+    assertEquals(MSG, facade.extractAsync(readBack, KEY).get());
+  }
+
+  /**
+   * Test that a cover's capacity is reported, and that messages that go over
+   * it are turned away.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacity() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    long capacity = facade.getCapacity(
+        StegosaurusFacadeImplTest.class.getResourceAsStream("napoleon.jpg"));
+    assertTrue("Capacity should fit the test message",
+               capacity >= MSG.length());
+    StringBuilder builder = new StringBuilder();
+    for(long i = 0; i <= capacity; i++) {
+      builder.append('x');
+    }
+    facade.embed(
+        StegosaurusFacadeImplTest.class.getResourceAsStream("napoleon.jpg"),
+        new ByteArrayOutputStream(), builder.toString(), KEY);
+  }
+
+  /**
+   * Test that a batch of jobs runs, and that a failing job is reported
+   * without getting in the way of the rest.
+   */
+  @Test
+  public void batchIntegrationTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    Path root = folder.getRoot().toPath();
+    EmbedJob good = new EmbedJob(copyCover(), root.resolve("good.jpg"),
+                                 MSG, KEY);
+    EmbedJob bad = new EmbedJob(root.resolve("missing.jpg"),
+                                root.resolve("bad.jpg"), MSG, KEY);
+    List<EmbedResult> results = facade.embedAll(Arrays.asList(bad, good));
+    assertEquals(2, results.size());
+    assertSame(bad, results.get(0).getJob());
+    assertFalse(results.get(0).isSuccessful());
+    assertNotNull(results.get(0).getFailure());
+    assertSame(good, results.get(1).getJob());
+    assertTrue(results.get(1).isSuccessful());
+    assertEquals(MSG, facade.extract(good.getOutput(), KEY));
+  }
+
+  /**
+   * Test that a job dying of an Error is reported as failed, without losing
+   * the results of the other jobs in the batch.
+   */
+  @Test(timeout = 60000)
+  public void batchErrorTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    Path root = folder.getRoot().toPath();
+    EmbedJob broken = new EmbedJob(copyCover(), root.resolve("broken.jpg"),
+                                   MSG, KEY) {
+      @Override
+      public Path getCover() {
+        throw new AssertionError("Job blew up");
+      }
+    };
+    EmbedJob missing = new EmbedJob(root.resolve("missing.jpg"),
+                                    root.resolve("out.jpg"), MSG, KEY);
+    List<EmbedResult> results =
+      facade.embedAll(Arrays.asList(broken, missing));
+    assertEquals(2, results.size());
+    assertSame(broken, results.get(0).getJob());
+    assertTrue(results.get(0).getFailure() instanceof AssertionError);
+    assertSame(missing, results.get(1).getJob());
+    assertFalse(results.get(1).isSuccessful());
+  }
+
+  /**
+   * Test that the streaming form of the batch API hands out one result per
+   * job.
+   */
+  @Test
+  public void streamingBatchTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    Path root = folder.getRoot().toPath();
+    int count = 20;
+    EmbedJob[] jobs = new EmbedJob[count];
+    for(int i = 0; i < count; i++) {
+      jobs[i] = new EmbedJob(root.resolve("missing" + i + ".jpg"),
+                             root.resolve("out" + i + ".jpg"), MSG, KEY);
+    }
+    Iterator<EmbedResult> it = facade.embedAll(Arrays.asList(jobs).iterator());
+    int seen = 0;
+    while(it.hasNext()) {
+      EmbedResult result = it.next();
+      assertFalse(result.isSuccessful());
+      seen++;
+    }
+    assertEquals(count, seen);
+  }
+
+  /**
+   * Test that the streaming form of the batch API still hands out a result
+   * for a job that dies of an Error, rather than waiting on it forever.
+   */
+  @Test(timeout = 60000)
+  public void streamingBatchErrorTest() throws Exception {
+    StegosaurusFacadeImpl facade =
+      injector.getInstance(StegosaurusFacadeImpl.class);
+    Path root = folder.getRoot().toPath();
+    EmbedJob job = new EmbedJob(copyCover(), root.resolve("out.jpg"),
+                                MSG, KEY) {
+      @Override
+      public Path getCover() {
+        throw new AssertionError("Job blew up");
+      }
+    };
+    Iterator<EmbedResult> it =
+      facade.embedAll(Arrays.asList(job).iterator());
+    assertTrue(it.hasNext());
+    EmbedResult result = it.next();
+    assertSame(job, result.getJob());
+    assertFalse(result.isSuccessful());
+    assertTrue(result.getFailure() instanceof AssertionError);
+    assertFalse(it.hasNext());
+  }
+
+  /**
+   * Copy the cover image used for testing into the temporary folder.
+   * @return the path to the copy.
+   */
+  private Path copyCover() throws Exception {
+    Path cover = folder.newFile().toPath();
+    try(InputStream in =
+        StegosaurusFacadeImplTest.class.getResourceAsStream("napoleon.jpg")) {
+      Files.copy(in, cover, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return cover;
+  }
 }
@@ -20,6 +20,8 @@ package com.stegosaurus.stegostreams;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.Random;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -71,6 +73,26 @@ public class BitInputStreamTest {
     assertArrayEquals("Wrong return value from read", expected, retval);
   }
 
+  /**
+   * Test that packing a stream's bits into words lays them out in the order
+   * the stream produces them, across word boundaries.
+   */
+  @Test
+  public void testPack() {
+    byte[] arg = new byte[11];
+    new Random(arg.length).nextBytes(arg);
+    byte[] more = { 0x5D, 0x2A };
+    long[] words = BitInputStream.pack(arg, more);
+    assertEquals("Wrong number of words", 2, words.length);
+    assertEquals("Wrong first byte", 0xBAL, words[1] >>> 24 & 0xFF);
+    stream = new BitInputStream(arg, more);
+    for(int i = 0; i < words.length * Long.SIZE; i++) {
+      int expected = stream.read();
+      assertEquals("Wrong bit " + i, expected < 0 ? 0 : expected,
+                   (int) (words[i / Long.SIZE] >>> (i % Long.SIZE)) & 1);
+    }
+  }
+
   /**
    * Ensure that the read() method returns -1 on reaching the end of stream.
    */
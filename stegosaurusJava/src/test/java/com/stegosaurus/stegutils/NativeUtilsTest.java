@@ -22,10 +22,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.google.common.io.ByteStreams;
+import com.stegosaurus.cpp.JPEGImage;
 
 import org.junit.Test;
 import static org.junit.Assume.assumeNoException;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests the NativeUtils class.
@@ -73,4 +80,39 @@ public class NativeUtilsTest {
       assumeNoException(ioe);
     }
   }
+
+  /**
+   * Test the readToDirectBuffer method, with a stream large enough that the
+   * buffer has to grow a few times.
+   */
+  @Test
+  public void testReadToDirectBuffer() throws IOException {
+    byte[] b = new byte[300 * 1024 + 17];
+    new Random(42).nextBytes(b);
+    ByteBuffer buffer =
+      NativeUtils.readToDirectBuffer(new ByteArrayInputStream(b));
+    assertTrue("Buffer should be direct", buffer.isDirect());
+    assertEquals("Bad position", 0, buffer.position());
+    assertEquals("Bad limit", b.length, buffer.limit());
+    byte[] result = new byte[buffer.remaining()];
+    buffer.get(result);
+    assertArrayEquals(b, result);
+  }
+
+  /**
+   * Test that an image may be read in and written out through direct buffers
+   * without any alteration to its data.
+   */
+  @Test
+  public void testImageRoundTrip() throws IOException {
+    String path = "/com/stegosaurus/jpeg/lena-colour.jpeg";
+    byte[] b = ByteStreams.toByteArray(
+        NativeUtilsTest.class.getResourceAsStream(path));
+    JPEGImage image = NativeUtils.readImage(new ByteArrayInputStream(b));
+    assertEquals("Bad data length", b.length, image.getDataLen());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    NativeUtils.writeImage(out, image);
+    assertArrayEquals(b, out.toByteArray());
+    image.delete();
+  }
 }
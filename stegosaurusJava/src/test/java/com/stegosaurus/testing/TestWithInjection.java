@@ -42,6 +42,15 @@ public abstract class TestWithInjection {
    */
   @Before
   public void setUp() {
-    injector = Guice.createInjector(new StegosaurusModule());
+    injector = Guice.createInjector(getModule());
+  }
+
+  /**
+   * Get the module to configure the injector with. Test cases needing
+   * a differently configured StegosaurusModule may override this.
+   * @return the module.
+   */
+  protected StegosaurusModule getModule() {
+    return new StegosaurusModule();
   }
 }
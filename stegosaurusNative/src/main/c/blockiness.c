@@ -107,34 +107,6 @@ unsigned int blockinessForRows(int components, int stride, JSAMPARRAY buffer,
       }
     }
   }
-  /*
-   * For the functions marked unsafe.
-  if(row_count == 8) {
-    int prev;
-    int tmp1 = 0, tmp2 = 0, tmp3 = 0, tmp4 = 0, tmp5 = 0, tmp6 = 0, tmp7 = 0;
-    JSAMPROW buf1 = buffer[1], buf2 = buffer[2], buf3 = buffer[3],
-             buf4 = buffer[4], buf5 = buffer[5], buf6 = buffer[6],
-             buf7 = buffer[7];
-    switch(components) {
-      case 1:
-        for(index = block_width; index < stride; index += block_width) {
-          prev = index - 1;
-          tmp1 += abs(buf1[index] - buf1[prev]);
-          tmp2 += abs(buf2[index] - buf2[prev]);
-          tmp3 += abs(buf3[index] - buf3[prev]);
-          tmp4 += abs(buf4[index] - buf4[prev]);
-          tmp5 += abs(buf5[index] - buf5[prev]);
-          tmp6 += abs(buf6[index] - buf6[prev]);
-          tmp7 += abs(buf7[index] - buf7[prev]);
-        }
-        break;
-      case 3:
-        break;
-      default:
-    }
-    result += tmp1 + tmp2 + tmp3 + tmp4 + tmp5 + tmp6 + tmp7;
-  } else {
-  } */
   return result;
 }
 
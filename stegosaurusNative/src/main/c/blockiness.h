@@ -156,4 +156,131 @@ unsigned int blockinessForRows1CompUnsafe(int components, int stride,
                                           JSAMPARRAY buffer,
                                           JSAMPROW previous_block_last_row);
 
+/**
+ * The instruction set extensions that the blockiness kernels below can make
+ * use of, from least to most capable.
+ */
+typedef enum {
+  BLOCKINESS_SCALAR,
+  BLOCKINESS_SSE2,
+  BLOCKINESS_AVX2
+} blockinessSimd;
+
+/**
+ * Get the most capable instruction set extension supported by the CPU
+ * we're running on, as detected when the library was loaded.
+ * @return the extension to use.
+ */
+blockinessSimd blockinessSimdSupport(void);
+
+/**
+ * Like the blockinessForRows3Comp function, but summing the differences
+ * 16 samples at a time with SSE2.
+ * Must only be called if blockinessSimdSupport() is at least BLOCKINESS_SSE2.
+ * @param components the number of components; ignored, assumed to be 3
+ * @param stride the row stride of the image (width * 3)
+ * @param buffer the image buffer containing the rows to process
+ * @param row_count the number of rows in the buffer given
+ * @param previous_block_last_row the last row of the previous block
+ * @return the blockiness for these rows.
+ */
+unsigned int blockinessForRows3CompSSE2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row);
+
+/**
+ * Like the blockinessForRows3CompUnsafe function, but with SSE2.
+ * Must only be called if blockinessSimdSupport() is at least BLOCKINESS_SSE2.
+ * @param components the number of components; ignored, assumed to be 3
+ * @param stride the row stride of the image (width * 3)
+ * @param buffer the image buffer containing the rows to process
+ * @param previous_block_last_row the last row of the previous block; non NULL
+ * @return the blockiness for these rows.
+ */
+unsigned int blockinessForRows3CompUnsafeSSE2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row);
+
+/**
+ * Like the blockinessForRows1Comp function, but with SSE2.
+ * Must only be called if blockinessSimdSupport() is at least BLOCKINESS_SSE2.
+ * @param components the number of components; ignored, assumed to be 1
+ * @param stride the row stride of the image; equal to the width
+ * @param buffer the buffer containing the rows to process
+ * @param row_count the number of rows to process
+ * @param previous_block_last_row the last row of the previous block
+ * @return the blockiness for these rows.
+ */
+unsigned int blockinessForRows1CompSSE2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row);
+
+/**
+ * Like the blockinessForRows1CompUnsafe function, but with SSE2.
+ * Must only be called if blockinessSimdSupport() is at least BLOCKINESS_SSE2.
+ * @param components the number of components; ignored, assumed to be 1
+ * @param stride the row stride of the image; equal to the width
+ * @param buffer the buffer containing the rows to process
+ * @param previous_block_last_row the last row of the previous block; non NULL
+ * @return the blockiness for these rows.
+ */
+unsigned int blockinessForRows1CompUnsafeSSE2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row);
+
+/**
+ * Like the blockinessForRows3Comp function, but summing the differences
+ * 32 samples at a time with AVX2.
+ * Must only be called if blockinessSimdSupport() is BLOCKINESS_AVX2.
+ * @param components the number of components; ignored, assumed to be 3
+ * @param stride the row stride of the image (width * 3)
+ * @param buffer the image buffer containing the rows to process
+ * @param row_count the number of rows in the buffer given
+ * @param previous_block_last_row the last row of the previous block
+ * @return the blockiness for these rows.
+ */
+unsigned int blockinessForRows3CompAVX2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row);
+
+/**
+ * Like the blockinessForRows3CompUnsafe function, but with AVX2.
+ * Must only be called if blockinessSimdSupport() is BLOCKINESS_AVX2.
+ * @param components the number of components; ignored, assumed to be 3
+ * @param stride the row stride of the image (width * 3)
+ * @param buffer the image buffer containing the rows to process
+ * @param previous_block_last_row the last row of the previous block; non NULL
+ * @return the blockiness for these rows.
+ */
+unsigned int blockinessForRows3CompUnsafeAVX2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row);
+
+/**
+ * Like the blockinessForRows1Comp function, but with AVX2.
+ * Must only be called if blockinessSimdSupport() is BLOCKINESS_AVX2.
+ * @param components the number of components; ignored, assumed to be 1
+ * @param stride the row stride of the image; equal to the width
+ * @param buffer the buffer containing the rows to process
+ * @param row_count the number of rows to process
+ * @param previous_block_last_row the last row of the previous block
+ * @return the blockiness for these rows.
+ */
+unsigned int blockinessForRows1CompAVX2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row);
+
+/**
+ * Like the blockinessForRows1CompUnsafe function, but with AVX2.
+ * Must only be called if blockinessSimdSupport() is BLOCKINESS_AVX2.
+ * @param components the number of components; ignored, assumed to be 1
+ * @param stride the row stride of the image; equal to the width
+ * @param buffer the buffer containing the rows to process
+ * @param previous_block_last_row the last row of the previous block; non NULL
+ * @return the blockiness for these rows.
+ */
+unsigned int blockinessForRows1CompUnsafeAVX2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row);
+
 #endif /* STEGOSAURUS_BLOCKINESS */
@@ -0,0 +1,427 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * SSE2 and AVX2 versions of the 1 and 3 component blockiness kernels.
+ * Both boil down to psadbw: the differences between the first row of a block
+ * and the last of the one above it are summed 16 or 32 samples at a time,
+ * while those across the horizontal boundaries are summed by loading the 8
+ * samples around a boundary for several rows at once, and lining up the
+ * samples on either side of it with a shift.
+ * The functions are compiled for their instruction sets with target
+ * attributes, so it is up to the caller to check blockinessSimdSupport()
+ * before using them.
+ */
+#include "blockiness.h"
+
+#if defined(__GNUC__) && (defined(__x86_64__) || defined(__i386__))
+#define STEGOSAURUS_X86_SIMD
+#include <immintrin.h>
+#endif
+
+#ifdef STEGOSAURUS_X86_SIMD
+
+#define SSE2_TARGET __attribute__((target("sse2")))
+#define AVX2_TARGET __attribute__((target("avx2")))
+
+/**
+ * The instruction set extension that was detected on load.
+ */
+static blockinessSimd simd_support = BLOCKINESS_SCALAR;
+
+/**
+ * Work out what the CPU supports, once, as the library is loaded.
+ */
+__attribute__((constructor)) static void detectSimdSupport(void) {
+  __builtin_cpu_init();
+  if(__builtin_cpu_supports("avx2")) {
+    simd_support = BLOCKINESS_AVX2;
+  } else if(__builtin_cpu_supports("sse2")) {
+    simd_support = BLOCKINESS_SSE2;
+  }
+}
+
+blockinessSimd blockinessSimdSupport(void) {
+  return simd_support;
+}
+
+/**
+ * Add the differences across a single horizontal boundary, one sample at a
+ * time, for those boundaries too close to the end of the row to be loaded
+ * 8 samples at a time.
+ * @param components the number of components in the buffer
+ * @param index the index of the first sample after the boundary
+ * @param buffer the buffer with the rows
+ * @param row_count the number of rows in the buffer
+ * @return the blockiness across the boundary.
+ */
+static unsigned int boundaryScalar(int components, int index,
+                                   JSAMPARRAY buffer, int row_count) {
+  unsigned int result = 0;
+  int row, comp;
+  for(row = 0; row < row_count; row++) {
+    for(comp = index; comp < index + components; comp++) {
+      result += abs(buffer[row][comp] - buffer[row][comp - components]);
+    }
+  }
+  return result;
+}
+
+/**
+ * Add up both 64 bit halves of an SSE2 psadbw accumulator.
+ * @param acc the accumulator
+ * @return the sum.
+ */
+SSE2_TARGET
+static unsigned int sumSSE2(__m128i acc) {
+  return (unsigned int) (_mm_cvtsi128_si32(acc) +
+                         _mm_cvtsi128_si32(_mm_srli_si128(acc, 8)));
+}
+
+/**
+ * SSE2 equivalent of the scalar firstRow function: the blockiness between
+ * a row and the last row of the block above it.
+ * @param stride the row stride
+ * @param row the row
+ * @param previous_row the last row of the previous block; non NULL
+ * @return the blockiness between both rows.
+ */
+SSE2_TARGET
+static unsigned int firstRowSSE2(int stride, JSAMPROW row,
+                                 JSAMPROW previous_row) {
+  __m128i acc = _mm_setzero_si128();
+  unsigned int result;
+  int index;
+  for(index = 0; index + 16 <= stride; index += 16) {
+    __m128i a = _mm_loadu_si128((const __m128i *) (row + index));
+    __m128i b = _mm_loadu_si128((const __m128i *) (previous_row + index));
+    acc = _mm_add_epi64(acc, _mm_sad_epu8(a, b));
+  }
+  result = sumSSE2(acc);
+  for(; index < stride; index++) {
+    result += abs(row[index] - previous_row[index]);
+  }
+  return result;
+}
+
+/**
+ * Load the 8 samples starting at start from two rows, one per half of the
+ * register.
+ * @param first the first row
+ * @param second the second row; NULL to leave the upper half zeroed
+ * @param start the index of the first sample
+ * @return the samples.
+ */
+SSE2_TARGET
+static __m128i loadPairSSE2(JSAMPROW first, JSAMPROW second, int start) {
+  __m128i lo = _mm_loadl_epi64((const __m128i *) (first + start));
+  if(!second) {
+    return lo;
+  }
+  return _mm_unpacklo_epi64(lo,
+      _mm_loadl_epi64((const __m128i *) (second + start)));
+}
+
+/**
+ * The blockiness across the horizontal block boundaries of a number of rows.
+ * For every boundary, the samples from components before it to components
+ * after it are loaded for 2 rows at a time, so that shifting each 64 bit half
+ * right by components samples lines every sample up with its counterpart
+ * across the boundary, and masking both leaves only those components
+ * samples to psadbw.
+ * @param components the number of components; at most 3
+ * @param stride the row stride
+ * @param buffer the buffer with the rows
+ * @param row_count the number of rows in the buffer
+ * @return the blockiness across the boundaries.
+ */
+SSE2_TARGET
+static unsigned int boundariesSSE2(int components, int stride,
+                                   JSAMPARRAY buffer, int row_count) {
+  const int block_width = components * 8;
+  const int lane = (1 << (components * 8)) - 1;
+  const __m128i mask = _mm_set_epi32(0, lane, 0, lane);
+  const __m128i shift = _mm_cvtsi32_si128(components * 8);
+  __m128i acc = _mm_setzero_si128();
+  unsigned int result = 0;
+  int index, row, start;
+  for(index = block_width; index < stride; index += block_width) {
+    start = index - components;
+    if(start + 8 > stride) {
+      result += boundaryScalar(components, index, buffer, row_count);
+      continue;
+    }
+    for(row = 0; row < row_count; row += 2) {
+      __m128i samples = loadPairSSE2(buffer[row],
+          row + 1 < row_count ? buffer[row + 1] : NULL, start);
+      __m128i before = _mm_and_si128(samples, mask);
+      __m128i after = _mm_and_si128(_mm_srl_epi64(samples, shift), mask);
+      acc = _mm_add_epi64(acc, _mm_sad_epu8(before, after));
+    }
+  }
+  return result + sumSSE2(acc);
+}
+
+unsigned int blockinessForRows3CompSSE2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row) {
+  unsigned int result = 0;
+  (void) components;
+  if(previous_block_last_row) {
+    result += firstRowSSE2(stride, buffer[0], previous_block_last_row);
+  }
+  return result + boundariesSSE2(3, stride, buffer, row_count);
+}
+
+unsigned int blockinessForRows3CompUnsafeSSE2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row) {
+  (void) components;
+  return firstRowSSE2(stride, buffer[0], previous_block_last_row) +
+    boundariesSSE2(3, stride, buffer, 8);
+}
+
+unsigned int blockinessForRows1CompSSE2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row) {
+  unsigned int result;
+  (void) components;
+  /* Just like blockinessForRows, the first row's horizontal boundaries go
+   * in twice when there is no previous row */
+  if(previous_block_last_row) {
+    result = firstRowSSE2(stride, buffer[0], previous_block_last_row);
+  } else {
+    result = boundariesSSE2(1, stride, buffer, 1);
+  }
+  return result + boundariesSSE2(1, stride, buffer, row_count);
+}
+
+unsigned int blockinessForRows1CompUnsafeSSE2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row) {
+  (void) components;
+  return firstRowSSE2(stride, buffer[0], previous_block_last_row) +
+    boundariesSSE2(1, stride, buffer, 8);
+}
+
+/**
+ * Add up all four 64 bit quarters of an AVX2 psadbw accumulator.
+ * @param acc the accumulator
+ * @return the sum.
+ */
+AVX2_TARGET
+static unsigned int sumAVX2(__m256i acc) {
+  __m128i half = _mm_add_epi64(_mm256_castsi256_si128(acc),
+                               _mm256_extracti128_si256(acc, 1));
+  return (unsigned int) (_mm_cvtsi128_si32(half) +
+                         _mm_cvtsi128_si32(_mm_srli_si128(half, 8)));
+}
+
+/**
+ * AVX2 equivalent of the scalar firstRow function.
+ * @param stride the row stride
+ * @param row the row
+ * @param previous_row the last row of the previous block; non NULL
+ * @return the blockiness between both rows.
+ */
+AVX2_TARGET
+static unsigned int firstRowAVX2(int stride, JSAMPROW row,
+                                 JSAMPROW previous_row) {
+  __m256i acc = _mm256_setzero_si256();
+  unsigned int result;
+  int index;
+  for(index = 0; index + 32 <= stride; index += 32) {
+    __m256i a = _mm256_loadu_si256((const __m256i *) (row + index));
+    __m256i b = _mm256_loadu_si256((const __m256i *) (previous_row + index));
+    acc = _mm256_add_epi64(acc, _mm256_sad_epu8(a, b));
+  }
+  result = sumAVX2(acc);
+  for(; index < stride; index++) {
+    result += abs(row[index] - previous_row[index]);
+  }
+  return result;
+}
+
+/**
+ * Load the 8 samples starting at start from up to four rows, one per quarter
+ * of the register; the quarters of missing rows are left zeroed.
+ * @param buffer the buffer with the rows
+ * @param row the first row to load
+ * @param row_count the number of rows in the buffer
+ * @param start the index of the first sample
+ * @return the samples.
+ */
+AVX2_TARGET
+static __m256i loadQuadAVX2(JSAMPARRAY buffer, int row, int row_count,
+                            int start) {
+  __m128i halves[2];
+  int half, current;
+  for(half = 0; half < 2; half++) {
+    current = row + half * 2;
+    halves[half] = _mm_setzero_si128();
+    if(current < row_count) {
+      halves[half] = _mm_loadl_epi64((const __m128i *) (buffer[current] + start));
+    }
+    if(current + 1 < row_count) {
+      halves[half] = _mm_unpacklo_epi64(halves[half],
+          _mm_loadl_epi64((const __m128i *) (buffer[current + 1] + start)));
+    }
+  }
+  return _mm256_inserti128_si256(_mm256_castsi128_si256(halves[0]),
+                                 halves[1], 1);
+}
+
+/**
+ * AVX2 version of boundariesSSE2, doing 4 rows at a time.
+ * @param components the number of components; at most 3
+ * @param stride the row stride
+ * @param buffer the buffer with the rows
+ * @param row_count the number of rows in the buffer
+ * @return the blockiness across the boundaries.
+ */
+AVX2_TARGET
+static unsigned int boundariesAVX2(int components, int stride,
+                                   JSAMPARRAY buffer, int row_count) {
+  const int block_width = components * 8;
+  const int lane = (1 << (components * 8)) - 1;
+  const __m256i mask = _mm256_set_epi32(0, lane, 0, lane, 0, lane, 0, lane);
+  const __m128i shift = _mm_cvtsi32_si128(components * 8);
+  __m256i acc = _mm256_setzero_si256();
+  unsigned int result = 0;
+  int index, row, start;
+  for(index = block_width; index < stride; index += block_width) {
+    start = index - components;
+    if(start + 8 > stride) {
+      result += boundaryScalar(components, index, buffer, row_count);
+      continue;
+    }
+    for(row = 0; row < row_count; row += 4) {
+      __m256i samples = loadQuadAVX2(buffer, row, row_count, start);
+      __m256i before = _mm256_and_si256(samples, mask);
+      __m256i after = _mm256_and_si256(_mm256_srl_epi64(samples, shift), mask);
+      acc = _mm256_add_epi64(acc, _mm256_sad_epu8(before, after));
+    }
+  }
+  return result + sumAVX2(acc);
+}
+
+unsigned int blockinessForRows3CompAVX2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row) {
+  unsigned int result = 0;
+  (void) components;
+  if(previous_block_last_row) {
+    result += firstRowAVX2(stride, buffer[0], previous_block_last_row);
+  }
+  return result + boundariesAVX2(3, stride, buffer, row_count);
+}
+
+unsigned int blockinessForRows3CompUnsafeAVX2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row) {
+  (void) components;
+  return firstRowAVX2(stride, buffer[0], previous_block_last_row) +
+    boundariesAVX2(3, stride, buffer, 8);
+}
+
+unsigned int blockinessForRows1CompAVX2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row) {
+  unsigned int result;
+  (void) components;
+  if(previous_block_last_row) {
+    result = firstRowAVX2(stride, buffer[0], previous_block_last_row);
+  } else {
+    result = boundariesAVX2(1, stride, buffer, 1);
+  }
+  return result + boundariesAVX2(1, stride, buffer, row_count);
+}
+
+unsigned int blockinessForRows1CompUnsafeAVX2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row) {
+  (void) components;
+  return firstRowAVX2(stride, buffer[0], previous_block_last_row) +
+    boundariesAVX2(1, stride, buffer, 8);
+}
+
+#else /* STEGOSAURUS_X86_SIMD */
+
+/* Nothing to dispatch to on other CPUs; the vectorized kernels are merely
+ * the scalar ones, so that callers need not care. */
+
+blockinessSimd blockinessSimdSupport(void) {
+  return BLOCKINESS_SCALAR;
+}
+
+unsigned int blockinessForRows3CompSSE2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row) {
+  return blockinessForRows3Comp(components, stride, buffer, row_count,
+                                previous_block_last_row);
+}
+
+unsigned int blockinessForRows3CompUnsafeSSE2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row) {
+  return blockinessForRows3CompUnsafe(components, stride, buffer,
+                                      previous_block_last_row);
+}
+
+unsigned int blockinessForRows1CompSSE2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row) {
+  return blockinessForRows1Comp(components, stride, buffer, row_count,
+                                previous_block_last_row);
+}
+
+unsigned int blockinessForRows1CompUnsafeSSE2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row) {
+  return blockinessForRows1CompUnsafe(components, stride, buffer,
+                                      previous_block_last_row);
+}
+
+unsigned int blockinessForRows3CompAVX2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row) {
+  return blockinessForRows3Comp(components, stride, buffer, row_count,
+                                previous_block_last_row);
+}
+
+unsigned int blockinessForRows3CompUnsafeAVX2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row) {
+  return blockinessForRows3CompUnsafe(components, stride, buffer,
+                                      previous_block_last_row);
+}
+
+unsigned int blockinessForRows1CompAVX2(int components, int stride,
+                                        JSAMPARRAY buffer, int row_count,
+                                        JSAMPROW previous_block_last_row) {
+  return blockinessForRows1Comp(components, stride, buffer, row_count,
+                                previous_block_last_row);
+}
+
+unsigned int blockinessForRows1CompUnsafeAVX2(int components, int stride,
+                                              JSAMPARRAY buffer,
+                                              JSAMPROW previous_block_last_row) {
+  return blockinessForRows1CompUnsafe(components, stride, buffer,
+                                      previous_block_last_row);
+}
+
+#endif /* STEGOSAURUS_X86_SIMD */
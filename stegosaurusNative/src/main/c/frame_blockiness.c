@@ -0,0 +1,148 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+#include "frame_blockiness.h"
+#include <pthread.h>
+
+/**
+ * A horizontal stripe of a frame, made up of whole groups of 8 rows.
+ */
+typedef struct {
+  /**
+   * The rows of the whole frame.
+   */
+  JSAMPARRAY rows;
+  /**
+   * The number of rows in the whole frame.
+   */
+  JDIMENSION height;
+  /**
+   * The number of components in every pixel.
+   */
+  int components;
+  /**
+   * The number of samples in every row.
+   */
+  int stride;
+  /**
+   * The safe blockiness calculation function.
+   */
+  blockinessCalcSafe safe;
+  /**
+   * The non-safe blockiness calculation function.
+   */
+  blockinessCalcUnsafe unsafe;
+  /**
+   * The index of the first group of 8 rows in the stripe.
+   */
+  JDIMENSION first_group;
+  /**
+   * The index of the group of 8 rows past the end of the stripe.
+   */
+  JDIMENSION end_group;
+  /**
+   * The blockiness of the stripe, once worked out.
+   */
+  unsigned long value;
+} frameStripe;
+
+/**
+ * Work out the blockiness of the stripe given, and keep it in the stripe.
+ * Only the very first group has no previous row, and only the very last
+ * may have fewer than 8 rows; every other one goes to the unsafe function.
+ * @param stripe the stripe.
+ */
+static void stripeBlockiness(frameStripe *stripe) {
+  const JDIMENSION last_group = (stripe->height - 1) / 8;
+  JDIMENSION group, scanline;
+  JSAMPARRAY rows = stripe->rows;
+  stripe->value = 0;
+  for(group = stripe->first_group; group < stripe->end_group; ++group) {
+    scanline = group * 8;
+    if(!group) {
+      stripe->value += stripe->safe(stripe->components, stripe->stride, rows,
+                                    stripe->height < 8 ? stripe->height : 8,
+                                    NULL);
+    } else if(group == last_group) {
+      stripe->value += stripe->safe(stripe->components, stripe->stride,
+                                    rows + scanline, stripe->height - scanline,
+                                    rows[scanline - 1]);
+    } else {
+      stripe->value += stripe->unsafe(stripe->components, stripe->stride,
+                                      rows + scanline, rows[scanline - 1]);
+    }
+  }
+}
+
+/**
+ * The entry point of the threads started by blockinessForFrame.
+ * @param stripe the stripe to work out the blockiness of.
+ * @return NULL.
+ */
+static void *stripeThread(void *stripe) {
+  stripeBlockiness((frameStripe *) stripe);
+  return NULL;
+}
+
+unsigned long blockinessForFrame(JSAMPARRAY rows, JDIMENSION height,
+                                 int components, int stride,
+                                 blockinessCalcSafe safe,
+                                 blockinessCalcUnsafe unsafe,
+                                 int thread_count) {
+  const JDIMENSION groups = (height + 7) / 8;
+  frameStripe *stripes;
+  pthread_t *threads;
+  int *started;
+  unsigned long value = 0;
+  int i;
+  if(thread_count < 1) {
+    thread_count = 1;
+  }
+  if((JDIMENSION) thread_count > groups) {
+    thread_count = groups;
+  }
+  stripes = (frameStripe *) malloc(thread_count * sizeof(frameStripe));
+  threads = (pthread_t *) malloc(thread_count * sizeof(pthread_t));
+  started = (int *) malloc(thread_count * sizeof(int));
+  for(i = 0; i < thread_count; ++i) {
+    stripes[i].rows = rows;
+    stripes[i].height = height;
+    stripes[i].components = components;
+    stripes[i].stride = stride;
+    stripes[i].safe = safe;
+    stripes[i].unsafe = unsafe;
+    stripes[i].first_group = (groups * i) / thread_count;
+    stripes[i].end_group = (groups * (i + 1)) / thread_count;
+    started[i] = 0;
+  }
+  for(i = 1; i < thread_count; ++i) {
+    started[i] = !pthread_create(threads + i, NULL, &stripeThread,
+                                 stripes + i);
+  }
+  for(i = 0; i < thread_count; ++i) {
+    if(started[i]) {
+      pthread_join(threads[i], NULL);
+    } else {
+      stripeBlockiness(stripes + i);
+    }
+    value += stripes[i].value;
+  }
+  free(started);
+  free(threads);
+  free(stripes);
+  return value;
+}
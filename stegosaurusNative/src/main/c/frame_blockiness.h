@@ -0,0 +1,52 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * This file defines the calculation of the spatial blockiness of a whole
+ * frame of samples held in memory at once, which, unlike that of a frame
+ * being decoded a few rows at a time, may be split up between threads.
+ */
+#ifndef STEGOSAURUS_FRAME_BLOCKINESS
+#define STEGOSAURUS_FRAME_BLOCKINESS
+#include "blockiness.h"
+
+/**
+ * Calculate the spatial blockiness of the frame given, going over it in
+ * groups of 8 rows, exactly as it would be gone over while being decoded,
+ * so as to come up with the exact same figure.
+ * The groups are split up into as many horizontal stripes as there are
+ * threads, the first of which is worked out on the calling thread, and the
+ * rest on threads of their own; their blockiness is then added up.
+ * Should a thread fail to start, its stripe is worked out on the calling
+ * thread instead.
+ * @param rows the rows of the frame.
+ * @param height the number of rows.
+ * @param components the number of components in every pixel.
+ * @param stride the number of samples in every row.
+ * @param safe the safe blockiness calculation function.
+ * @param unsafe the non-safe blockiness calculation function.
+ * @param thread_count the number of threads to use; 1 or less for the
+ *    calling thread alone.
+ * @return the blockiness.
+ */
+unsigned long blockinessForFrame(JSAMPARRAY rows, JDIMENSION height,
+                                 int components, int stride,
+                                 blockinessCalcSafe safe,
+                                 blockinessCalcUnsafe unsafe,
+                                 int thread_count);
+
+#endif /* STEGOSAURUS_FRAME_BLOCKINESS */
@@ -0,0 +1,600 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+#include "spatial.h"
+#include <string.h>
+
+/* Everything below is done precisely the way libjpeg does it, so that the
+ * samples come out identical to its own, down to the last rounding. The
+ * names of the constants are libjpeg's own. */
+
+/* The accurate integer DCT: see libjpeg's jfdctint.c and jidctint.c */
+#define CONST_BITS 13
+#define PASS1_BITS 2
+#define FIX_0_298631336 2446L
+#define FIX_0_390180644 3196L
+#define FIX_0_541196100 4433L
+#define FIX_0_765366865 6270L
+#define FIX_0_899976223 7373L
+#define FIX_1_175875602 9633L
+#define FIX_1_501321110 12299L
+#define FIX_1_847759065 15137L
+#define FIX_1_961570560 16069L
+#define FIX_2_053119869 16819L
+#define FIX_2_562915447 20995L
+#define FIX_3_072711026 25172L
+#define DESCALE(x, n) (((x) + (1L << ((n) - 1))) >> (n))
+
+/* The colour conversions: see libjpeg's jccolor.c and jdcolor.c */
+#define SCALEBITS 16
+#define ONE_HALF (1L << (SCALEBITS - 1))
+#define CBCR_OFFSET ((long) CENTERJSAMPLE << SCALEBITS)
+#define FIX(x) ((long) ((x) * (1L << SCALEBITS) + 0.5))
+
+/**
+ * Clamp a value into the range of a sample.
+ * @param value the value.
+ * @return the sample.
+ */
+static inline JSAMPLE clampSample(long value) {
+  if(value < 0) {
+    return 0;
+  }
+  if(value > MAXJSAMPLE) {
+    return MAXJSAMPLE;
+  }
+  return (JSAMPLE) value;
+}
+
+/**
+ * Turn the output of the inverse DCT into a sample, the way libjpeg's range
+ * limit table does: values far out of range wrap around, rather than clamp.
+ * @param value the value.
+ * @return the sample.
+ */
+static inline JSAMPLE idctSample(long value) {
+  long masked = value & 1023;
+  if(masked >= 512) {
+    masked -= 1024;
+  }
+  return clampSample(masked + CENTERJSAMPLE);
+}
+
+/**
+ * Carry out the odd part of the inverse DCT on the values given, in place.
+ * @param tmp0 the value of the seventh coefficient.
+ * @param tmp1 the value of the fifth coefficient.
+ * @param tmp2 the value of the third coefficient.
+ * @param tmp3 the value of the first coefficient.
+ */
+static inline void idctOdd(long *tmp0, long *tmp1, long *tmp2, long *tmp3) {
+  long z1 = *tmp0 + *tmp3;
+  long z2 = *tmp1 + *tmp2;
+  long z3 = *tmp0 + *tmp2;
+  long z4 = *tmp1 + *tmp3;
+  long z5 = (z3 + z4) * FIX_1_175875602;
+  *tmp0 *= FIX_0_298631336;
+  *tmp1 *= FIX_2_053119869;
+  *tmp2 *= FIX_3_072711026;
+  *tmp3 *= FIX_1_501321110;
+  z1 *= -FIX_0_899976223;
+  z2 *= -FIX_2_562915447;
+  z3 *= -FIX_1_961570560;
+  z4 *= -FIX_0_390180644;
+  z3 += z5;
+  z4 += z5;
+  *tmp0 += z1 + z3;
+  *tmp1 += z2 + z4;
+  *tmp2 += z2 + z3;
+  *tmp3 += z1 + z4;
+}
+
+/**
+ * Dequantize and inverse DCT a single block into the samples given.
+ * @param coef the coefficients of the block.
+ * @param quant the quantization table.
+ * @param output the samples.
+ * @param row the row of the samples to start at.
+ * @param col the column of the samples to start at.
+ */
+static void idctBlock(const JCOEF *coef, const UINT16 *quant,
+                      JSAMPARRAY output, JDIMENSION row, JDIMENSION col) {
+  long tmp0, tmp1, tmp2, tmp3, tmp10, tmp11, tmp12, tmp13, z1, z2, z3;
+  int workspace[DCTSIZE2];
+  int ctr, i;
+  /* Pass 1: the columns, into the workspace */
+  for(ctr = 0; ctr < DCTSIZE; ++ctr) {
+    const JCOEF *in = coef + ctr;
+    const UINT16 *q = quant + ctr;
+    int *ws = workspace + ctr;
+    if(!in[DCTSIZE * 1] && !in[DCTSIZE * 2] && !in[DCTSIZE * 3] &&
+       !in[DCTSIZE * 4] && !in[DCTSIZE * 5] && !in[DCTSIZE * 6] &&
+       !in[DCTSIZE * 7]) {
+      int dc = in[0] * q[0] * (1 << PASS1_BITS);
+      for(i = 0; i < DCTSIZE; ++i) {
+        ws[DCTSIZE * i] = dc;
+      }
+      continue;
+    }
+    z2 = (long) in[DCTSIZE * 2] * q[DCTSIZE * 2];
+    z3 = (long) in[DCTSIZE * 6] * q[DCTSIZE * 6];
+    z1 = (z2 + z3) * FIX_0_541196100;
+    tmp2 = z1 + (z3 * -FIX_1_847759065);
+    tmp3 = z1 + (z2 * FIX_0_765366865);
+    z2 = (long) in[0] * q[0];
+    z3 = (long) in[DCTSIZE * 4] * q[DCTSIZE * 4];
+    tmp0 = (z2 + z3) * (1L << CONST_BITS);
+    tmp1 = (z2 - z3) * (1L << CONST_BITS);
+    tmp10 = tmp0 + tmp3;
+    tmp13 = tmp0 - tmp3;
+    tmp11 = tmp1 + tmp2;
+    tmp12 = tmp1 - tmp2;
+    tmp0 = (long) in[DCTSIZE * 7] * q[DCTSIZE * 7];
+    tmp1 = (long) in[DCTSIZE * 5] * q[DCTSIZE * 5];
+    tmp2 = (long) in[DCTSIZE * 3] * q[DCTSIZE * 3];
+    tmp3 = (long) in[DCTSIZE * 1] * q[DCTSIZE * 1];
+    idctOdd(&tmp0, &tmp1, &tmp2, &tmp3);
+    ws[DCTSIZE * 0] = (int) DESCALE(tmp10 + tmp3, CONST_BITS - PASS1_BITS);
+    ws[DCTSIZE * 7] = (int) DESCALE(tmp10 - tmp3, CONST_BITS - PASS1_BITS);
+    ws[DCTSIZE * 1] = (int) DESCALE(tmp11 + tmp2, CONST_BITS - PASS1_BITS);
+    ws[DCTSIZE * 6] = (int) DESCALE(tmp11 - tmp2, CONST_BITS - PASS1_BITS);
+    ws[DCTSIZE * 2] = (int) DESCALE(tmp12 + tmp1, CONST_BITS - PASS1_BITS);
+    ws[DCTSIZE * 5] = (int) DESCALE(tmp12 - tmp1, CONST_BITS - PASS1_BITS);
+    ws[DCTSIZE * 3] = (int) DESCALE(tmp13 + tmp0, CONST_BITS - PASS1_BITS);
+    ws[DCTSIZE * 4] = (int) DESCALE(tmp13 - tmp0, CONST_BITS - PASS1_BITS);
+  }
+  /* Pass 2: the rows, into the samples */
+  for(ctr = 0; ctr < DCTSIZE; ++ctr) {
+    const int *ws = workspace + (ctr * DCTSIZE);
+    JSAMPROW out = output[row + ctr] + col;
+    const int shift = CONST_BITS + PASS1_BITS + 3;
+    z2 = ws[2];
+    z3 = ws[6];
+    z1 = (z2 + z3) * FIX_0_541196100;
+    tmp2 = z1 + (z3 * -FIX_1_847759065);
+    tmp3 = z1 + (z2 * FIX_0_765366865);
+    tmp0 = ((long) ws[0] + ws[4]) * (1L << CONST_BITS);
+    tmp1 = ((long) ws[0] - ws[4]) * (1L << CONST_BITS);
+    tmp10 = tmp0 + tmp3;
+    tmp13 = tmp0 - tmp3;
+    tmp11 = tmp1 + tmp2;
+    tmp12 = tmp1 - tmp2;
+    tmp0 = ws[7];
+    tmp1 = ws[5];
+    tmp2 = ws[3];
+    tmp3 = ws[1];
+    idctOdd(&tmp0, &tmp1, &tmp2, &tmp3);
+    out[0] = idctSample(DESCALE(tmp10 + tmp3, shift));
+    out[7] = idctSample(DESCALE(tmp10 - tmp3, shift));
+    out[1] = idctSample(DESCALE(tmp11 + tmp2, shift));
+    out[6] = idctSample(DESCALE(tmp11 - tmp2, shift));
+    out[2] = idctSample(DESCALE(tmp12 + tmp1, shift));
+    out[5] = idctSample(DESCALE(tmp12 - tmp1, shift));
+    out[3] = idctSample(DESCALE(tmp13 + tmp0, shift));
+    out[4] = idctSample(DESCALE(tmp13 - tmp0, shift));
+  }
+}
+
+/**
+ * Carry out one pass of the forward DCT over eight values.
+ * @param data the first value.
+ * @param stride the distance between the values.
+ * @param first whether this is the first pass.
+ */
+static void fdctPass(int *data, int stride, int first) {
+  long tmp0, tmp1, tmp2, tmp3, tmp4, tmp5, tmp6, tmp7;
+  long tmp10, tmp11, tmp12, tmp13, z1, z2, z3, z4, z5;
+  const int even_shift = first ? 0 : PASS1_BITS;
+  const int odd_shift = first ? CONST_BITS - PASS1_BITS :
+                                CONST_BITS + PASS1_BITS;
+  tmp0 = data[0] + data[stride * 7];
+  tmp7 = data[0] - data[stride * 7];
+  tmp1 = data[stride * 1] + data[stride * 6];
+  tmp6 = data[stride * 1] - data[stride * 6];
+  tmp2 = data[stride * 2] + data[stride * 5];
+  tmp5 = data[stride * 2] - data[stride * 5];
+  tmp3 = data[stride * 3] + data[stride * 4];
+  tmp4 = data[stride * 3] - data[stride * 4];
+  tmp10 = tmp0 + tmp3;
+  tmp13 = tmp0 - tmp3;
+  tmp11 = tmp1 + tmp2;
+  tmp12 = tmp1 - tmp2;
+  if(first) {
+    data[0] = (int) ((tmp10 + tmp11) * (1 << PASS1_BITS));
+    data[stride * 4] = (int) ((tmp10 - tmp11) * (1 << PASS1_BITS));
+  } else {
+    data[0] = (int) DESCALE(tmp10 + tmp11, even_shift);
+    data[stride * 4] = (int) DESCALE(tmp10 - tmp11, even_shift);
+  }
+  z1 = (tmp12 + tmp13) * FIX_0_541196100;
+  data[stride * 2] = (int) DESCALE(z1 + (tmp13 * FIX_0_765366865),
+                                   odd_shift);
+  data[stride * 6] = (int) DESCALE(z1 + (tmp12 * -FIX_1_847759065),
+                                   odd_shift);
+  z1 = tmp4 + tmp7;
+  z2 = tmp5 + tmp6;
+  z3 = tmp4 + tmp6;
+  z4 = tmp5 + tmp7;
+  z5 = (z3 + z4) * FIX_1_175875602;
+  tmp4 *= FIX_0_298631336;
+  tmp5 *= FIX_2_053119869;
+  tmp6 *= FIX_3_072711026;
+  tmp7 *= FIX_1_501321110;
+  z1 *= -FIX_0_899976223;
+  z2 *= -FIX_2_562915447;
+  z3 *= -FIX_1_961570560;
+  z4 *= -FIX_0_390180644;
+  z3 += z5;
+  z4 += z5;
+  data[stride * 7] = (int) DESCALE(tmp4 + z1 + z3, odd_shift);
+  data[stride * 5] = (int) DESCALE(tmp5 + z2 + z4, odd_shift);
+  data[stride * 3] = (int) DESCALE(tmp6 + z2 + z3, odd_shift);
+  data[stride * 1] = (int) DESCALE(tmp7 + z1 + z4, odd_shift);
+}
+
+/**
+ * Forward DCT and quantize a single block of samples.
+ * @param input the samples.
+ * @param row the row of the samples to start at.
+ * @param col the column of the samples to start at.
+ * @param quant the quantization table.
+ * @param coef the coefficients to write into.
+ */
+static void fdctBlock(JSAMPARRAY input, JDIMENSION row, JDIMENSION col,
+                      const UINT16 *quant, JCOEF *coef) {
+  int workspace[DCTSIZE2];
+  int i, j;
+  for(i = 0; i < DCTSIZE; ++i) {
+    JSAMPROW in = input[row + i] + col;
+    for(j = 0; j < DCTSIZE; ++j) {
+      workspace[(i * DCTSIZE) + j] = in[j] - CENTERJSAMPLE;
+    }
+  }
+  for(i = 0; i < DCTSIZE; ++i) {
+    fdctPass(workspace + (i * DCTSIZE), 1, 1);
+  }
+  for(i = 0; i < DCTSIZE; ++i) {
+    fdctPass(workspace + i, DCTSIZE, 0);
+  }
+  /* The DCT leaves its output scaled up by 8 */
+  for(i = 0; i < DCTSIZE2; ++i) {
+    const int divisor = quant[i] << 3;
+    int value = workspace[i];
+    int negative = value < 0;
+    if(negative) {
+      value = -value;
+    }
+    value += divisor >> 1;
+    value = (value >= divisor ? value / divisor : 0);
+    coef[i] = (JCOEF) (negative ? -value : value);
+  }
+}
+
+/**
+ * Upsample a component's samples into a full size plane.
+ * @param layout the layout of the image.
+ * @param comp the component.
+ * @param input the component's samples.
+ * @param output the plane, image_height rows of image_width samples.
+ * @param scratch a row at least twice as long as the component is wide.
+ */
+static void upsample(const spatialLayout *layout,
+                     const spatialComponent *comp, JSAMPARRAY input,
+                     JSAMPARRAY output, JSAMPROW scratch) {
+  const int h_expand = layout->max_h_samp_factor / comp->h_samp_factor;
+  const int v_expand = layout->max_v_samp_factor / comp->v_samp_factor;
+  const JDIMENSION in_width = comp->downsampled_width;
+  const JDIMENSION last_row = comp->downsampled_height - 1;
+  JDIMENSION row, col;
+  for(row = 0; row < layout->image_height; ++row) {
+    JSAMPROW out = output[row];
+    JSAMPROW in = input[row / v_expand];
+    /* The other row, above or below, for the vertical filters; the top and
+     * bottom rows are their own neighbours */
+    JSAMPROW other;
+    int bias;
+    if(row % 2) {
+      other = input[row / 2 < last_row ? row / 2 + 1 : last_row];
+      bias = 2;
+    } else {
+      other = input[row / 2 > 0 ? row / 2 - 1 : 0];
+      bias = 1;
+    }
+    if(h_expand == 1 && v_expand == 1) {
+      memcpy(out, in, layout->image_width);
+    } else if(h_expand == 2 && v_expand == 1 && in_width > 2) {
+      int value = in[0];
+      scratch[0] = (JSAMPLE) value;
+      scratch[1] = (JSAMPLE) ((value * 3 + in[1] + 2) >> 2);
+      for(col = 1; col < in_width - 1; ++col) {
+        value = in[col] * 3;
+        scratch[col * 2] = (JSAMPLE) ((value + in[col - 1] + 1) >> 2);
+        scratch[col * 2 + 1] = (JSAMPLE) ((value + in[col + 1] + 2) >> 2);
+      }
+      value = in[in_width - 1];
+      scratch[col * 2] = (JSAMPLE) ((value * 3 + in[col - 1] + 1) >> 2);
+      scratch[col * 2 + 1] = (JSAMPLE) value;
+      memcpy(out, scratch, layout->image_width);
+    } else if(h_expand == 1 && v_expand == 2) {
+      for(col = 0; col < layout->image_width; ++col) {
+        out[col] = (JSAMPLE) ((in[col] * 3 + other[col] + bias) >> 2);
+      }
+    } else if(h_expand == 2 && v_expand == 2 && in_width > 2) {
+      int last, current, next;
+      current = in[0] * 3 + other[0];
+      next = in[1] * 3 + other[1];
+      scratch[0] = (JSAMPLE) ((current * 4 + 8) >> 4);
+      scratch[1] = (JSAMPLE) ((current * 3 + next + 7) >> 4);
+      for(col = 1; col < in_width - 1; ++col) {
+        last = current;
+        current = next;
+        next = in[col + 1] * 3 + other[col + 1];
+        scratch[col * 2] = (JSAMPLE) ((current * 3 + last + 8) >> 4);
+        scratch[col * 2 + 1] = (JSAMPLE) ((current * 3 + next + 7) >> 4);
+      }
+      scratch[col * 2] = (JSAMPLE) ((next * 3 + current + 8) >> 4);
+      scratch[col * 2 + 1] = (JSAMPLE) ((next * 4 + 7) >> 4);
+      memcpy(out, scratch, layout->image_width);
+    } else {
+      for(col = 0; col < layout->image_width; ++col) {
+        out[col] = in[col / h_expand];
+      }
+    }
+  }
+}
+
+/**
+ * Downsample a full size plane into a component's samples, padding them out
+ * to a whole number of blocks.
+ * @param layout the layout of the image.
+ * @param comp the component.
+ * @param input the plane, image_height rows of image_width samples.
+ * @param output the component's samples.
+ */
+static void downsample(const spatialLayout *layout,
+                       const spatialComponent *comp, JSAMPARRAY input,
+                       JSAMPARRAY output) {
+  const int h_expand = layout->max_h_samp_factor / comp->h_samp_factor;
+  const int v_expand = layout->max_v_samp_factor / comp->v_samp_factor;
+  const JDIMENSION out_width = comp->width_in_blocks * DCTSIZE;
+  const JDIMENSION out_height = comp->height_in_blocks * DCTSIZE;
+  const JDIMENSION last_row = layout->image_height - 1;
+  const JDIMENSION last_col = layout->image_width - 1;
+  const int pixels = h_expand * v_expand;
+  /* Only whole row groups are downsampled, the image having been padded
+   * to them; the rest of the rows copy the last one downsampled */
+  JDIMENSION produced = ((layout->image_height + layout->max_v_samp_factor - 1)
+                         / layout->max_v_samp_factor) * comp->v_samp_factor;
+  JDIMENSION row, col;
+  int y, x;
+  if(produced > out_height) {
+    produced = out_height;
+  }
+  for(row = 0; row < produced; ++row) {
+    JSAMPROW out = output[row];
+    for(col = 0; col < out_width; ++col) {
+      int sum = 0;
+      for(y = 0; y < v_expand; ++y) {
+        JDIMENSION in_row = row * v_expand + y;
+        JSAMPROW in = input[in_row < last_row ? in_row : last_row];
+        for(x = 0; x < h_expand; ++x) {
+          JDIMENSION in_col = col * h_expand + x;
+          sum += in[in_col < last_col ? in_col : last_col];
+        }
+      }
+      if(h_expand == 2 && v_expand == 1) {
+        out[col] = (JSAMPLE) ((sum + (int) (col & 1)) >> 1);
+      } else if(h_expand == 2 && v_expand == 2) {
+        out[col] = (JSAMPLE) ((sum + (col & 1 ? 2 : 1)) >> 2);
+      } else {
+        out[col] = (JSAMPLE) ((sum + (pixels / 2)) / pixels);
+      }
+    }
+  }
+  for(row = produced; row < out_height; ++row) {
+    memcpy(output[row], output[produced - 1], out_width);
+  }
+}
+
+int spatialSupported(const spatialLayout *layout) {
+  int c;
+  switch(layout->color_space) {
+    case JCS_GRAYSCALE:
+      if(layout->num_components != 1) {
+        return 0;
+      }
+      break;
+    case JCS_YCbCr:
+    case JCS_RGB:
+      if(layout->num_components != 3) {
+        return 0;
+      }
+      break;
+    default:
+      return 0;
+  }
+  for(c = 0; c < layout->num_components; ++c) {
+    const spatialComponent *comp = layout->components + c;
+    if(layout->max_h_samp_factor % comp->h_samp_factor ||
+       layout->max_v_samp_factor % comp->v_samp_factor) {
+      return 0;
+    }
+  }
+  return layout->image_width > 0 && layout->image_height > 0;
+}
+
+/**
+ * Divide, rounding up.
+ * @param a the dividend.
+ * @param b the divisor.
+ * @return the quotient.
+ */
+static inline JDIMENSION divRoundUp(JDIMENSION a, JDIMENSION b) {
+  return (a + b - 1) / b;
+}
+
+void spatialCropLayout(const spatialLayout *src, int x_off, int y_off,
+                       spatialLayout *dst) {
+  int c;
+  spatialComponent *components = dst->components;
+  *dst = *src;
+  dst->components = components;
+  dst->image_width = src->image_width - x_off;
+  dst->image_height = src->image_height - y_off;
+  for(c = 0; c < src->num_components; ++c) {
+    spatialComponent *comp = dst->components + c;
+    *comp = src->components[c];
+    comp->width_in_blocks = divRoundUp(
+        dst->image_width * comp->h_samp_factor,
+        dst->max_h_samp_factor * DCTSIZE);
+    comp->height_in_blocks = divRoundUp(
+        dst->image_height * comp->v_samp_factor,
+        dst->max_v_samp_factor * DCTSIZE);
+    comp->downsampled_width = divRoundUp(
+        dst->image_width * comp->h_samp_factor, dst->max_h_samp_factor);
+    comp->downsampled_height = divRoundUp(
+        dst->image_height * comp->v_samp_factor, dst->max_v_samp_factor);
+  }
+}
+
+JSAMPARRAY spatialAllocSamples(JDIMENSION rows, JDIMENSION cols) {
+  JDIMENSION i;
+  JSAMPARRAY retval = (JSAMPARRAY) malloc((sizeof(JSAMPROW) * rows) +
+                                          (sizeof(JSAMPLE) * rows * cols));
+  JSAMPROW data = (JSAMPROW) (retval + rows);
+  for(i = 0; i < rows; ++i) {
+    retval[i] = data + (i * cols);
+  }
+  return retval;
+}
+
+JBLOCKARRAY spatialAllocBlocks(JDIMENSION rows, JDIMENSION cols) {
+  JDIMENSION i;
+  JBLOCKARRAY retval = (JBLOCKARRAY) malloc((sizeof(JBLOCKROW) * rows) +
+                                            (sizeof(JBLOCK) * rows * cols));
+  JBLOCKROW data = (JBLOCKROW) (retval + rows);
+  for(i = 0; i < rows; ++i) {
+    retval[i] = data + (i * cols);
+  }
+  return retval;
+}
+
+void spatialDecode(const spatialLayout *layout, JBLOCKARRAY *coefficients,
+                   JSAMPARRAY output) {
+  const int count = layout->num_components;
+  const JDIMENSION width = layout->image_width;
+  JSAMPARRAY planes[3];
+  JSAMPROW scratch;
+  JDIMENSION row, col, block_row, block_col;
+  int c;
+  for(c = 0; c < count; ++c) {
+    const spatialComponent *comp = layout->components + c;
+    JSAMPARRAY samples = spatialAllocSamples(
+        comp->height_in_blocks * DCTSIZE, comp->width_in_blocks * DCTSIZE);
+    for(block_row = 0; block_row < comp->height_in_blocks; ++block_row) {
+      for(block_col = 0; block_col < comp->width_in_blocks; ++block_col) {
+        idctBlock(coefficients[c][block_row][block_col], comp->quantval,
+                  samples, block_row * DCTSIZE, block_col * DCTSIZE);
+      }
+    }
+    scratch = (JSAMPROW) malloc(comp->downsampled_width * 2 + width);
+    planes[c] = spatialAllocSamples(layout->image_height, width);
+    upsample(layout, comp, samples, planes[c], scratch);
+    free(scratch);
+    free(samples);
+  }
+  for(row = 0; row < layout->image_height; ++row) {
+    JSAMPROW out = output[row];
+    if(count == 1) {
+      memcpy(out, planes[0][row], width);
+      continue;
+    }
+    for(col = 0; col < width; ++col) {
+      const int y = planes[0][row][col];
+      const long cb = planes[1][row][col] - CENTERJSAMPLE;
+      const long cr = planes[2][row][col] - CENTERJSAMPLE;
+      if(layout->color_space != JCS_YCbCr) {
+        out[0] = (JSAMPLE) y;
+        out[1] = (JSAMPLE) (cb + CENTERJSAMPLE);
+        out[2] = (JSAMPLE) (cr + CENTERJSAMPLE);
+      } else {
+        out[0] = clampSample(y + ((FIX(1.40200) * cr + ONE_HALF) >>
+                                  SCALEBITS));
+        out[1] = clampSample(y + (((-FIX(0.34414) * cb + ONE_HALF) +
+                                   (-FIX(0.71414) * cr)) >> SCALEBITS));
+        out[2] = clampSample(y + ((FIX(1.77200) * cb + ONE_HALF) >>
+                                  SCALEBITS));
+      }
+      out += 3;
+    }
+  }
+  for(c = 0; c < count; ++c) {
+    free(planes[c]);
+  }
+}
+
+void spatialEncode(const spatialLayout *layout, JSAMPARRAY input,
+                   JBLOCKARRAY *coefficients) {
+  const int count = layout->num_components;
+  const JDIMENSION width = layout->image_width;
+  JSAMPARRAY planes[3];
+  JDIMENSION row, col, block_row, block_col;
+  int c;
+  for(c = 0; c < count; ++c) {
+    planes[c] = spatialAllocSamples(layout->image_height, width);
+  }
+  for(row = 0; row < layout->image_height; ++row) {
+    JSAMPROW in = input[row];
+    if(count == 1) {
+      memcpy(planes[0][row], in, width);
+      continue;
+    }
+    for(col = 0; col < width; ++col) {
+      const long r = in[0], g = in[1], b = in[2];
+      if(layout->color_space != JCS_YCbCr) {
+        planes[0][row][col] = (JSAMPLE) r;
+        planes[1][row][col] = (JSAMPLE) g;
+        planes[2][row][col] = (JSAMPLE) b;
+      } else {
+        planes[0][row][col] = (JSAMPLE)
+          ((FIX(0.29900) * r + FIX(0.58700) * g + FIX(0.11400) * b +
+            ONE_HALF) >> SCALEBITS);
+        planes[1][row][col] = (JSAMPLE)
+          ((-FIX(0.16874) * r - FIX(0.33126) * g + FIX(0.50000) * b +
+            CBCR_OFFSET + ONE_HALF - 1) >> SCALEBITS);
+        planes[2][row][col] = (JSAMPLE)
+          ((FIX(0.50000) * r - FIX(0.41869) * g - FIX(0.08131) * b +
+            CBCR_OFFSET + ONE_HALF - 1) >> SCALEBITS);
+      }
+      in += 3;
+    }
+  }
+  for(c = 0; c < count; ++c) {
+    const spatialComponent *comp = layout->components + c;
+    JSAMPARRAY samples = spatialAllocSamples(
+        comp->height_in_blocks * DCTSIZE, comp->width_in_blocks * DCTSIZE);
+    downsample(layout, comp, planes[c], samples);
+    for(block_row = 0; block_row < comp->height_in_blocks; ++block_row) {
+      for(block_col = 0; block_col < comp->width_in_blocks; ++block_col) {
+        fdctBlock(samples, block_row * DCTSIZE, block_col * DCTSIZE,
+                  comp->quantval, coefficients[c][block_row][block_col]);
+      }
+    }
+    free(samples);
+    free(planes[c]);
+  }
+}
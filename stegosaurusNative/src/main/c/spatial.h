@@ -0,0 +1,164 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Defines functions to carry JPEG images between their DCT coefficients and
+ * their samples in memory, the way libjpeg would, but without ever entropy
+ * coding or decoding anything.
+ * These mirror libjpeg's default choices exactly: the accurate integer DCT,
+ * fancy upsampling on the way out, plain downsampling on the way in, and
+ * the standard colour conversions. Only images whose samples are either
+ * grayscale, YCbCr (read as RGB) or RGB are supported.
+ */
+#ifndef STEGOSAURUS_SPATIAL
+#define STEGOSAURUS_SPATIAL
+#include <stdlib.h>
+#include <stdio.h>
+#include "jpeglib.h"
+
+/**
+ * The layout of a single component of an image.
+ */
+typedef struct {
+  /**
+   * The horizontal sampling factor.
+   */
+  int h_samp_factor;
+  /**
+   * The vertical sampling factor.
+   */
+  int v_samp_factor;
+  /**
+   * The width of the component, in blocks.
+   */
+  JDIMENSION width_in_blocks;
+  /**
+   * The height of the component, in blocks.
+   */
+  JDIMENSION height_in_blocks;
+  /**
+   * The width of the component, in actual samples.
+   */
+  JDIMENSION downsampled_width;
+  /**
+   * The height of the component, in actual samples.
+   */
+  JDIMENSION downsampled_height;
+  /**
+   * The quantization table of the component, in natural order.
+   */
+  const UINT16 *quantval;
+} spatialComponent;
+
+/**
+ * The layout of an image.
+ */
+typedef struct {
+  /**
+   * The width of the image, in pixels.
+   */
+  JDIMENSION image_width;
+  /**
+   * The height of the image, in pixels.
+   */
+  JDIMENSION image_height;
+  /**
+   * The colour space of the coefficients. The samples are in the same one,
+   * except for YCbCr, whose samples are in RGB.
+   */
+  J_COLOR_SPACE color_space;
+  /**
+   * The number of components.
+   */
+  int num_components;
+  /**
+   * The largest horizontal sampling factor of any component.
+   */
+  int max_h_samp_factor;
+  /**
+   * The largest vertical sampling factor of any component.
+   */
+  int max_v_samp_factor;
+  /**
+   * The components, num_components of them.
+   */
+  spatialComponent *components;
+} spatialLayout;
+
+/**
+ * Find out whether images with the layout given may be handled by these
+ * functions at all.
+ * @param layout the layout.
+ * @return non-zero if they may.
+ */
+int spatialSupported(const spatialLayout *layout);
+
+/**
+ * Work out the layout of a piece of an image, starting at the offsets given
+ * and reaching to its bottom right corner, the way libjpeg would if it were
+ * compressed with the same parameters as the image itself.
+ * @param src the layout of the image.
+ * @param x_off the horizontal offset of the piece.
+ * @param y_off the vertical offset of the piece.
+ * @param dst output parameter; the layout of the piece. Its components are
+ *    written into whatever array it already points to.
+ */
+void spatialCropLayout(const spatialLayout *src, int x_off, int y_off,
+                       spatialLayout *dst);
+
+/**
+ * Allocate an array of samples, with its rows in one with it, so that the
+ * whole of it may be released with a single call to free().
+ * @param rows the number of rows.
+ * @param cols the number of samples in every row.
+ * @return the array.
+ */
+JSAMPARRAY spatialAllocSamples(JDIMENSION rows, JDIMENSION cols);
+
+/**
+ * Allocate an array of blocks, with its rows in one with it, so that the
+ * whole of it may be released with a single call to free().
+ * @param rows the number of rows.
+ * @param cols the number of blocks in every row.
+ * @return the array.
+ */
+JBLOCKARRAY spatialAllocBlocks(JDIMENSION rows, JDIMENSION cols);
+
+/**
+ * Decode the coefficients given into samples, the way libjpeg's
+ * jpeg_read_scanlines would.
+ * @param layout the layout of the image.
+ * @param coefficients the coefficients of every component.
+ * @param output the rows to write the samples into, interleaved; there must
+ *    be image_height of them, each image_width * num_components long.
+ */
+void spatialDecode(const spatialLayout *layout, JBLOCKARRAY *coefficients,
+                   JSAMPARRAY output);
+
+/**
+ * Encode the samples given into quantized coefficients, the way libjpeg's
+ * jpeg_write_scanlines would.
+ * @param layout the layout of the image.
+ * @param input the rows of interleaved samples; image_height of them, each
+ *    at least image_width * num_components long.
+ * @param coefficients the coefficients of every component, to write into;
+ *    each must be height_in_blocks by width_in_blocks.
+ */
+void spatialEncode(const spatialLayout *layout, JSAMPARRAY input,
+                   JBLOCKARRAY *coefficients);
+
+#endif /* STEGOSAURUS_SPATIAL */
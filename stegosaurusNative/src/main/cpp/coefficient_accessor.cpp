@@ -8,50 +8,140 @@ CoefficientAccessor::CoefficientAccessor(JPEGComponent **componentArray,
     : components(NULL),
       totalComponents(total),
       length(-1),
-      usables(NULL) {
+      usables(NULL),
+      usableCount(-1),
+      offsets(NULL),
+      blocks(NULL) {
   components = new JPEGComponent*[total];
   memcpy(components, componentArray, sizeof(JPEGComponent *) * total);
 }
 
 CoefficientAccessor::~CoefficientAccessor(void) {
+  deleteIndex();
   delete [] components;
   if(usables) {
     free(usables);
   }
 }
 
-JPEGComponent* CoefficientAccessor::findComponent(unsigned int *index) {
-  unsigned int c = 0;
-  JPEGComponent *comp = components[0];
-  while((c < totalComponents) &&
-        (*index) >= comp->getTotalNumberOfCoefficients()) {
-    (*index) -= comp->getTotalNumberOfCoefficients();
-    c++;
-    comp = components[c];
+void CoefficientAccessor::buildIndex(void) {
+  unsigned int c, row, col;
+  offsets = new unsigned int[totalComponents + 1];
+  blocks = new JCOEF**[totalComponents];
+  offsets[0] = 0;
+  for(c = 0; c < totalComponents; ++c) {
+    JPEGComponent *comp = components[c];
+    JBLOCKARRAY coefs = comp->getCoefficients();
+    const unsigned int width = comp->getWidthInBlocks();
+    const unsigned int height = comp->getHeightInBlocks();
+    /* The block size is fixed by the standard, which is what lets us turn
+     * an index into a block and an offset without knowing the component. */
+    assert(comp->getBlockSize() == DCTSIZE2);
+    offsets[c + 1] = offsets[c] + comp->getTotalNumberOfCoefficients();
+    blocks[c] = new JCOEF*[width * height];
+    for(row = 0; row < height; ++row) {
+      for(col = 0; col < width; ++col) {
+        blocks[c][row * width + col] = coefs[row][col];
+      }
+    }
   }
-  return comp;
 }
 
-JCOEF* CoefficientAccessor::getInComponent(unsigned int index,
-                                           JPEGComponent *comp) {
-  int row, row_local, col, coef_index;
-  const int block_size = comp->getBlockSize();
-  const int width = comp->getWidthInBlocks();
-  row_local = index % (width * block_size);
-  row = index / (width * block_size);
-  col = row_local / block_size;
-  coef_index = row_local % block_size;
-  return &(comp->getCoefficients()[row][col][coef_index]);
+void CoefficientAccessor::deleteIndex(void) {
+  unsigned int c;
+  if(blocks != NULL) {
+    for(c = 0; c < totalComponents; ++c) {
+      delete [] blocks[c];
+    }
+    delete [] blocks;
+    blocks = NULL;
+  }
+  if(offsets != NULL) {
+    delete [] offsets;
+    offsets = NULL;
+  }
+}
+
+void CoefficientAccessor::forceReloadOnNextAccess(void) {
+  deleteIndex();
 }
 
 JCOEF CoefficientAccessor::getCoefficient(unsigned int index) {
-  JPEGComponent *comp = findComponent(&index);
-  return *(getInComponent(index, comp));
+  return *(locate(index));
 }
 
 void CoefficientAccessor::setCoefficient(unsigned int index, JCOEF value) {
-  JPEGComponent *comp = findComponent(&index);
-  *(getInComponent(index, comp)) = value;
+  *(locate(index)) = value;
+}
+
+/**
+ * Clamp a count so that it fits in an array of the length given.
+ * @param count the count.
+ * @param len the length of the array.
+ * @return the clamped count.
+ */
+static inline int clampCount(int count, int len) {
+  return (count > len ? len : count);
+}
+
+/**
+ * Ensure that the first count indices given all fall within [0, bound),
+ * so that nothing is touched unless every index is good.
+ * @param indices the indices to check.
+ * @param count how many of them to check.
+ * @param bound the exclusive upper bound on the indices.
+ * @throws std::out_of_range if any index is out of range.
+ */
+static void checkIndices(const int *indices, int count, unsigned int bound) {
+  int i;
+  for(i = 0; i < count; ++i) {
+    if(indices[i] < 0 || ((unsigned int) indices[i]) >= bound) {
+      throw std::out_of_range("Coefficient index out of range");
+    }
+  }
+}
+
+int CoefficientAccessor::getCoefficients(const int *indices, int indices_len,
+                                         JCOEF *values, int values_len,
+                                         int count) {
+  int i;
+  count = clampCount(clampCount(count, indices_len), values_len);
+  checkIndices(indices, count, getLength());
+  for(i = 0; i < count; ++i) {
+    values[i] = getCoefficient(indices[i]);
+  }
+  return count;
+}
+
+int CoefficientAccessor::setCoefficients(const int *indices, int indices_len,
+                                         const JCOEF *values, int values_len,
+                                         int count) {
+  int i;
+  count = clampCount(clampCount(count, indices_len), values_len);
+  checkIndices(indices, count, getLength());
+  for(i = 0; i < count; ++i) {
+    setCoefficient(indices[i], values[i]);
+  }
+  return count;
+}
+
+int CoefficientAccessor::gatherUsableCoefficients(const int *positions,
+                                                  int positions_len,
+                                                  int *indices,
+                                                  int indices_len,
+                                                  JCOEF *values,
+                                                  int values_len,
+                                                  int count) {
+  int i;
+  const int *u = getUsableCoefficients();
+  count = clampCount(clampCount(clampCount(count, positions_len),
+                                indices_len), values_len);
+  checkIndices(positions, count, getUsableCoefficientCount());
+  for(i = 0; i < count; ++i) {
+    indices[i] = u[positions[i]];
+    values[i] = getCoefficient(indices[i]);
+  }
+  return count;
 }
 
 unsigned int CoefficientAccessor::getLength(void) {
@@ -67,27 +157,31 @@ unsigned int CoefficientAccessor::getLength(void) {
 }
 
 bool CoefficientAccessor::isDC(unsigned int index) {
-  int size;
-  JPEGComponent *comp = findComponent(&index);
-  size = comp->getBlockSize();
-  return ((index % size) == 0);
+  findComponent(&index);
+  return ((index % DCTSIZE2) == 0);
 }
 
 int* CoefficientAccessor::getUsableCoefficients(void) {
   if(usables) {
     return usables;
   }
-  usables = (int *) malloc(sizeof(int) * getLength());
-  int i;
+  unsigned int c, local, i;
   int j = 0;
-  /* length has been set for sure now, since we just called getLength() */
-  for(i = 0; i < length; ++i) {
-    /* We get a new variable, so as to not mess with i */
-    unsigned int index = i;
-    JPEGComponent *comp = findComponent(&index);
-    if((index % comp->getBlockSize()) && (*getInComponent(index, comp))) {
-      usables[j] = i;
-      ++j;
+  usables = (int *) malloc(sizeof(int) * getLength());
+  if(offsets == NULL) {
+    buildIndex();
+  }
+  for(c = 0; c < totalComponents; ++c) {
+    const unsigned int total = offsets[c + 1] - offsets[c];
+    /* Go block by block, skipping the DC coefficient in each one */
+    for(local = 0; local < total; local += DCTSIZE2) {
+      const JCOEF *block = blocks[c][local / DCTSIZE2];
+      for(i = 1; i < DCTSIZE2 && local + i < total; ++i) {
+        if(block[i]) {
+          usables[j] = offsets[c] + local + i;
+          ++j;
+        }
+      }
     }
   }
   usables = (int *) realloc(usables, sizeof(int) * j);
@@ -97,12 +191,39 @@ int* CoefficientAccessor::getUsableCoefficients(void) {
 
 int CoefficientAccessor::getUsableCoefficientCount(void) {
   /* Ensure we've actually loaded the count. */
-  if(!usables) {
-    getUsableCoefficients();
+  if(usableCount < 0) {
+    usableCount = countUsableCoefficients();
   }
   return usableCount;
 }
 
+int CoefficientAccessor::countUsableCoefficients(void) {
+  unsigned int c, row, i;
+  int count = 0;
+  for(c = 0; c < totalComponents; ++c) {
+    JPEGComponent *comp = components[c];
+    JBLOCKARRAY coefs = comp->getCoefficients();
+    const unsigned int block_size = comp->getBlockSize();
+    const unsigned int row_len = comp->getWidthInBlocks() * block_size;
+    const unsigned int total = comp->getTotalNumberOfCoefficients();
+    /* The blocks in a row are contiguous, so every row may be walked as
+     * one long array of coefficients. */
+    for(row = 0; row * row_len < total; ++row) {
+      const JCOEF *start = coefs[row][0];
+      unsigned int n = total - row * row_len;
+      if(n > row_len) {
+        n = row_len;
+      }
+      for(i = 0; i < n; ++i) {
+        if((i % block_size) && start[i]) {
+          ++count;
+        }
+      }
+    }
+  }
+  return count;
+}
+
 void CoefficientAccessor::cannibalizeUsables(CoefficientAccessor *other) {
   usableCount = other->getUsableCoefficientCount();
   usables = (int *) malloc(sizeof(int) * usableCount);
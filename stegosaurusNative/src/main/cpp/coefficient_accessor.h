@@ -19,6 +19,7 @@
 #define STEGOSAURUS_COEFFICIENT_ACCESSOR
 #include <stdio.h>
 #include <stdlib.h>
+#include <stdexcept>
 #include "jpeglib.h"
 #include "jpeg_component.h"
 
@@ -56,6 +57,56 @@ class CoefficientAccessor {
    */
   void setCoefficient(unsigned int index, JCOEF value);
 
+  /**
+   * Gather the coefficients at the indices given into the values array, so
+   * that values[i] becomes the coefficient at indices[i].
+   * @param indices the indices of the coefficients to get.
+   * @param indices_len the length of the indices array.
+   * @param values the array to place the coefficients into.
+   * @param values_len the length of the values array.
+   * @param count how many coefficients to get.
+   * @return the number of coefficients gathered; less than count only if
+   *    either array is too short.
+   * @throws std::out_of_range if any index is outside [0, getLength()), in
+   *    which case nothing is gathered.
+   */
+  int getCoefficients(const int *indices, int indices_len,
+                      JCOEF *values, int values_len, int count);
+  /**
+   * Scatter the values given over the coefficients at the indices given, so
+   * that the coefficient at indices[i] becomes values[i].
+   * @param indices the indices of the coefficients to set.
+   * @param indices_len the length of the indices array.
+   * @param values the values to set.
+   * @param values_len the length of the values array.
+   * @param count how many coefficients to set.
+   * @return the number of coefficients set; less than count only if either
+   *    array is too short.
+   * @throws std::out_of_range if any index is outside [0, getLength()), in
+   *    which case nothing is set.
+   */
+  int setCoefficients(const int *indices, int indices_len,
+                      const JCOEF *values, int values_len, int count);
+  /**
+   * Gather a number of usable coefficients, given their positions in the
+   * array returned by getUsableCoefficients: the true index of the
+   * coefficient at positions[i] is placed into indices[i], and the
+   * coefficient itself into values[i].
+   * @param positions the positions of the usable coefficients to get.
+   * @param positions_len the length of the positions array.
+   * @param indices the array to place the true indices into.
+   * @param indices_len the length of the indices array.
+   * @param values the array to place the coefficients into.
+   * @param values_len the length of the values array.
+   * @param count how many coefficients to get.
+   * @return the number of coefficients gathered; less than count only if
+   *    any of the arrays is too short.
+   * @throws std::out_of_range if any position is outside
+   *    [0, getUsableCoefficientCount()), in which case nothing is gathered.
+   */
+  int gatherUsableCoefficients(const int *positions, int positions_len,
+                               int *indices, int indices_len,
+                               JCOEF *values, int values_len, int count);
   /**
    * Get the length, being the total number of coefficients that may be
    * accessed.
@@ -82,6 +133,8 @@ class CoefficientAccessor {
 
   /**
    * Get the number of usable coefficients.
+   * If the usable coefficients haven't been requested yet, they're simply
+   * counted, block by block, rather than gathered into an array.
    * @return the number of usable coefficients this accessor contains.
    * @see getUsableCoefficients
    */
@@ -96,6 +149,13 @@ class CoefficientAccessor {
    */
   void cannibalizeUsables(CoefficientAccessor *other);
 
+  /**
+   * Forget about any pointers to the coefficients held by this accessor,
+   * so that the next access goes back to the components for them. Must be
+   * invoked whenever the components' coefficients are reloaded.
+   */
+  void forceReloadOnNextAccess(void);
+
  private:
   /**
    * The array of components that can be used by this accessor.
@@ -119,28 +179,69 @@ class CoefficientAccessor {
   int *usables;
 
   /**
-   * The number of usable coefficients we have on hand.
+   * The number of usable coefficients we have on hand; -1 if they haven't
+   * been counted yet.
    */
   int usableCount;
 
+  /**
+   * The index of the first coefficient of every component, followed by the
+   * length of the accessor; NULL until the index is built.
+   */
+  unsigned int *offsets;
+
+  /**
+   * For every component, a pointer to each of its blocks, in the order in
+   * which their coefficients are indexed; NULL until the index is built.
+   */
+  JCOEF ***blocks;
+
+  /**
+   * Build the index (the offsets and the block tables) that maps every
+   * coefficient index straight to the coefficient.
+   */
+  void buildIndex(void);
+
+  /**
+   * Delete the index, if it has been built.
+   */
+  void deleteIndex(void);
+
   /**
    * Find the component where a given index belongs; alter the index to
    * be the index within that component.
    * @param index pointer to the index; at the end will point to the index
    *    within the component.
-   * @return the component.
+   * @return the position of the component in the components array.
+   */
+  unsigned int findComponent(unsigned int *index) {
+    unsigned int c = 0;
+    if(offsets == NULL) {
+      buildIndex();
+    }
+    while(c + 1 < totalComponents && (*index) >= offsets[c + 1]) {
+      ++c;
+    }
+    (*index) -= offsets[c];
+    return c;
+  }
+
+  /**
+   * Get a pointer to the coefficient corresponding to the index given.
+   * @param index the index
+   * @return a pointer to the coefficient.
    */
-  JPEGComponent *findComponent(unsigned int *index);
+  JCOEF *locate(unsigned int index) {
+    unsigned int c = findComponent(&index);
+    return blocks[c][index / DCTSIZE2] + (index % DCTSIZE2);
+  }
 
   /**
-   * Get a pointer to the coefficient corresponding to the index given, within
-   * the component given.
-   * The index should be local to the component.
-   * @param index the index
-   * @param comp a pointer to the component.
-   * @return a pointer to the coefficient.
+   * Count the usable coefficients, walking each component's coefficients
+   * row by row, without building the usables array.
+   * @return the number of usable coefficients.
    */
-  JCOEF *getInComponent(unsigned int index, JPEGComponent *comp);
+  int countUsableCoefficients(void);
 };
 
 #endif
@@ -0,0 +1,253 @@
+#include "incremental_blockiness.h"
+#include <math.h>
+#include <map>
+#include <utility>
+#include <vector>
+
+/* Where, within a block's edge samples, every edge starts */
+#define TOP_EDGE 0
+#define BOTTOM_EDGE DCTSIZE
+#define LEFT_EDGE (2 * DCTSIZE)
+#define RIGHT_EDGE (3 * DCTSIZE)
+
+/* The samples are level shifted by this much, and kept within 0 and twice
+ * this much, as libjpeg does. */
+#define CENTER 128.0f
+
+IncrementalBlockiness::IncrementalBlockiness(JPEGImage *image)
+    : planes(NULL),
+      plane_count(image->getComponentCount()),
+      blockiness(0) {
+  int c, k, s;
+  unsigned int offset = 0, block;
+  buildBasis();
+  planes = new Plane[plane_count];
+  for(c = 0; c < plane_count; ++c) {
+    Plane *plane = planes + c;
+    JPEGComponent *comp = image->getComponent(c);
+    JBLOCKARRAY coefs = comp->getCoefficients();
+    const JQUANT_TBL *table = image->getQuantTable(c);
+    plane->offset = offset;
+    plane->length = comp->getTotalNumberOfCoefficients();
+    plane->width = comp->getWidthInBlocks();
+    plane->height = comp->getHeightInBlocks();
+    offset += plane->length;
+    for(k = 0; k < DCTSIZE2; ++k) {
+      plane->quant[k] = table->quantval[k];
+    }
+    plane->edges = new float[plane->width * plane->height * EDGE_SAMPLES];
+    for(block = 0; block < plane->width * plane->height; ++block) {
+      const JCOEF *coef = coefs[block / plane->width][block % plane->width];
+      float *edges = plane->edges + (block * EDGE_SAMPLES);
+      for(s = 0; s < EDGE_SAMPLES; ++s) {
+        edges[s] = CENTER;
+      }
+      for(k = 0; k < DCTSIZE2; ++k) {
+        if(coef[k]) {
+          const float value = coef[k] * plane->quant[k];
+          for(s = 0; s < EDGE_SAMPLES; ++s) {
+            edges[s] += value * basis[k][s];
+          }
+        }
+      }
+    }
+  }
+  for(c = 0; c < plane_count; ++c) {
+    for(block = 0; block < planes[c].width * planes[c].height; ++block) {
+      blockiness += lowerRightCost(planes + c, block);
+    }
+  }
+}
+
+IncrementalBlockiness::~IncrementalBlockiness(void) {
+  int c;
+  for(c = 0; c < plane_count; ++c) {
+    delete [] planes[c].edges;
+  }
+  delete [] planes;
+}
+
+void IncrementalBlockiness::buildBasis(void) {
+  int k, s;
+  const double pi = 3.14159265358979323846;
+  for(k = 0; k < DCTSIZE2; ++k) {
+    const int u = k % DCTSIZE;
+    const int v = k / DCTSIZE;
+    const double cu = u ? 1.0 : 1.0 / sqrt(2.0);
+    const double cv = v ? 1.0 : 1.0 / sqrt(2.0);
+    for(s = 0; s < EDGE_SAMPLES; ++s) {
+      int x, y;
+      const int i = s % DCTSIZE;
+      switch(s / DCTSIZE) {
+        case 0:
+          x = i;
+          y = 0;
+          break;
+        case 1:
+          x = i;
+          y = DCTSIZE - 1;
+          break;
+        case 2:
+          x = 0;
+          y = i;
+          break;
+        default:
+          x = DCTSIZE - 1;
+          y = i;
+      }
+      basis[k][s] = (float) (0.25 * cu * cv *
+                             cos((2 * x + 1) * u * pi / 16) *
+                             cos((2 * y + 1) * v * pi / 16));
+    }
+  }
+}
+
+/**
+ * Clamp a sample into the range of values a decoded sample may take.
+ * @param sample the sample.
+ * @return the clamped sample.
+ */
+static inline float clampSample(float sample) {
+  if(sample < 0) {
+    return 0;
+  }
+  if(sample > 2 * CENTER - 1) {
+    return 2 * CENTER - 1;
+  }
+  return sample;
+}
+
+double IncrementalBlockiness::edgeCost(const float *first,
+                                       const float *second) {
+  int i;
+  double retval = 0;
+  for(i = 0; i < DCTSIZE; ++i) {
+    retval += fabs(clampSample(first[i]) - clampSample(second[i]));
+  }
+  return retval;
+}
+
+double IncrementalBlockiness::lowerRightCost(const Plane *plane,
+                                             unsigned int block) const {
+  double retval = 0;
+  const float *edges = plane->edges + (block * EDGE_SAMPLES);
+  if((block % plane->width) + 1 < plane->width) {
+    retval += edgeCost(edges + RIGHT_EDGE,
+                       edges + EDGE_SAMPLES + LEFT_EDGE);
+  }
+  if((block / plane->width) + 1 < plane->height) {
+    retval += edgeCost(edges + BOTTOM_EDGE,
+                       edges + (plane->width * EDGE_SAMPLES) + TOP_EDGE);
+  }
+  return retval;
+}
+
+double IncrementalBlockiness::getBlockiness(void) const {
+  return blockiness;
+}
+
+double IncrementalBlockiness::getBlockinessWithChanges(const int *indices,
+                                                       int indices_len,
+                                                       const int *deltas,
+                                                       int deltas_len,
+                                                       int count) const {
+  typedef std::pair<int, unsigned int> BlockKey;
+  typedef std::map<BlockKey, float *> ChangedBlocks;
+  int i, c, s;
+  double retval = blockiness;
+  ChangedBlocks changed;
+  std::vector<float> storage;
+  if(count > indices_len) {
+    count = indices_len;
+  }
+  if(count > deltas_len) {
+    count = deltas_len;
+  }
+  if(count <= 0) {
+    return retval;
+  }
+  /* Reserved up front, so that pointers into it stay good */
+  storage.reserve(count * EDGE_SAMPLES);
+  for(i = 0; i < count; ++i) {
+    unsigned int index = indices[i];
+    for(c = 0; c < plane_count && index >= planes[c].offset + planes[c].length;
+        ++c);
+    if(c == plane_count || !deltas[i]) {
+      continue;
+    }
+    const Plane *plane = planes + c;
+    index -= plane->offset;
+    const unsigned int block = index / DCTSIZE2;
+    const int k = index % DCTSIZE2;
+    if(block >= plane->width * plane->height) {
+      continue;
+    }
+    BlockKey key(c, block);
+    ChangedBlocks::iterator it = changed.find(key);
+    float *edges;
+    if(it == changed.end()) {
+      const float *original = plane->edges + (block * EDGE_SAMPLES);
+      storage.insert(storage.end(), original, original + EDGE_SAMPLES);
+      edges = &storage[storage.size() - EDGE_SAMPLES];
+      changed[key] = edges;
+    } else {
+      edges = it->second;
+    }
+    const float value = deltas[i] * plane->quant[k];
+    for(s = 0; s < EDGE_SAMPLES; ++s) {
+      edges[s] += value * basis[k][s];
+    }
+  }
+  /* Go over every boundary of every changed block, swapping its old cost
+   * out for its new one. Boundaries between two changed blocks are only
+   * handled by the later of the two. */
+  for(ChangedBlocks::iterator it = changed.begin(); it != changed.end();
+      ++it) {
+    const Plane *plane = planes + it->first.first;
+    const unsigned int block = it->first.second;
+    const unsigned int col = block % plane->width;
+    const unsigned int row = block / plane->width;
+    const float *before = plane->edges + (block * EDGE_SAMPLES);
+    const float *after = it->second;
+    /* Each neighbour: its block index, the edge of ours facing it, and the
+     * edge of its own facing us */
+    unsigned int neighbours[4];
+    int ours[4], theirs[4];
+    int n = 0;
+    if(row > 0) {
+      neighbours[n] = block - plane->width;
+      ours[n] = TOP_EDGE;
+      theirs[n++] = BOTTOM_EDGE;
+    }
+    if(row + 1 < plane->height) {
+      neighbours[n] = block + plane->width;
+      ours[n] = BOTTOM_EDGE;
+      theirs[n++] = TOP_EDGE;
+    }
+    if(col > 0) {
+      neighbours[n] = block - 1;
+      ours[n] = LEFT_EDGE;
+      theirs[n++] = RIGHT_EDGE;
+    }
+    if(col + 1 < plane->width) {
+      neighbours[n] = block + 1;
+      ours[n] = RIGHT_EDGE;
+      theirs[n++] = LEFT_EDGE;
+    }
+    for(i = 0; i < n; ++i) {
+      const float *other = plane->edges + (neighbours[i] * EDGE_SAMPLES);
+      const float *other_after = other;
+      ChangedBlocks::const_iterator mate =
+        changed.find(BlockKey(it->first.first, neighbours[i]));
+      if(mate != changed.end()) {
+        if(neighbours[i] > block) {
+          continue;
+        }
+        other_after = mate->second;
+      }
+      retval -= edgeCost(before + ours[i], other + theirs[i]);
+      retval += edgeCost(after + ours[i], other_after + theirs[i]);
+    }
+  }
+  return retval;
+}
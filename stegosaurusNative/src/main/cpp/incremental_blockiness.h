@@ -0,0 +1,165 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * incremental_blockiness.h: Specifies a class that works out the blockiness
+ * of an image with a few of its coefficients changed, without decoding it.
+ */
+#ifndef STEGOSAURUS_INCREMENTAL_BLOCKINESS
+#define STEGOSAURUS_INCREMENTAL_BLOCKINESS
+#include <stdlib.h>
+#include <stdio.h>
+#include "jpeglib.h"
+#include "jpeg_image.h"
+
+/**
+ * Works out the spatial blockiness of an image, and of the same image with
+ * some of its DCT coefficients changed, straight from the coefficients.
+ * <p>The blockiness measured here is that of every component on its own,
+ * at its own (possibly downsampled) resolution: the sum, over every pair
+ * of neighbouring blocks, of the absolute differences between the samples
+ * on either side of the boundary between them.</p>
+ * <p>Only the samples along the edges of every block are ever needed, so
+ * those are all that is kept: they are worked out once, on construction,
+ * with a floating point IDCT. Any change to a coefficient changes the edges
+ * of its own block by a multiple of the coefficient's basis function, so
+ * the blockiness with a set of changes applied is worked out by going over
+ * the changed blocks and their neighbours only.</p>
+ * <p>The object holds a copy of everything it needs, so the image may be
+ * changed, or deleted, once it is built. It is never modified after it is
+ * built, so it may be used from several threads at once.</p>
+ */
+class IncrementalBlockiness {
+ public:
+  /**
+   * Construct an object to work out the blockiness of the image given.
+   * @param image the image.
+   */
+  IncrementalBlockiness(JPEGImage *image);
+
+  /**
+   * Destructor.
+   */
+  virtual ~IncrementalBlockiness(void);
+
+  /**
+   * Get the blockiness of the image, as it was when this object was built.
+   * @return the blockiness.
+   */
+  double getBlockiness(void) const;
+
+  /**
+   * Get the blockiness the image would have if the coefficients at the
+   * indices given (as understood by the image's CoefficientAccessor) were
+   * changed by the deltas given, so that the coefficient at indices[i]
+   * changes by deltas[i]. Nothing is actually changed.
+   * Indices out of range are ignored.
+   * @param indices the indices of the coefficients to change.
+   * @param indices_len the length of the indices array.
+   * @param deltas the changes to the coefficients.
+   * @param deltas_len the length of the deltas array.
+   * @param count the number of changes.
+   * @return the blockiness with the changes applied.
+   */
+  double getBlockinessWithChanges(const int *indices, int indices_len,
+                                  const int *deltas, int deltas_len,
+                                  int count) const;
+
+ private:
+  /**
+   * The number of samples kept for every block: its top row, bottom row,
+   * left column and right column, in that order.
+   */
+  static const int EDGE_SAMPLES = 4 * DCTSIZE;
+
+  /**
+   * A single component of the image.
+   */
+  struct Plane {
+    /**
+     * The index of the first coefficient of the component.
+     */
+    unsigned int offset;
+    /**
+     * The number of coefficients in the component.
+     */
+    unsigned int length;
+    /**
+     * The width of the component, in blocks.
+     */
+    unsigned int width;
+    /**
+     * The height of the component, in blocks.
+     */
+    unsigned int height;
+    /**
+     * The quantization table of the component, in natural order.
+     */
+    float quant[DCTSIZE2];
+    /**
+     * The edge samples of every block, EDGE_SAMPLES to a block, the blocks
+     * in row major order.
+     */
+    float *edges;
+  };
+
+  /**
+   * The components.
+   */
+  Plane *planes;
+
+  /**
+   * The number of components.
+   */
+  int plane_count;
+
+  /**
+   * The blockiness of the image as built.
+   */
+  double blockiness;
+
+  /**
+   * The contribution of a coefficient of unit value to every edge sample
+   * of its block: basis[k][s] is that of the kth coefficient, in natural
+   * order, to the sth edge sample.
+   */
+  float basis[DCTSIZE2][EDGE_SAMPLES];
+
+  /**
+   * Work out the basis table.
+   */
+  void buildBasis(void);
+
+  /**
+   * Work out the blockiness across the boundary between the edges given.
+   * @param first the first edge's samples.
+   * @param second the second edge's samples.
+   * @return the blockiness across the boundary.
+   */
+  static double edgeCost(const float *first, const float *second);
+
+  /**
+   * Work out the blockiness across the boundaries between a block and its
+   * neighbours below and to the right.
+   * @param plane the component of the block.
+   * @param block the index of the block in the component.
+   * @return the blockiness across those boundaries.
+   */
+  double lowerRightCost(const Plane *plane, unsigned int block) const;
+};
+
+#endif
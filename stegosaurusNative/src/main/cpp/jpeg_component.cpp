@@ -39,6 +39,17 @@ JBLOCKARRAY JPEGComponent::getCoefficients(void) {
   return coefficients;
 }
 
+CoefficientRow JPEGComponent::getCoefficientRow(unsigned int row) {
+  CoefficientRow retval;
+  retval.data = NULL;
+  retval.length = 0;
+  if(row < height_in_blocks) {
+    retval.data = getCoefficients()[row][0];
+    retval.length = width_in_blocks * block_size;
+  }
+  return retval;
+}
+
 void JPEGComponent::forceCoefReloadOnNextAccess(void) {
   coefficients = NULL;
 }
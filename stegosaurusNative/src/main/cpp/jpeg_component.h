@@ -27,6 +27,22 @@
 
 class JPEGCoefficientsProvider;
 
+/**
+ * A single row of blocks of DCT coefficients. The blocks in a row are laid
+ * out one after the other, so the row may be treated as a plain array.
+ */
+struct CoefficientRow {
+  /**
+   * The first coefficient in the row; NULL if there is no such row.
+   */
+  JCOEF *data;
+
+  /**
+   * The number of coefficients in the row.
+   */
+  int length;
+};
+
 /**
  * Represents a component inside a jpeg image. Permits gathering information
  * about said component, as well as acquiring the actual DCT coefficients.
@@ -63,6 +79,16 @@ class JPEGComponent {
    * @return the coefficients.
    */
   JBLOCKARRAY getCoefficients(void);
+
+  /**
+   * Get a row of blocks of DCT coefficients for this component. If needed,
+   * the coefficients will be acquired from the coefficient provider.
+   * The row remains valid only as long as the coefficients do; that is, until
+   * the image they belong to is reset or destroyed.
+   * @param row the index of the row, in blocks.
+   * @return the row; its data is NULL if the index is out of bounds.
+   */
+  CoefficientRow getCoefficientRow(unsigned int row);
   /**
    * Get the width in blocks of this component.
    * @return the width in blocks.
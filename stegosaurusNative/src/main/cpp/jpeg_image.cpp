@@ -3,6 +3,8 @@
 #include "../c/src_mgr.h"
 #include "../c/crop.h"
 #include "../c/blockiness.h"
+#include "../c/spatial.h"
+#include "../c/frame_blockiness.h"
 #include "stegosaurus_error_manager.h"
 #include <string.h>
 #include <assert.h>
@@ -13,6 +15,7 @@ JPEGImage::JPEGImage(JOCTET *i, long imglen)
       comp(NULL),
       image(i),
       len(imglen),
+      owns_image(true),
       coeffs(NULL),
       accessor(NULL),
       headers_read(true) {
@@ -26,10 +29,25 @@ JPEGImage::JPEGImage(JOCTET *i, long imglen)
   coefficients = new JBLOCKARRAY[component_count]();
 }
 
+JPEGImage *JPEGImage::fromBuffer(const JOCTET *buffer, long buflen) {
+  JOCTET *copy = (JOCTET *) malloc(buflen);
+  memcpy(copy, buffer, buflen);
+  return new JPEGImage(copy, buflen);
+}
+
+JPEGImage *JPEGImage::wrapBuffer(const JOCTET *buffer, long buflen) {
+  /* We never write into the image data, so the cast is safe enough */
+  JPEGImage *retval = new JPEGImage((JOCTET *) buffer, buflen);
+  retval->owns_image = false;
+  return retval;
+}
+
 /* TODO: Holy cow this method is long and ugly. */
 JPEGImage::~JPEGImage() {
   int i;
-  free(this->image);
+  if(owns_image) {
+    free(this->image);
+  }
   if(accessor != NULL) {
     delete accessor;
   }
@@ -83,7 +101,20 @@ JBLOCKARRAY JPEGImage::getCoefficients(int component_index) {
   return retval;
 }
 
+const JQUANT_TBL *JPEGImage::getQuantTable(int component_index) {
+  /* The tables are only latched once the coefficients are read */
+  readCoefficients();
+  return decomp->comp_info[component_index].quant_table;
+}
+
 JPEGImage* JPEGImage::writeNew() throw(JPEGLibException) {
+  JPEGImage *r = copyCoefficients();
+  reset();
+  r->getCoefficientAccessor()->cannibalizeUsables(getCoefficientAccessor());
+  return r;
+}
+
+JPEGImage* JPEGImage::copyCoefficients() throw(JPEGLibException) {
   readCoefficients();
   JOCTET *output = NULL;
   long outlen = len;
@@ -92,10 +123,7 @@ JPEGImage* JPEGImage::writeNew() throw(JPEGLibException) {
   comp->in_color_space = decomp->out_color_space;
   jpeg_write_coefficients(comp, coeffs);
   jpeg_finish_compress(comp);
-  reset();
-  JPEGImage *r = new JPEGImage(output, outlen);
-  r->getCoefficientAccessor()->cannibalizeUsables(getCoefficientAccessor());
-  return r;
+  return new JPEGImage(output, outlen);
 }
 
 JPEGComponent* JPEGImage::getComponent(int index) {
@@ -113,6 +141,14 @@ JOCTET* JPEGImage::getData(void) {
   return this->image;
 }
 
+long JPEGImage::copyDataTo(JOCTET *buffer, long buflen) {
+  if(buflen < len) {
+    return -1;
+  }
+  memcpy(buffer, image, len);
+  return len;
+}
+
 CoefficientAccessor* JPEGImage::getCoefficientAccessor(void) {
   if(accessor == NULL) {
     int i;
@@ -146,6 +182,9 @@ void JPEGImage::reset(void) {
         components[i]->forceCoefReloadOnNextAccess();
       }
     }
+    if(accessor != NULL) {
+      accessor->forceReloadOnNextAccess();
+    }
     jpeg_finish_decompress(decomp);
     jpeg_read_header(decomp, 1);
   } else if(!headers_read) {
@@ -224,7 +263,8 @@ static int processRowsUnsafe(int components, int stride, JSAMPARRAY buffer,
 
 /**
  * Use the component count given to choose appropriate blockiness
- * calculation functions.
+ * calculation functions: the vectorized kernels for 1 and 3 components, if
+ * the CPU supports them, and the scalar ones otherwise.
  * @param comp_count the number of components in the image.
  * @param safe output parameter; the safe function to use.
  * @param unsafe output parameter; the unsafe function to use.
@@ -232,14 +272,31 @@ static int processRowsUnsafe(int components, int stride, JSAMPARRAY buffer,
  */
 static void chooseBlockinessCalc(int comp_count, blockinessCalcSafe *safe,
                                  blockinessCalcUnsafe *unsafe) {
+  const blockinessSimd simd = blockinessSimdSupport();
   switch(comp_count) {
     case 3:
-      *safe = &blockinessForRows3Comp;
-      *unsafe = &blockinessForRows3CompUnsafe;
+      if(simd == BLOCKINESS_AVX2) {
+        *safe = &blockinessForRows3CompAVX2;
+        *unsafe = &blockinessForRows3CompUnsafeAVX2;
+      } else if(simd == BLOCKINESS_SSE2) {
+        *safe = &blockinessForRows3CompSSE2;
+        *unsafe = &blockinessForRows3CompUnsafeSSE2;
+      } else {
+        *safe = &blockinessForRows3Comp;
+        *unsafe = &blockinessForRows3CompUnsafe;
+      }
       break;
     case 1:
-      *safe = &blockinessForRows1Comp;
-      *unsafe = &blockinessForRows1CompUnsafe;
+      if(simd == BLOCKINESS_AVX2) {
+        *safe = &blockinessForRows1CompAVX2;
+        *unsafe = &blockinessForRows1CompUnsafeAVX2;
+      } else if(simd == BLOCKINESS_SSE2) {
+        *safe = &blockinessForRows1CompSSE2;
+        *unsafe = &blockinessForRows1CompUnsafeSSE2;
+      } else {
+        *safe = &blockinessForRows1Comp;
+        *unsafe = &blockinessForRows1CompUnsafe;
+      }
       break;
     default:
       *safe = &blockinessForRows;
@@ -312,7 +369,67 @@ static unsigned long calculateDecompBlockiness(j_decompress_ptr decomp,
   return value;
 }
 
+/**
+ * Like calculateDecompBlockiness, but decode the whole frame into memory
+ * first, so that its blockiness may be worked out with as many threads as
+ * requested.
+ * @param decomp the decompressor to read from
+ * @param comp the compressor to write to; may be NULL.
+ * @param safe the safe blockiness calculation function.
+ * @param unsafe the non-safe blockiness calculation function.
+ * @param thread_count the number of threads to use.
+ */
+static unsigned long calculateFrameBlockiness(j_decompress_ptr decomp,
+                                              j_compress_ptr comp,
+                                              blockinessCalcSafe safe,
+                                              blockinessCalcUnsafe unsafe,
+                                              int thread_count) {
+  const int off = 4;
+  const JDIMENSION height = decomp->output_height;
+  const int row_stride = decomp->output_width * decomp->output_components;
+  JSAMPARRAY rows = spatialAllocSamples(height, row_stride);
+  readNRows(height, rows, decomp);
+  if(comp) {
+    JSAMPARRAY cropped = new JSAMPROW[height - off];
+    writeRows(rows + off, cropped, height - off,
+              off * decomp->output_components, comp);
+    delete [] cropped;
+  }
+  unsigned long value = blockinessForFrame(rows, height,
+                                           decomp->output_components,
+                                           row_stride, safe, unsafe,
+                                           thread_count);
+  free(rows);
+  return value;
+}
+
+/**
+ * Calculate the spatial blockiness for the decompression object given, on
+ * the calling thread as it is decoded, or over the fully decoded frame with
+ * the number of threads given.
+ * @param decomp the decompressor to read from
+ * @param comp the compressor to write to; may be NULL.
+ * @param safe the safe blockiness calculation function.
+ * @param unsafe the non-safe blockiness calculation function.
+ * @param thread_count the number of threads to use.
+ */
+static unsigned long calculateBlockiness(j_decompress_ptr decomp,
+                                         j_compress_ptr comp,
+                                         blockinessCalcSafe safe,
+                                         blockinessCalcUnsafe unsafe,
+                                         int thread_count) {
+  if(thread_count > 1) {
+    return calculateFrameBlockiness(decomp, comp, safe, unsafe, thread_count);
+  }
+  return calculateDecompBlockiness(decomp, comp, safe, unsafe);
+}
+
 double JPEGImage::calculateReciprocalROB(void) throw (JPEGLibException) {
+  return calculateReciprocalROB(1);
+}
+
+double JPEGImage::calculateReciprocalROB(int thread_count)
+    throw (JPEGLibException) {
   JOCTET *output = NULL;
   long outlen = len;
   reset();
@@ -320,17 +437,110 @@ double JPEGImage::calculateReciprocalROB(void) throw (JPEGLibException) {
   blockinessCalcSafe safe;
   blockinessCalcUnsafe unsafe;
   chooseBlockinessCalc(component_count, &safe, &unsafe);
-  double blockiness = calculateDecompBlockiness(decomp, comp, safe, unsafe);
+  double blockiness = calculateBlockiness(decomp, comp, safe, unsafe,
+                                          thread_count);
   jpeg_finish_compress(comp);
   jpeg_finish_decompress(decomp);
   steg_src_mgr_for(decomp, output, outlen);
   jpeg_read_header(decomp, 1);
   jpeg_start_decompress(decomp);
-  double crop_blockiness = calculateDecompBlockiness(decomp, NULL, safe,
-                                                     unsafe);
+  double crop_blockiness = calculateBlockiness(decomp, NULL, safe, unsafe,
+                                               thread_count);
   jpeg_finish_decompress(decomp);
   headers_read = false;
   free(output);
   steg_src_mgr_for(decomp, image, len);
   return crop_blockiness / blockiness;
 }
+
+double JPEGImage::calculateCoefficientReciprocalROB(void)
+    throw(JPEGLibException) {
+  return calculateCoefficientReciprocalROB(1);
+}
+
+double JPEGImage::calculateCoefficientReciprocalROB(int thread_count)
+    throw(JPEGLibException) {
+  const int off = 4;
+  int i;
+  readCoefficients();
+  spatialComponent *comps = new spatialComponent[component_count];
+  spatialComponent *crop_comps = new spatialComponent[component_count];
+  spatialLayout layout, crop_layout;
+  layout.image_width = decomp->image_width;
+  layout.image_height = decomp->image_height;
+  layout.color_space = decomp->jpeg_color_space;
+  layout.num_components = component_count;
+  layout.max_h_samp_factor = decomp->max_h_samp_factor;
+  layout.max_v_samp_factor = decomp->max_v_samp_factor;
+  layout.components = comps;
+  for(i = 0; i < component_count; ++i) {
+    jpeg_component_info *info = decomp->comp_info + i;
+    comps[i].h_samp_factor = info->h_samp_factor;
+    comps[i].v_samp_factor = info->v_samp_factor;
+    comps[i].width_in_blocks = info->width_in_blocks;
+    comps[i].height_in_blocks = info->height_in_blocks;
+    comps[i].downsampled_width = info->downsampled_width;
+    comps[i].downsampled_height = info->downsampled_height;
+    comps[i].quantval = info->quant_table->quantval;
+  }
+  if(!spatialSupported(&layout) || layout.image_width <= (JDIMENSION) off ||
+     layout.image_height <= (JDIMENSION) off) {
+    /* Nothing for it but to go the long way around, on a copy so that our
+     * own coefficients need not be read again */
+    delete [] comps;
+    delete [] crop_comps;
+    JPEGImage *copy = copyCoefficients();
+    double retval = copy->calculateReciprocalROB(thread_count);
+    delete copy;
+    return retval;
+  }
+  crop_layout.components = crop_comps;
+  spatialCropLayout(&layout, off, off, &crop_layout);
+  blockinessCalcSafe safe;
+  blockinessCalcUnsafe unsafe;
+  chooseBlockinessCalc(component_count, &safe, &unsafe);
+
+  JBLOCKARRAY *coefs = new JBLOCKARRAY[component_count];
+  for(i = 0; i < component_count; ++i) {
+    coefs[i] = getCoefficients(i);
+  }
+  const int stride = layout.image_width * component_count;
+  JSAMPARRAY samples = spatialAllocSamples(layout.image_height, stride);
+  spatialDecode(&layout, coefs, samples);
+  double blockiness = blockinessForFrame(samples, layout.image_height,
+                                         component_count, stride, safe, unsafe,
+                                         thread_count);
+
+  /* The cropped image starts off as a window into this one */
+  JSAMPARRAY window = new JSAMPROW[crop_layout.image_height];
+  for(i = 0; i < (int) crop_layout.image_height; ++i) {
+    window[i] = samples[i + off] + (off * component_count);
+  }
+  for(i = 0; i < component_count; ++i) {
+    coefs[i] = spatialAllocBlocks(crop_comps[i].height_in_blocks,
+                                  crop_comps[i].width_in_blocks);
+  }
+  spatialEncode(&crop_layout, window, coefs);
+  const int crop_stride = crop_layout.image_width * component_count;
+  JSAMPARRAY crop_samples = spatialAllocSamples(crop_layout.image_height,
+                                                crop_stride);
+  spatialDecode(&crop_layout, coefs, crop_samples);
+  double crop_blockiness = blockinessForFrame(crop_samples,
+    crop_layout.image_height, component_count, crop_stride, safe, unsafe,
+    thread_count);
+
+  free(crop_samples);
+  for(i = 0; i < component_count; ++i) {
+    free(coefs[i]);
+  }
+  delete [] window;
+  free(samples);
+  delete [] coefs;
+  delete [] crop_comps;
+  delete [] comps;
+  return crop_blockiness / blockiness;
+}
+
+void JPEGImage::discardCoefficientChanges(void) {
+  reset();
+}
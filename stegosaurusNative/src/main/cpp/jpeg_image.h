@@ -57,6 +57,26 @@ class JPEGImage : public JPEGCoefficientsProvider {
    */
   JPEGImage(JOCTET *i, long imglen);
 
+  /**
+   * Construct a new JPEGImage out of a copy of the data given. The buffer
+   * itself still belongs to the caller, who may reuse it or free it as soon
+   * as this returns.
+   * @param buffer a pointer to the image data.
+   * @param buflen the size of the image data.
+   * @return the new image, which belongs to the caller.
+   */
+  static JPEGImage *fromBuffer(const JOCTET *buffer, long buflen);
+
+  /**
+   * Construct a new JPEGImage that reads straight out of the buffer given,
+   * with no copy being made. The buffer still belongs to the caller, who
+   * must keep it alive and unchanged for as long as the image exists.
+   * @param buffer a pointer to the image data.
+   * @param buflen the size of the image data.
+   * @return the new image, which belongs to the caller.
+   */
+  static JPEGImage *wrapBuffer(const JOCTET *buffer, long buflen);
+
   /**
    * Destructor.
    */
@@ -116,6 +136,14 @@ class JPEGImage : public JPEGCoefficientsProvider {
     return this->len;
   }
 
+  /**
+   * Copy the raw image data into the buffer given, in one go.
+   * @param buffer the buffer to copy into.
+   * @param buflen the size of the buffer; must be at least getDataLen().
+   * @return the number of bytes copied, or -1 if the buffer is too small.
+   */
+  long copyDataTo(JOCTET *buffer, long buflen);
+
   /**
    * Get a coefficient accessor providing access to this image's DCT
    * coefficients.
@@ -133,6 +161,55 @@ class JPEGImage : public JPEGCoefficientsProvider {
    */
   double calculateReciprocalROB(void) throw(JPEGLibException);
 
+  /**
+   * Calculate the same ratio as calculateReciprocalROB, but, if given more
+   * than one thread, decode the whole of both images into memory first, and
+   * split up the work of going over them between the threads given. Worth
+   * the memory for large images only.
+   * @param thread_count the number of threads to use.
+   * @return the reciprocal of the blockiness-to-estimated-blockiness ratio.
+   */
+  double calculateReciprocalROB(int thread_count) throw(JPEGLibException);
+
+  /**
+   * Calculate the same ratio as calculateReciprocalROB, but for the
+   * coefficients as they stand in memory, including any changes made to
+   * them since they were read, and without encoding or decoding anything:
+   * the samples are worked out straight from the coefficients, and those
+   * of the cropped image straight from the samples, exactly as libjpeg
+   * would do it.
+   * The coefficients are left as they are, and are not read again. Should
+   * the image's colour space be other than grayscale, YCbCr or RGB, a copy
+   * of the image must be written out and decoded after all, but this
+   * image's coefficients are still left untouched.
+   * @return the reciprocal of the ROB of the coefficients as they stand.
+   */
+  double calculateCoefficientReciprocalROB(void) throw(JPEGLibException);
+
+  /**
+   * Like calculateCoefficientReciprocalROB, but splitting up the work of
+   * going over the samples between the number of threads given.
+   * @param thread_count the number of threads to use.
+   * @return the reciprocal of the ROB of the coefficients as they stand.
+   */
+  double calculateCoefficientReciprocalROB(int thread_count)
+    throw(JPEGLibException);
+
+  /**
+   * Throw away any changes made to the coefficients since they were read,
+   * so that they are read from the image data again when next needed.
+   */
+  void discardCoefficientChanges(void);
+
+  /**
+   * Get the quantization table for the component with the index given.
+   * The table belongs to the image, and is only good until the image is
+   * next reset, so it should be copied if it is needed for any longer.
+   * @param component_index the index of the component.
+   * @return the table, with its values in natural order.
+   */
+  const JQUANT_TBL *getQuantTable(int component_index);
+
  private:
   /**
    * Request the DCT coefficients from libjpeg, and store a pointer to them
@@ -146,6 +223,13 @@ class JPEGImage : public JPEGCoefficientsProvider {
    */
   void reset(void);
 
+  /**
+   * Write the current state of the jpeg coefficients to a new image, and
+   * return it, leaving this image's coefficients as they are.
+   * @return the new image.
+   */
+  JPEGImage* copyCoefficients() throw(JPEGLibException);
+
   /**
    * Delete all the JBLOCKARRAYs that have been requested from this image.
    */
@@ -190,6 +274,12 @@ class JPEGImage : public JPEGCoefficientsProvider {
    */
   long len;
 
+  /**
+   * Whether the compressed image belongs to this object, which must then
+   * free it on destruction.
+   */
+  bool owns_image;
+
   /**
    * The number of components in the image.
    */
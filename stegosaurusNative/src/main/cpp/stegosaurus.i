@@ -24,6 +24,7 @@
 #include "jpeg_component.h"
 #include "jpeg_image.h"
 #include "coefficient_accessor.h"
+#include "incremental_blockiness.h"
 %}
 
 /* Create the JoctetArray class, to wrap around (gasp) JOCTET arrays */
@@ -33,6 +34,29 @@
 %array_class(JOCTET, JoctetArray);
 %array_class(int, cppIntArray);
 
+/* Rows of coefficients are handed to Java as direct ShortBuffers over the
+ * native memory itself, so that Java code may read and write coefficients
+ * in place. The buffers are only good for as long as the coefficients are:
+ * they must not be touched once the image is reset or deleted.
+ */
+
+%typemap(jni) CoefficientRow "jobject"
+%typemap(jtype) CoefficientRow "java.nio.ByteBuffer"
+%typemap(jstype) CoefficientRow "java.nio.ShortBuffer"
+%typemap(javaout) CoefficientRow {
+    return $jnicall.order(java.nio.ByteOrder.nativeOrder()).asShortBuffer();
+  }
+%typemap(out) CoefficientRow {
+  if($1.data == NULL) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaIndexOutOfBoundsException,
+                            "No such row of coefficients");
+    return $null;
+  }
+  $result = jenv->NewDirectByteBuffer($1.data,
+                                      (jlong) $1.length * sizeof(JCOEF));
+}
+%ignore CoefficientRow;
+
 /* Now bring in our classes */
 
 %include "jpeg_component.h"
@@ -55,6 +79,64 @@
  */
 
 %newobject JPEGImage::writeNew();
+%newobject JPEGImage::fromBuffer;
+%newobject JPEGImage::wrapBuffer;
+
+/* An image that wraps a buffer must hold on to it, lest it be collected (or,
+ * for a mapped file, unmapped) while the native side is still reading it.
+ * Hence wrapBuffer is hidden behind wrap, which keeps the reference.
+ */
+
+%javamethodmodifiers JPEGImage::wrapBuffer "private";
+%typemap(javacode) JPEGImage %{
+  /**
+   * The buffer this image reads out of, if it was built by wrapping one.
+   */
+  private java.nio.ByteBuffer wrappedBuffer;
+
+  /**
+   * Construct a new JPEGImage that reads straight out of the direct buffer
+   * given, from its position to its limit, without copying it.
+   * @param buffer the buffer. Should not be modified while the image lives.
+   * @return the new image.
+   */
+  public static JPEGImage wrap(java.nio.ByteBuffer buffer) {
+    JPEGImage retval = wrapBuffer(buffer);
+    retval.wrappedBuffer = buffer;
+    return retval;
+  }
+%}
+
+/* Raw image data may be moved in and out of the native side in bulk, through
+ * direct ByteBuffers. The native code sees the region between the buffer's
+ * position and its limit; neither of them is modified.
+ */
+
+%typemap(jni) (const JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH),
+              (JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH) "jobject"
+%typemap(jtype) (const JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH),
+                (JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH) "java.nio.ByteBuffer"
+%typemap(jstype) (const JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH),
+                 (JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH) "java.nio.ByteBuffer"
+%typemap(javain) (const JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH),
+                 (JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH) "$javainput.slice()"
+%typemap(in) (const JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH),
+             (JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH) {
+  $1 = (JOCTET *) jenv->GetDirectBufferAddress($input);
+  if($1 == NULL) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaIllegalArgumentException,
+                            "A direct buffer is required");
+    return $null;
+  }
+  $2 = (long) jenv->GetDirectBufferCapacity($input);
+}
+
+%apply (const JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH) {
+  (const JOCTET *buffer, long buflen)
+};
+%apply (JOCTET *DIRECT_BUFFER, long DIRECT_LENGTH) {
+  (JOCTET *buffer, long buflen)
+};
 
 %typemap(throws, throws="JPEGLibException") JPEGLibException {
   jclass excep = jenv->FindClass("stegosaurus/cpp/JPEGLibException");
@@ -64,6 +146,80 @@
   return $null;
 }
 
+/* Quantization tables are only of use on the native side */
+%ignore JPEGImage::getQuantTable;
+
 %include "jpeg_image.h"
 
+/* Coefficients (and their indices) may be moved in and out of the native side
+ * in bulk, through Java primitive arrays. Each array is paired up with its
+ * length, which the native side uses to stay within bounds.
+ */
+
+%define %steg_array_typemaps(CTYPE, JNITYPE, JAVATYPE, JFUNC)
+%typemap(jni) (const CTYPE *IN_ARRAY, int IN_LENGTH),
+              (CTYPE *OUT_ARRAY, int OUT_LENGTH) %{JNITYPE##Array%}
+%typemap(jtype) (const CTYPE *IN_ARRAY, int IN_LENGTH),
+                (CTYPE *OUT_ARRAY, int OUT_LENGTH) %{JAVATYPE[]%}
+%typemap(jstype) (const CTYPE *IN_ARRAY, int IN_LENGTH),
+                 (CTYPE *OUT_ARRAY, int OUT_LENGTH) %{JAVATYPE[]%}
+%typemap(javain) (const CTYPE *IN_ARRAY, int IN_LENGTH),
+                 (CTYPE *OUT_ARRAY, int OUT_LENGTH) "$javainput"
+%typemap(in) (const CTYPE *IN_ARRAY, int IN_LENGTH),
+             (CTYPE *OUT_ARRAY, int OUT_LENGTH) {
+  if(!$input) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaNullPointerException,
+                            "null array");
+    return $null;
+  }
+  $2 = (int) jenv->GetArrayLength($input);
+  $1 = (CTYPE *) jenv->Get##JFUNC##ArrayElements($input, NULL);
+}
+/* Input arrays need not be copied back; output arrays must be */
+%typemap(freearg) (const CTYPE *IN_ARRAY, int IN_LENGTH) {
+  jenv->Release##JFUNC##ArrayElements($input, (JNITYPE *) $1, JNI_ABORT);
+}
+%typemap(freearg) (CTYPE *OUT_ARRAY, int OUT_LENGTH) {
+  jenv->Release##JFUNC##ArrayElements($input, (JNITYPE *) $1, 0);
+}
+%enddef
+
+%steg_array_typemaps(int, jint, int, Int);
+%steg_array_typemaps(JCOEF, jshort, short, Short);
+
+%apply (const int *IN_ARRAY, int IN_LENGTH) {
+  (const int *indices, int indices_len),
+  (const int *positions, int positions_len),
+  (const int *deltas, int deltas_len)
+};
+%apply (int *OUT_ARRAY, int OUT_LENGTH) {
+  (int *indices, int indices_len)
+};
+%apply (const JCOEF *IN_ARRAY, int IN_LENGTH) {
+  (const JCOEF *values, int values_len)
+};
+%apply (JCOEF *OUT_ARRAY, int OUT_LENGTH) {
+  (JCOEF *values, int values_len)
+};
+
+/* The bulk accessors refuse out of range indices; these become
+ * IndexOutOfBoundsExceptions. No early return here, so that the arrays are
+ * still released by their freearg typemaps.
+ */
+%define %steg_index_checked(METHOD)
+%exception CoefficientAccessor::METHOD {
+  try {
+    $action
+  } catch(std::out_of_range &e) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaIndexOutOfBoundsException,
+                            e.what());
+  }
+}
+%enddef
+
+%steg_index_checked(getCoefficients);
+%steg_index_checked(setCoefficients);
+%steg_index_checked(gatherUsableCoefficients);
+
 %include "coefficient_accessor.h"
+%include "incremental_blockiness.h"
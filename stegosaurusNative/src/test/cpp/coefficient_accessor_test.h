@@ -131,6 +131,32 @@ class CoefficientAccessorTest : public ::testing::TestWithParam<int> {
    */
   JCOEF values[25];
 
+  /**
+   * Get the coefficient at the index given the way the accessor used to,
+   * before it had its block tables: walking the components to find the one
+   * it belongs to, and then asking the component for its dimensions to
+   * work out the row, column and position in the block by division.
+   * Kept as a reference for the accessor's results and its speed.
+   * @param index the index.
+   * @return the coefficient.
+   */
+  JCOEF referenceGetCoefficient(unsigned int index) {
+    int c = 0;
+    JPEGComponent *comp = components[0];
+    while(c < compCount - 1 &&
+          index >= comp->getTotalNumberOfCoefficients()) {
+      index -= comp->getTotalNumberOfCoefficients();
+      ++c;
+      comp = components[c];
+    }
+    const int block_size = comp->getBlockSize();
+    const int width = comp->getWidthInBlocks();
+    const int row_local = index % (width * block_size);
+    const int row = index / (width * block_size);
+    return comp->getCoefficients()[row][row_local / block_size]
+      [row_local % block_size];
+  }
+
  private:
   /**
    * The coefficient providers for the generated coefficients.
@@ -260,6 +286,162 @@ TEST_P(CoefficientAccessorTest, TestGetUsableCoefficients) {
   EXPECT_EQ(acc->getUsableCoefficientCount(), j);
 }
 
+/**
+ * Test that the usable coefficients are counted properly when they're
+ * counted before ever being gathered.
+ */
+TEST_P(CoefficientAccessorTest, TestUsableCoefficientCount) {
+  unsigned int i;
+  int expected = 0;
+  for(i = 0; i < acc->getLength(); ++i) {
+    if(!acc->isDC(i) && acc->getCoefficient(i)) {
+      ++expected;
+    }
+  }
+  EXPECT_EQ(expected, acc->getUsableCoefficientCount());
+  acc->getUsableCoefficients();
+  EXPECT_EQ(expected, acc->getUsableCoefficientCount());
+}
+
+/**
+ * Test the bulk getCoefficients and setCoefficients methods.
+ */
+TEST_P(CoefficientAccessorTest, TestBulkAccess) {
+  int indices[sampleSize];
+  JCOEF got[sampleSize];
+  JCOEF newValues[sampleSize];
+  int i, count = 0;
+  for(i = 0; i < sampleSize; i++) {
+    if(tests[i] < expectedLength) {
+      indices[count] = tests[i];
+      newValues[count] = values[i] ^ 1;
+      ++count;
+    }
+  }
+  EXPECT_EQ(count, acc->getCoefficients(indices, sampleSize, got, sampleSize,
+                                        count));
+  for(i = 0; i < count; i++) {
+    EXPECT_EQ(acc->getCoefficient(indices[i]), got[i]) << "Index " << i;
+  }
+  EXPECT_EQ(count, acc->setCoefficients(indices, sampleSize, newValues,
+                                        sampleSize, count));
+  for(i = 0; i < count; i++) {
+    EXPECT_EQ(newValues[i], acc->getCoefficient(indices[i])) << "Index " << i;
+  }
+  /* Counts are clamped to the lengths of the arrays */
+  EXPECT_EQ(2, acc->getCoefficients(indices, 2, got, sampleSize, count));
+}
+
+/**
+ * Test the gatherUsableCoefficients method.
+ */
+TEST_P(CoefficientAccessorTest, TestGatherUsableCoefficients) {
+  const int count = 16;
+  int positions[count];
+  int indices[count];
+  JCOEF got[count];
+  int i;
+  int *usables = acc->getUsableCoefficients();
+  int usableCount = acc->getUsableCoefficientCount();
+  for(i = 0; i < count; i++) {
+    positions[i] = (i * 7919) % usableCount;
+  }
+  EXPECT_EQ(count, acc->gatherUsableCoefficients(positions, count, indices,
+                                                 count, got, count, count));
+  for(i = 0; i < count; i++) {
+    EXPECT_EQ(usables[positions[i]], indices[i]) << "Position " << i;
+    EXPECT_EQ(acc->getCoefficient(indices[i]), got[i]) << "Position " << i;
+  }
+}
+
+/**
+ * Test that the bulk methods refuse out of range indices without touching
+ * any coefficient.
+ */
+TEST_P(CoefficientAccessorTest, TestBulkAccessOutOfRange) {
+  const int length = (int) acc->getLength();
+  const int usableCount = acc->getUsableCoefficientCount();
+  int indices[] = {0, length};
+  int negative[] = {0, -1};
+  int positions[] = {0, usableCount};
+  int gotIndices[2];
+  JCOEF got[] = {7, 7};
+  JCOEF newValues[] = {7, 7};
+  JCOEF first = acc->getCoefficient(0);
+  EXPECT_THROW(acc->getCoefficients(indices, 2, got, 2, 2), std::out_of_range);
+  EXPECT_THROW(acc->getCoefficients(negative, 2, got, 2, 2),
+               std::out_of_range);
+  EXPECT_EQ(7, got[0]);
+  EXPECT_THROW(acc->setCoefficients(indices, 2, newValues, 2, 2),
+               std::out_of_range);
+  EXPECT_EQ(first, acc->getCoefficient(0));
+  EXPECT_THROW(acc->gatherUsableCoefficients(positions, 2, gotIndices, 2,
+                                             got, 2, 2),
+               std::out_of_range);
+  EXPECT_EQ(7, got[0]);
+  /* Indices beyond the count are never looked at */
+  EXPECT_EQ(1, acc->getCoefficients(indices, 2, got, 2, 1));
+}
+
+/**
+ * Test that every coefficient is found where it used to be.
+ */
+TEST_P(CoefficientAccessorTest, TestIndexMatchesReference) {
+  unsigned int i;
+  for(i = 0; i < expectedLength; ++i) {
+    ASSERT_EQ(referenceGetCoefficient(i), acc->getCoefficient(i))
+      << "Index " << i;
+  }
+}
+
+/**
+ * Time the accessor's lookups against the ones it used to do.
+ * The timings are only reported, as test properties, since they are at
+ * the mercy of whatever else the machine is up to. Disabled, so that it
+ * stays out of the unit run; run it with --gtest_also_run_disabled_tests.
+ */
+TEST_P(CoefficientAccessorTest, DISABLED_BenchmarkIndexLookup) {
+  const int repetitions = 20;
+  unsigned int i;
+  int r;
+  long sum = 0, referenceSum = 0;
+  clock_t start;
+  start = clock();
+  for(r = 0; r < repetitions; ++r) {
+    for(i = 0; i < expectedLength; ++i) {
+      referenceSum += referenceGetCoefficient(i);
+    }
+  }
+  clock_t reference = clock() - start;
+  start = clock();
+  for(r = 0; r < repetitions; ++r) {
+    for(i = 0; i < expectedLength; ++i) {
+      sum += acc->getCoefficient(i);
+    }
+  }
+  clock_t indexed = clock() - start;
+  /* Use the sums, so that the loops can't be optimised away */
+  EXPECT_EQ(referenceSum, sum);
+  RecordProperty("ReferenceClocks", (int) reference);
+  RecordProperty("IndexedClocks", (int) indexed);
+}
+
+/**
+ * Test that the accessor goes back to the components for the coefficients
+ * after being told to reload them.
+ */
+TEST_P(CoefficientAccessorTest, TestForceReload) {
+  int i;
+  acc->getCoefficient(0);
+  acc->forceReloadOnNextAccess();
+  for(i = 0; i < sampleSize; i++) {
+    unsigned int index = tests[i];
+    if(index < expectedLength) {
+      EXPECT_EQ(values[i], acc->getCoefficient(index)) << "Index " << index;
+    }
+  }
+}
+
 INSTANTIATE_TEST_CASE_P(CoefficientInstantiation, CoefficientAccessorTest,
   ::testing::Values(1, 3));
 
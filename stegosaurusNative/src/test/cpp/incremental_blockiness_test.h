@@ -0,0 +1,126 @@
+/**
+ * Stegosaurus: JPEG Steganography
+ * Copyright (C) 2016 Jose Cortes-Varela
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+#ifndef STEG_INCREMENTAL_BLOCKINESS_TEST
+#define STEG_INCREMENTAL_BLOCKINESS_TEST
+
+#include "test_with_image.h"
+#include "gtest/gtest.h"
+#include "../../main/cpp/incremental_blockiness.h"
+#include <math.h>
+
+/**
+ * Test the IncrementalBlockiness class.
+ * The strategy is to work out the blockiness a set of changes would
+ * produce, then actually make those changes to the image and build a new
+ * object from it, and expect both to agree.
+ */
+class IncrementalBlockinessTest : public TestWithImage {
+ public:
+  /**
+   * Set up the test.
+   */
+  virtual void SetUp(void) {
+    TestWithImage::SetUp();
+    engine = new IncrementalBlockiness(testImage);
+  }
+
+  /**
+   * Tear down the test.
+   */
+  virtual void TearDown(void) {
+    delete engine;
+    TestWithImage::TearDown();
+  }
+
+ protected:
+  /**
+   * The blockiness object for the unchanged image.
+   */
+  IncrementalBlockiness *engine;
+
+  /**
+   * Work out the blockiness with the changes given, then apply them to the
+   * image, and ensure that a fresh blockiness object agrees.
+   * @param indices the indices of the coefficients to change.
+   * @param deltas the changes to make.
+   * @param count the number of changes.
+   */
+  void checkChanges(const int *indices, const int *deltas, int count) {
+    int i;
+    CoefficientAccessor *acc = testImage->getCoefficientAccessor();
+    double expected, result = engine->getBlockinessWithChanges(indices, count,
+                                                               deltas, count,
+                                                               count);
+    for(i = 0; i < count; ++i) {
+      acc->setCoefficient(indices[i],
+                          acc->getCoefficient(indices[i]) + deltas[i]);
+    }
+    IncrementalBlockiness fresh(testImage);
+    expected = fresh.getBlockiness();
+    /* The samples are floats, so some rounding is to be expected */
+    EXPECT_LE(fabs(expected - result), expected * 1e-5)
+      << "Expected " << expected << " got " << result;
+  }
+};
+
+/**
+ * Ensure that the blockiness is sensible, and that no changes leave it be.
+ */
+TEST_F(IncrementalBlockinessTest, testNoChanges) {
+  double blockiness = engine->getBlockiness();
+  EXPECT_GT(blockiness, 0);
+  EXPECT_EQ(blockiness, engine->getBlockinessWithChanges(NULL, 0, NULL, 0, 0));
+}
+
+/**
+ * Test changes made to a single coefficient, and to several coefficients
+ * in a single block, including changes that cancel each other out.
+ */
+TEST_F(IncrementalBlockinessTest, testSingleBlock) {
+  const int indices[] = { 64 * 30 + 1, 64 * 30 + 9, 64 * 30 + 1 };
+  const int deltas[] = { 1, -1, -1 };
+  double blockiness = engine->getBlockiness();
+  double single = engine->getBlockinessWithChanges(indices, 1, deltas, 1, 1);
+  double cancelled = engine->getBlockinessWithChanges(indices, 3, deltas, 3,
+                                                      3);
+  EXPECT_NE(blockiness, single);
+  EXPECT_LE(fabs(cancelled - engine->getBlockinessWithChanges(indices + 1, 1,
+                                                              deltas + 1, 1,
+                                                              1)),
+            blockiness * 1e-5);
+  checkChanges(indices, deltas, 2);
+}
+
+/**
+ * Test changes made to neighbouring blocks, whose shared boundaries must
+ * only be counted once, and to blocks in different components.
+ */
+TEST_F(IncrementalBlockinessTest, testNeighbouringBlocks) {
+  JPEGComponent *comp = testImage->getComponent(0);
+  const int width = comp->getWidthInBlocks();
+  const int luma = comp->getTotalNumberOfCoefficients();
+  const int block = width * 10 + 10;
+  const int indices[] = {
+    64 * block + 2, 64 * (block + 1) + 8, 64 * (block + width) + 3,
+    64 * (block + width + 1), luma + 64 * 5 + 1, luma + 64 * 6 + 1
+  };
+  const int deltas[] = { -2, 1, 3, -1, 1, -1 };
+  checkChanges(indices, deltas, 6);
+}
+
+#endif
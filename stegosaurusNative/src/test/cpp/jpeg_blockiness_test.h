@@ -18,6 +18,8 @@
 #include "test_with_image.h"
 #include "gtest/gtest.h"
 #include "../../main/c/blockiness.h"
+#include "../../main/c/frame_blockiness.h"
+#include "../../main/c/spatial.h"
 #include <math.h>
 
 /**
@@ -165,6 +167,100 @@ TEST_F(JPEGBlockinessTest, testBlockinessMultiRow) {
   }
 }
 
+/**
+ * Ensure that the vectorized blockiness kernels supported by this CPU give
+ * exactly the same results as the scalar ones, for widths that are and
+ * aren't multiples of the vector sizes, with and without a previous row.
+ */
+TEST_F(JPEGBlockinessTest, testSimdKernels) {
+  const blockinessSimd simd = blockinessSimdSupport();
+  const int max_width = 90;
+  int components, width, rows, i;
+  JSAMPROW buffer[8];
+  JSAMPROW prev = new JSAMPLE[max_width * 3];
+  for(i = 0; i < 8; ++i) {
+    buffer[i] = new JSAMPLE[max_width * 3];
+  }
+  for(components = 1; components <= 3; components += 2) {
+    for(width = 1; width <= max_width; ++width) {
+      const int stride = width * components;
+      populateSampRow(prev, stride);
+      for(i = 0; i < 8; ++i) {
+        populateSampRow(buffer[i], stride);
+      }
+      for(rows = 1; rows <= 8; ++rows) {
+        unsigned int expected, expected_no_prev;
+        if(components == 3) {
+          expected = blockinessForRows3Comp(3, stride, buffer, rows, prev);
+          expected_no_prev = blockinessForRows3Comp(3, stride, buffer, rows,
+                                                    NULL);
+        } else {
+          expected = blockinessForRows1Comp(1, stride, buffer, rows, prev);
+          expected_no_prev = blockinessForRows1Comp(1, stride, buffer, rows,
+                                                    NULL);
+        }
+        if(simd >= BLOCKINESS_SSE2) {
+          if(components == 3) {
+            EXPECT_EQ(expected, blockinessForRows3CompSSE2(3, stride, buffer,
+                                                           rows, prev));
+            EXPECT_EQ(expected_no_prev,
+                      blockinessForRows3CompSSE2(3, stride, buffer, rows,
+                                                 NULL));
+          } else {
+            EXPECT_EQ(expected, blockinessForRows1CompSSE2(1, stride, buffer,
+                                                           rows, prev));
+            EXPECT_EQ(expected_no_prev,
+                      blockinessForRows1CompSSE2(1, stride, buffer, rows,
+                                                 NULL));
+          }
+        }
+        if(simd >= BLOCKINESS_AVX2) {
+          if(components == 3) {
+            EXPECT_EQ(expected, blockinessForRows3CompAVX2(3, stride, buffer,
+                                                           rows, prev));
+            EXPECT_EQ(expected_no_prev,
+                      blockinessForRows3CompAVX2(3, stride, buffer, rows,
+                                                 NULL));
+          } else {
+            EXPECT_EQ(expected, blockinessForRows1CompAVX2(1, stride, buffer,
+                                                           rows, prev));
+            EXPECT_EQ(expected_no_prev,
+                      blockinessForRows1CompAVX2(1, stride, buffer, rows,
+                                                 NULL));
+          }
+        }
+      }
+      if(components == 3) {
+        unsigned int expected = blockinessForRows3CompUnsafe(3, stride, buffer,
+                                                             prev);
+        if(simd >= BLOCKINESS_SSE2) {
+          EXPECT_EQ(expected, blockinessForRows3CompUnsafeSSE2(3, stride,
+                                                               buffer, prev));
+        }
+        if(simd >= BLOCKINESS_AVX2) {
+          EXPECT_EQ(expected, blockinessForRows3CompUnsafeAVX2(3, stride,
+                                                               buffer, prev));
+        }
+      } else {
+        unsigned int expected = blockinessForRows1CompUnsafe(1, stride, buffer,
+                                                             prev);
+        if(simd >= BLOCKINESS_SSE2) {
+          EXPECT_EQ(expected, blockinessForRows1CompUnsafeSSE2(1, stride,
+                                                               buffer, prev));
+        }
+        if(simd >= BLOCKINESS_AVX2) {
+          EXPECT_EQ(expected, blockinessForRows1CompUnsafeAVX2(1, stride,
+                                                               buffer, prev));
+        }
+      }
+    }
+  }
+  for(i = 0; i < 8; ++i) {
+    delete [] buffer[i];
+  }
+  delete [] prev;
+}
+
 /**
  * Ensure that the reciprocalROB function works as expected: this is verified
  * by ensuring that the reciprocalROB of an image is a larger number than that
@@ -191,3 +287,85 @@ TEST_F(JPEGBlockinessTest, testConsistency) {
   EXPECT_LE(distance, permissible_distance) << "Expected ROB of "
     << expected << " got " << result;
 }
+
+/**
+ * Ensure that the reciprocal ROB worked out straight from the coefficients
+ * is exactly the one worked out by going through libjpeg, both for an
+ * image as read and for one whose coefficients have been changed.
+ */
+TEST_F(JPEGBlockinessTest, testCoefficientReciprocalROB) {
+  const int changes = 500;
+  int i;
+  double result = testImage->calculateCoefficientReciprocalROB();
+  EXPECT_DOUBLE_EQ(testImage->calculateReciprocalROB(), result);
+  result = stego->calculateCoefficientReciprocalROB();
+  EXPECT_DOUBLE_EQ(stego->calculateReciprocalROB(), result);
+  CoefficientAccessor *acc = testImage->getCoefficientAccessor();
+  for(i = 0; i < changes; ++i) {
+    unsigned int index = rand() % acc->getLength();
+    acc->setCoefficient(index, acc->getCoefficient(index) + 1);
+  }
+  result = testImage->calculateCoefficientReciprocalROB();
+  JPEGImage *written = testImage->writeNew();
+  EXPECT_DOUBLE_EQ(written->calculateReciprocalROB(), result);
+  delete written;
+}
+
+/**
+ * Ensure that changes to the coefficients may be thrown away.
+ */
+TEST_F(JPEGBlockinessTest, testDiscardCoefficientChanges) {
+  CoefficientAccessor *acc = testImage->getCoefficientAccessor();
+  JCOEF original = acc->getCoefficient(100);
+  acc->setCoefficient(100, original + 1);
+  testImage->discardCoefficientChanges();
+  EXPECT_EQ(original, acc->getCoefficient(100));
+}
+
+/**
+ * Ensure that the blockiness of a frame comes out the same however many
+ * threads it is split up between, including more threads than it has groups
+ * of rows.
+ */
+TEST_F(JPEGBlockinessTest, testFrameBlockinessThreads) {
+  const int width = 37;
+  const int components = 3;
+  const int stride = width * components;
+  const JDIMENSION heights[] = {5, 8, 16, 61, 64};
+  unsigned int i;
+  int threads;
+  for(i = 0; i < sizeof(heights) / sizeof(heights[0]); ++i) {
+    JSAMPARRAY rows = spatialAllocSamples(heights[i], stride);
+    JDIMENSION row;
+    for(row = 0; row < heights[i]; ++row) {
+      populateSampRow(rows[row], stride);
+    }
+    unsigned long expected = blockinessForFrame(rows, heights[i], components,
+                                                stride,
+                                                &blockinessForRows3Comp,
+                                                &blockinessForRows3CompUnsafe,
+                                                1);
+    for(threads = 2; threads <= 10; ++threads) {
+      EXPECT_EQ(expected, blockinessForFrame(rows, heights[i], components,
+                                             stride,
+                                             &blockinessForRows3Comp,
+                                             &blockinessForRows3CompUnsafe,
+                                             threads))
+        << "Failure for " << heights[i] << " rows and " << threads
+        << " threads";
+    }
+    free(rows);
+  }
+}
+
+/**
+ * Ensure that working the ratio out over fully decoded frames, with many
+ * threads, gives the same result as doing it on a single thread as the
+ * images are decoded.
+ */
+TEST_F(JPEGBlockinessTest, testThreadedReciprocalROB) {
+  double expected = testImage->calculateReciprocalROB();
+  EXPECT_DOUBLE_EQ(expected, testImage->calculateReciprocalROB(4));
+  expected = stego->calculateCoefficientReciprocalROB();
+  EXPECT_DOUBLE_EQ(expected, stego->calculateCoefficientReciprocalROB(4));
+}
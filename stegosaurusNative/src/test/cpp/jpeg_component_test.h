@@ -127,4 +127,20 @@ TEST_F(JPEGComponentTest, TestForceCoefReload) {
   destroyArray(other);
 }
 
+/**
+ * Test the getCoefficientRow method.
+ */
+TEST_F(JPEGComponentTest, TestGetCoefficientRow) {
+  int row, i;
+  for(row = 0; row < rows; ++row) {
+    CoefficientRow r = component->getCoefficientRow(row);
+    ASSERT_EQ(cols * 64, r.length);
+    /* The array was built sequentially, so the row should be too */
+    for(i = 0; i < r.length; ++i) {
+      EXPECT_EQ(row * cols * 64 + i, r.data[i]) << "Row " << row;
+    }
+  }
+  EXPECT_TRUE(component->getCoefficientRow(rows).data == NULL);
+}
+
 #endif
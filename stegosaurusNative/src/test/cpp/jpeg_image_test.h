@@ -24,6 +24,7 @@
 #include "../../main/cpp/coefficient_accessor.h"
 #include "../../main/c/steg_utils.h"
 #include "../../main/c/src_mgr.h"
+#include <string.h>
 
 
 /**
@@ -133,6 +134,48 @@ TEST_F(JPEGImageTest, testCoefficientAccess) {
   }
 }
 
+/**
+ * Test that an image built out of a buffer has the same data and coefficients
+ * as the one it was copied from, and that its data can be copied back out.
+ */
+TEST_F(JPEGImageTest, testBufferRoundTrip) {
+  long len = testImage->getDataLen();
+  JOCTET *out = (JOCTET *) malloc(len);
+  JPEGImage *copyImage = JPEGImage::fromBuffer(testImage->getData(), len);
+  CoefficientAccessor *test_acc = testImage->getCoefficientAccessor(),
+                      *copy_acc = copyImage->getCoefficientAccessor();
+  unsigned int i;
+  ASSERT_EQ(len, copyImage->getDataLen());
+  EXPECT_EQ(-1, copyImage->copyDataTo(out, len - 1));
+  EXPECT_EQ(len, copyImage->copyDataTo(out, len));
+  EXPECT_EQ(0, memcmp(testImage->getData(), out, len));
+  for(i = 0; i < test_acc->getLength(); ++i) {
+    EXPECT_EQ(test_acc->getCoefficient(i), copy_acc->getCoefficient(i));
+  }
+  free(out);
+  delete copyImage;
+}
+
+/**
+ * Test that an image wrapping a buffer reads the same coefficients as the one
+ * owning it, and that deleting it leaves the buffer alone.
+ */
+TEST_F(JPEGImageTest, testWrapBuffer) {
+  JPEGImage *wrapped = JPEGImage::wrapBuffer(testImage->getData(),
+                                             testImage->getDataLen());
+  CoefficientAccessor *test_acc = testImage->getCoefficientAccessor(),
+                      *wrap_acc = wrapped->getCoefficientAccessor();
+  unsigned int i;
+  EXPECT_EQ(testImage->getData(), wrapped->getData());
+  for(i = 0; i < test_acc->getLength(); ++i) {
+    EXPECT_EQ(test_acc->getCoefficient(i), wrap_acc->getCoefficient(i));
+  }
+  delete wrapped;
+  /* If the buffer went with the wrapper, this will blow up */
+  JPEGImage *copyImage = testImage->writeNew();
+  delete copyImage;
+}
+
 /* The following are "life tests"; in other words, they don't do many
  * assertions, and those that are performed are of tangential importance.
  * Instead, if they fail, the whole program crashes.